@@ -0,0 +1,142 @@
+package benchmarks;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Tiempo hasta el primer reporte de una ejecución corta, arrancando una JVM
+ * nueva en cada invocación: desde que se lanza el proceso hasta que escribe
+ * reporte_vendedores.csv.
+ *
+ * Modos:
+ * - texto: relee vendedores.txt y productos.txt
+ * - almacen: reabre el almacén de datos maestros ya construido (--almacen-maestros)
+ * - cds y cds_almacen: lo mismo con un archivo AppCDS de las clases que
+ *   carga main, generado en la preparación con el mismo classpath que los
+ *   benchmarks (como el perfil cds del pom principal)
+ *
+ * Requiere que el classpath sea un jar (java -jar benchmarks.jar); CDS no
+ * archiva clases de directorios.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 20)
+@Fork(1)
+public class ArranqueBenchmark {
+
+    @Param({"texto", "almacen", "cds", "cds_almacen"})
+    public String modo;
+
+    private Path directorio;
+    private String java;
+    private String classpath;
+    private Path archivoCds;
+    private Process proceso;
+
+    @Setup(Level.Trial)
+    public void preparar() throws Throwable {
+        directorio = Files.createTempDirectory("ventas-arranque-" + modo);
+        java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        classpath = System.getProperty("java.class.path");
+
+        PrintStream salidaOriginal = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            Etapas.generarDatos("--semilla", "1", "--directorio", directorio.toString(), "--vendedores", "200",
+                    "--productos", "1000", "--ventas-min", "5", "--ventas-max", "50");
+        } finally {
+            System.setOut(salidaOriginal);
+        }
+
+        if (modo.startsWith("cds")) {
+            archivoCds = directorio.resolve("clases.jsa");
+            Path lista = directorio.resolve("clases.lst");
+            ejecutar("-XX:DumpLoadedClassList=" + lista, "-cp", classpath, "main", "--almacen-maestros",
+                    "--directorio", directorio.toString());
+            ejecutar("-Xshare:dump", "-XX:SharedClassListFile=" + lista,
+                    "-XX:SharedArchiveFile=" + archivoCds, "-cp", classpath);
+        } else if (modo.equals("almacen")) {
+            // Construir maestros.dat para que las invocaciones lo reabran
+            ejecutar("-cp", classpath, "main", "--almacen-maestros", "--directorio", directorio.toString());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void limpiar() throws IOException {
+        try (Stream<Path> archivos = Files.walk(directorio)) {
+            archivos.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    public void primerReporte() throws IOException {
+        List<String> comando = new ArrayList<>();
+        comando.add(java);
+        if (archivoCds != null) {
+            comando.add("-XX:SharedArchiveFile=" + archivoCds);
+            // Falla en lugar de arrancar sin el archivo y medir otra cosa
+            comando.add("-Xshare:on");
+        }
+        comando.addAll(List.of("-cp", classpath, "main", "--directorio", directorio.toString()));
+        if (modo.endsWith("almacen")) {
+            comando.add("--almacen-maestros");
+        }
+
+        proceso = new ProcessBuilder(comando).redirectErrorStream(true).start();
+        BufferedReader salida = new BufferedReader(
+                new InputStreamReader(proceso.getInputStream(), StandardCharsets.UTF_8));
+        String linea;
+        while ((linea = salida.readLine()) != null) {
+            if (linea.contains("Reporte de vendedores generado")) {
+                return;
+            }
+        }
+        throw new IllegalStateException("El proceso terminó sin generar el reporte de vendedores");
+    }
+
+    @TearDown(Level.Invocation)
+    public void esperarProceso() throws InterruptedException, IOException {
+        // El resto de la ejecución (reporte de productos, salida) no se mide
+        proceso.getInputStream().transferTo(OutputStream.nullOutputStream());
+        proceso.waitFor();
+    }
+
+    private void ejecutar(String... argumentos) throws IOException, InterruptedException {
+        List<String> comando = new ArrayList<>();
+        comando.add(java);
+        comando.addAll(List.of(argumentos));
+        Process preparacion = new ProcessBuilder(comando).redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+        if (preparacion.waitFor() != 0) {
+            throw new IllegalStateException("Falló la preparación: " + String.join(" ", comando));
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Punto de entrada de benchmarks.jar. Ejecuta JMH con el perfilador gc
+ * (tasa de asignación por operación) y guarda los resultados en
+ * resultados-jmh.json para comparar entre versiones. Acepta las mismas
+ * opciones de línea de comandos que JMH, por ejemplo {@code -p escala=grande}.
+ */
+public class EjecutarBenchmarks {
+
+    public static void main(String[] args) throws Exception {
+        Options opciones = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result("resultados-jmh.json")
+                .build();
+        new Runner(opciones).run();
+    }
+}
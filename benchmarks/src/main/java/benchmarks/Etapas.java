@@ -0,0 +1,102 @@
+package benchmarks;
+
+import java.io.File;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.zip.CRC32C;
+
+/**
+ * Acceso a las etapas de la clase main desde los benchmarks.
+ *
+ * main y GenerateInfoFiles están en el paquete por defecto, que no se puede
+ * importar desde un paquete con nombre (JMH exige uno), y sus etapas son
+ * métodos privados. Por eso se obtienen una sola vez como MethodHandle; el
+ * costo de invocarlos así es despreciable frente a cada etapa.
+ */
+final class Etapas {
+
+    private static final MethodHandle LEER_ARGUMENTOS;
+    private static final MethodHandle REINICIAR_DATOS;
+    private static final MethodHandle CARGAR_VENDEDORES;
+    private static final MethodHandle CARGAR_PRODUCTOS;
+    private static final MethodHandle PROCESAR_ARCHIVOS_DE_VENTAS;
+    private static final MethodHandle PROCESAR_ARCHIVO_VENTAS;
+    private static final MethodHandle NUEVO_AGREGADO;
+    private static final MethodHandle GENERAR_REPORTE_VENDEDORES;
+    private static final MethodHandle GENERAR_REPORTE_PRODUCTOS;
+    private static final MethodHandle GENERAR_DATOS;
+
+    static {
+        try {
+            Class<?> principal = Class.forName("main");
+            Class<?> agregado = Class.forName("main$AgregadoParcial");
+            Class<?> archivoVentas = Class.forName("main$ArchivoVentas");
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(principal, MethodHandles.lookup());
+            MethodType sinParametros = MethodType.methodType(void.class);
+
+            LEER_ARGUMENTOS = lookup.findStatic(principal, "leerArgumentos",
+                    MethodType.methodType(void.class, String[].class));
+            REINICIAR_DATOS = lookup.findStatic(principal, "reiniciarDatos", sinParametros);
+            CARGAR_VENDEDORES = lookup.findStatic(principal, "cargarVendedores", sinParametros);
+            CARGAR_PRODUCTOS = lookup.findStatic(principal, "cargarProductos", sinParametros);
+            PROCESAR_ARCHIVOS_DE_VENTAS = lookup.findStatic(principal, "procesarArchivosDeVentas", sinParametros);
+            PROCESAR_ARCHIVO_VENTAS = lookup.findStatic(principal, "procesarArchivoVentas",
+                    MethodType.methodType(archivoVentas, File.class, agregado, CRC32C.class));
+            NUEVO_AGREGADO = MethodHandles.privateLookupIn(agregado, MethodHandles.lookup())
+                    .findConstructor(agregado, MethodType.methodType(void.class, boolean.class));
+            GENERAR_REPORTE_VENDEDORES = lookup.findStatic(principal, "generarReporteVendedores", sinParametros);
+            GENERAR_REPORTE_PRODUCTOS = lookup.findStatic(principal, "generarReporteProductos", sinParametros);
+            GENERAR_DATOS = MethodHandles.publicLookup().findStatic(Class.forName("GenerateInfoFiles"), "main",
+                    MethodType.methodType(void.class, String[].class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private Etapas() {
+    }
+
+    static void configurar(String... argumentos) throws Throwable {
+        LEER_ARGUMENTOS.invoke(argumentos);
+    }
+
+    static void reiniciar() throws Throwable {
+        REINICIAR_DATOS.invoke();
+    }
+
+    static void cargarVendedores() throws Throwable {
+        CARGAR_VENDEDORES.invoke();
+    }
+
+    static void cargarProductos() throws Throwable {
+        CARGAR_PRODUCTOS.invoke();
+    }
+
+    static void procesarArchivosDeVentas() throws Throwable {
+        PROCESAR_ARCHIVOS_DE_VENTAS.invoke();
+    }
+
+    /**
+     * Procesa un solo archivo de ventas sobre un acumulado nuevo.
+     *
+     * @return el acumulado, para que JMH no descarte el trabajo
+     */
+    static Object procesarArchivoVentas(File archivo) throws Throwable {
+        Object agregado = NUEVO_AGREGADO.invoke(false);
+        PROCESAR_ARCHIVO_VENTAS.invoke(archivo, agregado, (CRC32C) null);
+        return agregado;
+    }
+
+    static void generarReporteVendedores() throws Throwable {
+        GENERAR_REPORTE_VENDEDORES.invoke();
+    }
+
+    static void generarReporteProductos() throws Throwable {
+        GENERAR_REPORTE_PRODUCTOS.invoke();
+    }
+
+    static void generarDatos(String... argumentos) throws Throwable {
+        GENERAR_DATOS.invoke(argumentos);
+    }
+}
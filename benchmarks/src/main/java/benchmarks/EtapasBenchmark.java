@@ -0,0 +1,133 @@
+package benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks de cada etapa del procesamiento: carga de vendedores y productos,
+ * procesamiento de un archivo de ventas (el más grande de la escala), de todos
+ * los archivos, y generación de los dos reportes.
+ *
+ * Los datos se generan con GenerateInfoFiles y una semilla fija en un
+ * directorio temporal, en tres escalas:
+ * - pequena: la configuración original (10 vendedores, 25 productos)
+ * - mediana: 2000 vendedores y 5000 productos con popularidad Zipf
+ * - grande: pocos vendedores con archivos de cientos de miles de ventas
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EtapasBenchmark {
+
+    @Param({"pequena", "mediana", "grande"})
+    public String escala;
+
+    private Path directorio;
+    private File archivoMasGrande;
+    private PrintStream salidaOriginal;
+
+    @Setup(Level.Trial)
+    public void preparar() throws Throwable {
+        directorio = Files.createTempDirectory("ventas-jmh-" + escala);
+
+        // Silenciar los mensajes de progreso para no medir la consola
+        salidaOriginal = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        Etapas.generarDatos(argumentosGeneracion());
+        Etapas.configurar("--directorio", directorio.toString());
+        Etapas.reiniciar();
+        Etapas.cargarVendedores();
+        Etapas.cargarProductos();
+        Etapas.procesarArchivosDeVentas();
+
+        try (Stream<Path> archivos = Files.list(directorio)) {
+            archivoMasGrande = archivos
+                    .filter(p -> p.getFileName().toString().startsWith("ventas_"))
+                    .max(Comparator.comparingLong(p -> p.toFile().length()))
+                    .orElseThrow()
+                    .toFile();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void limpiar() throws IOException {
+        System.setOut(salidaOriginal);
+        try (Stream<Path> archivos = Files.walk(directorio)) {
+            archivos.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    private String[] argumentosGeneracion() {
+        String destino = directorio.toString();
+        switch (escala) {
+            case "pequena":
+                return new String[] {"--semilla", "1", "--directorio", destino};
+            case "mediana":
+                return new String[] {"--semilla", "1", "--directorio", destino, "--vendedores", "2000",
+                        "--productos", "5000", "--ventas-min", "50", "--ventas-max", "500", "--zipf", "1.0"};
+            case "grande":
+                return new String[] {"--semilla", "1", "--directorio", destino, "--vendedores", "8",
+                        "--productos", "20000", "--ventas-min", "500000", "--ventas-max", "1000000",
+                        "--zipf", "1.0", "--hilos", "4"};
+            default:
+                throw new IllegalArgumentException("Escala desconocida: " + escala);
+        }
+    }
+
+    @Benchmark
+    public void cargarVendedores() throws Throwable {
+        Etapas.reiniciar();
+        Etapas.cargarVendedores();
+    }
+
+    @Benchmark
+    public void cargarProductos() throws Throwable {
+        Etapas.reiniciar();
+        Etapas.cargarProductos();
+    }
+
+    @Benchmark
+    public Object procesarArchivoVentas() throws Throwable {
+        return Etapas.procesarArchivoVentas(archivoMasGrande);
+    }
+
+    @Benchmark
+    public void procesarArchivosDeVentas() throws Throwable {
+        Etapas.procesarArchivosDeVentas();
+    }
+
+    @Benchmark
+    public void generarReporteVendedores() throws Throwable {
+        Etapas.generarReporteVendedores();
+    }
+
+    @Benchmark
+    public void generarReporteProductos() throws Throwable {
+        Etapas.generarReporteProductos();
+    }
+}
@@ -0,0 +1,404 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Totales por índice denso (producto o vendedor) con memoria acotada, para
+ * entradas cuyos totales no caben en el heap.
+ *
+ * Las sumas se acumulan en una tabla hash de direccionamiento abierto
+ * (claves {@code int} y valores {@code long} en arreglos paralelos). Al llegar
+ * a la mitad de su capacidad se ordena por clave y se vuelca a un archivo
+ * temporal (una corrida). Para el reporte se mezclan las corridas por clave
+ * sumando las repetidas, completando con 0 las claves sin ventas como en los
+ * reportes en memoria, y se ordenan por valor: en bloques que se ordenan con
+ * OrdenIndices y se vuelcan a otras corridas, que se mezclan al final. Con
+ * {@code --top N} basta conservar los N mayores de cada bloque.
+ *
+ * El orden es el de OrdenIndices (valor descendente y clave ascendente en
+ * los empates), así que los reportes son idénticos a los de la agregación en
+ * memoria. La memoria de los arreglos no supera el límite indicado. Cada
+ * corrida abierta en una mezcla usa además un buffer de
+ * {@value #BUFFER_CORRIDA} bytes, así que una mezcla abre como mucho las
+ * corridas cuyos buffers (y el de la salida) entran en el límite, y al menos
+ * 2; si hay más, se mezclan antes en grupos de ese tamaño, en varias
+ * pasadas, hasta que quedan las que entran en la mezcla final. Los
+ * temporales se crean en {@code java.io.tmpdir}.
+ */
+public class AgregacionExterna implements Closeable {
+
+    private static final int LIBRE = -1;
+    private static final int BUFFER_CORRIDA = 1 << 14;
+    // Por ranura de la tabla: clave (4) y valor (8), más la ordenación al
+    // volcar (8 por entrada con ocupación máxima del 50%)
+    private static final int BYTES_POR_RANURA = 16;
+    // Por entrada del bloque de ordenación: valor (8), clave (4) y los dos
+    // arreglos de índices de OrdenIndices (8)
+    private static final int BYTES_POR_ENTRADA = 20;
+
+    private static final Comparator<Corrida> POR_CLAVE = Comparator.comparingInt((Corrida c) -> c.clave);
+    // Orden del reporte: valor descendente y clave ascendente en los empates
+    private static final Comparator<Corrida> POR_VALOR = (a, b) -> a.valor != b.valor
+            ? Long.compare(b.valor, a.valor) : Integer.compare(a.clave, b.clave);
+
+    /**
+     * Recibe los totales en el orden del reporte.
+     */
+    public interface Visitante {
+        void fila(int clave, long valor) throws IOException;
+    }
+
+    private final Path directorio;
+    private final String nombre;
+    private final int cantidadClaves;
+    private final long memoria;
+    // Corridas que abre como mucho una mezcla
+    private final int maximoMezcla;
+
+    private int[] claves;
+    private long[] valores;
+    private int mascara;
+    private int desplazamiento;
+    private int tamano;
+    private final List<File> corridas = new ArrayList<>();
+
+    /**
+     * @param nombre prefijo de los archivos temporales
+     * @param cantidadClaves cantidad de claves (de 0 a cantidadClaves - 1)
+     * @param memoria bytes máximos para la tabla y para la ordenación
+     * @throws IOException si no se puede crear el directorio temporal
+     */
+    public AgregacionExterna(String nombre, int cantidadClaves, long memoria) throws IOException {
+        this.nombre = nombre;
+        this.cantidadClaves = cantidadClaves;
+        this.memoria = memoria;
+        maximoMezcla = (int) Math.max(2, Math.min(1 << 16, memoria / BUFFER_CORRIDA - 1));
+        directorio = Files.createTempDirectory("agregacion-" + nombre + "-");
+        // Sin pasar de lo necesario para tener todas las claves sin volcar
+        long necesarias = 4L * Math.max(1, cantidadClaves);
+        long limite = Math.max(1024, Math.min(memoria / BYTES_POR_RANURA, necesarias));
+        int ranuras = Integer.highestOneBit((int) Math.min(1 << 30, limite));
+        claves = new int[ranuras];
+        valores = new long[ranuras];
+        Arrays.fill(claves, LIBRE);
+        mascara = ranuras - 1;
+        desplazamiento = Integer.numberOfLeadingZeros(mascara);
+    }
+
+    /**
+     * Suma un valor a la clave, volcando la tabla si está llena.
+     *
+     * @param clave índice denso (no negativo)
+     * @param valor valor a sumar
+     * @throws IOException si no se puede escribir la corrida
+     */
+    public void sumar(int clave, long valor) throws IOException {
+        // Hash multiplicativo: los bits altos del producto
+        int ranura = (clave * 0x9E3779B9) >>> desplazamiento & mascara;
+        while (claves[ranura] != LIBRE) {
+            if (claves[ranura] == clave) {
+                valores[ranura] += valor;
+                return;
+            }
+            ranura = (ranura + 1) & mascara;
+        }
+        claves[ranura] = clave;
+        valores[ranura] = valor;
+        if (++tamano * 2 >= claves.length) {
+            volcar();
+        }
+    }
+
+    /**
+     * @return cantidad de corridas volcadas a disco
+     */
+    public int corridas() {
+        return corridas.size();
+    }
+
+    /**
+     * Ordena la tabla por clave y la escribe como corrida.
+     */
+    private void volcar() throws IOException {
+        // Clave en la parte alta y ranura en la baja
+        long[] orden = new long[tamano];
+        int k = 0;
+        for (int ranura = 0; ranura < claves.length; ranura++) {
+            if (claves[ranura] != LIBRE) {
+                orden[k++] = ((long) claves[ranura] << 32) | ranura;
+            }
+        }
+        Arrays.sort(orden);
+
+        File corrida = nuevaCorrida();
+        corridas.add(corrida);
+        try (DataOutputStream salida = abrir(corrida)) {
+            for (long elemento : orden) {
+                salida.writeInt((int) (elemento >>> 32));
+                salida.writeLong(valores[(int) elemento]);
+            }
+        }
+        Arrays.fill(claves, LIBRE);
+        tamano = 0;
+    }
+
+    /**
+     * Recorre los totales de todas las claves en el orden del reporte (las
+     * que no recibieron valores suman 0). Consume las corridas: solo se puede
+     * llamar una vez.
+     *
+     * @param top cantidad de filas a recorrer (0 = todas)
+     * @param visitante destino de las filas
+     * @throws IOException si no se pueden leer o escribir las corridas
+     */
+    public void recorrer(int top, Visitante visitante) throws IOException {
+        if (tamano > 0) {
+            volcar();
+        }
+        // La tabla ya no se usa: su memoria pasa a la ordenación
+        claves = null;
+        valores = null;
+
+        reducir(corridas, POR_CLAVE, true, Integer.MAX_VALUE);
+        Ordenacion ordenacion = new Ordenacion(top);
+        mezclar(corridas, POR_CLAVE, true, Integer.MAX_VALUE, ordenacion::completar);
+        for (int clave = ordenacion.siguiente; clave < cantidadClaves; clave++) {
+            ordenacion.agregar(clave, 0);
+        }
+
+        ordenacion.recorrer(visitante);
+    }
+
+    /**
+     * Mezcla las corridas en grupos de {@link #maximoMezcla} hasta que quedan
+     * las que entran en una sola mezcla. Cada grupo se reemplaza por una
+     * corrida en el mismo orden, al final de la lista.
+     *
+     * @param archivos corridas a reducir, que se actualiza
+     * @param orden orden de las corridas
+     * @param sumarIguales si se suman los valores de las claves repetidas
+     * @param limite cantidad máxima de pares de cada corrida nueva
+     */
+    private void reducir(List<File> archivos, Comparator<Corrida> orden, boolean sumarIguales, int limite)
+            throws IOException {
+        while (archivos.size() > maximoMezcla) {
+            List<File> grupo = new ArrayList<>(archivos.subList(0, maximoMezcla));
+            archivos.subList(0, maximoMezcla).clear();
+            File corrida = nuevaCorrida();
+            archivos.add(corrida);
+            try (DataOutputStream salida = abrir(corrida)) {
+                mezclar(grupo, orden, sumarIguales, limite, (clave, valor) -> {
+                    salida.writeInt(clave);
+                    salida.writeLong(valor);
+                });
+            }
+        }
+    }
+
+    /**
+     * Mezcla las corridas en el orden indicado y las borra.
+     *
+     * @param archivos corridas a mezclar, que se vacía
+     * @param orden orden de las corridas
+     * @param sumarIguales si se suman los valores de las claves repetidas
+     * @param limite cantidad máxima de pares a recorrer
+     * @param visitante destino de los pares
+     */
+    private static void mezclar(List<File> archivos, Comparator<Corrida> orden, boolean sumarIguales, int limite,
+            Visitante visitante) throws IOException {
+        List<Corrida> abiertas = abrirCorridas(archivos);
+        try {
+            PriorityQueue<Corrida> cola = new PriorityQueue<>(Math.max(1, abiertas.size()), orden);
+            for (Corrida corrida : abiertas) {
+                if (corrida.avanzar()) {
+                    cola.add(corrida);
+                }
+            }
+            for (int k = 0; k < limite && !cola.isEmpty(); k++) {
+                Corrida primera = cola.poll();
+                int clave = primera.clave;
+                long valor = primera.valor;
+                if (primera.avanzar()) {
+                    cola.add(primera);
+                }
+                while (sumarIguales && !cola.isEmpty() && cola.peek().clave == clave) {
+                    Corrida igual = cola.poll();
+                    valor += igual.valor;
+                    if (igual.avanzar()) {
+                        cola.add(igual);
+                    }
+                }
+                visitante.fila(clave, valor);
+            }
+        } finally {
+            cerrarCorridas(abiertas, archivos);
+        }
+    }
+
+    /**
+     * Ordena por valor los totales que llegan en orden de clave, en bloques
+     * que entran en la memoria disponible.
+     */
+    private class Ordenacion {
+        final int top;
+        final boolean acotada;
+        long[] valoresBloque;
+        int[] clavesBloque;
+        int cantidad;
+        // Próxima clave que llega en orden, para completar las que faltan con 0
+        int siguiente;
+        final List<File> corridasOrden = new ArrayList<>();
+
+        Ordenacion(int top) {
+            int capacidad = (int) Math.min(Math.max(1, cantidadClaves),
+                    Math.min(Integer.MAX_VALUE - 8, Math.max(1024, memoria / BYTES_POR_ENTRADA)));
+            this.top = top;
+            // Con top menor a medio bloque se descartan los demás sin volcarlos
+            acotada = top > 0 && top <= capacidad / 2;
+            valoresBloque = new long[capacidad];
+            clavesBloque = new int[capacidad];
+        }
+
+        void agregar(int clave, long valor) throws IOException {
+            if (cantidad == valoresBloque.length) {
+                if (acotada) {
+                    conservarMayores();
+                } else {
+                    volcarBloque();
+                }
+            }
+            clavesBloque[cantidad] = clave;
+            valoresBloque[cantidad++] = valor;
+        }
+
+        /**
+         * Agrega una clave que llega en orden, después de las anteriores sin
+         * valores (con 0).
+         */
+        void completar(int clave, long valor) throws IOException {
+            for (; siguiente < clave; siguiente++) {
+                agregar(siguiente, 0);
+            }
+            agregar(clave, valor);
+            siguiente = clave + 1;
+        }
+
+        /**
+         * Deja en el bloque solo los {@code top} mayores, en orden de clave
+         * para que los empates se sigan resolviendo por posición.
+         */
+        void conservarMayores() {
+            int[] mayores = OrdenIndices.mayores(valoresBloque, cantidad, top);
+            Arrays.sort(mayores);
+            for (int k = 0; k < mayores.length; k++) {
+                clavesBloque[k] = clavesBloque[mayores[k]];
+                valoresBloque[k] = valoresBloque[mayores[k]];
+            }
+            cantidad = mayores.length;
+        }
+
+        void volcarBloque() throws IOException {
+            File corrida = nuevaCorrida();
+            try (DataOutputStream salida = abrir(corrida)) {
+                for (int indice : OrdenIndices.ordenar(valoresBloque, cantidad)) {
+                    salida.writeInt(clavesBloque[indice]);
+                    salida.writeLong(valoresBloque[indice]);
+                }
+            }
+            corridasOrden.add(corrida);
+            cantidad = 0;
+        }
+
+        void recorrer(Visitante visitante) throws IOException {
+            int limite = top > 0 ? top : Integer.MAX_VALUE;
+            if (corridasOrden.isEmpty()) {
+                int[] orden = acotada ? OrdenIndices.mayores(valoresBloque, cantidad, top)
+                        : OrdenIndices.ordenar(valoresBloque, cantidad);
+                for (int k = 0; k < orden.length && k < limite; k++) {
+                    visitante.fila(clavesBloque[orden[k]], valoresBloque[orden[k]]);
+                }
+                return;
+            }
+
+            if (cantidad > 0) {
+                volcarBloque();
+            }
+            valoresBloque = null;
+            clavesBloque = null;
+            // Las pasadas intermedias también pueden cortar en top
+            reducir(corridasOrden, POR_VALOR, false, limite);
+            mezclar(corridasOrden, POR_VALOR, false, limite, visitante);
+        }
+    }
+
+    /**
+     * Lectura secuencial de una corrida de pares (clave, valor).
+     */
+    private static class Corrida {
+        final DataInputStream entrada;
+        long restantes;
+        int clave;
+        long valor;
+
+        Corrida(File archivo) throws IOException {
+            restantes = archivo.length() / (Integer.BYTES + Long.BYTES);
+            entrada = new DataInputStream(new BufferedInputStream(new FileInputStream(archivo), BUFFER_CORRIDA));
+        }
+
+        boolean avanzar() throws IOException {
+            if (restantes == 0) {
+                return false;
+            }
+            restantes--;
+            clave = entrada.readInt();
+            valor = entrada.readLong();
+            return true;
+        }
+    }
+
+    private File nuevaCorrida() throws IOException {
+        return Files.createTempFile(directorio, nombre, ".corrida").toFile();
+    }
+
+    private static DataOutputStream abrir(File corrida) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(corrida), BUFFER_CORRIDA));
+    }
+
+    private static List<Corrida> abrirCorridas(List<File> archivos) throws IOException {
+        List<Corrida> abiertas = new ArrayList<>(archivos.size());
+        try {
+            for (File archivo : archivos) {
+                abiertas.add(new Corrida(archivo));
+            }
+        } catch (IOException e) {
+            cerrarCorridas(abiertas, Collections.emptyList());
+            throw e;
+        }
+        return abiertas;
+    }
+
+    private static void cerrarCorridas(List<Corrida> abiertas, List<File> archivos) throws IOException {
+        for (Corrida corrida : abiertas) {
+            corrida.entrada.close();
+        }
+        for (File archivo : archivos) {
+            archivo.delete();
+        }
+        archivos.clear();
+    }
+
+    /**
+     * Borra las corridas que queden y el directorio temporal.
+     */
+    @Override
+    public void close() {
+        File[] restantes = directorio.toFile().listFiles();
+        if (restantes != null) {
+            for (File corrida : restantes) {
+                corrida.delete();
+            }
+        }
+        corridas.clear();
+        directorio.toFile().delete();
+    }
+}
@@ -0,0 +1,468 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+
+/**
+ * Almacén de datos maestros fuera del heap.
+ *
+ * Guarda vendedores.txt y productos.txt en un archivo mapeado en memoria
+ * ({@code maestros.dat}) con una tabla hash de direccionamiento abierto por
+ * catálogo, indexada por los bytes de {@code tipoDoc;numDoc} y del id de
+ * producto. Se construye una vez leyendo los archivos de texto; en las
+ * ejecuciones siguientes se reabre mapeando el archivo, sin leer los
+ * catálogos, y las búsquedas y consultas de nombres y precios se hacen sobre
+ * los bytes mapeados sin crear objetos por entrada. Sirve para catálogos que
+ * no caben cómodamente en el heap.
+ *
+ * Los índices densos coinciden con los de DiccionarioIds: cada identificador
+ * recibe el índice de su primera aparición y una repetición reemplaza los datos
+ * anteriores.
+ *
+ * Estructura del archivo (enteros big-endian, regiones alineadas a 8 bytes):
+ * encabezado de {@value #TAMANO_ENCABEZADO} bytes con la firma, el tamaño y la
+ * fecha de modificación de los archivos de texto y la descripción de cada
+ * tabla; luego, por tabla, las ranuras ({@code int}: índice + 1, 0 = libre),
+ * las posiciones de los registros ({@code long} por índice) y, en productos,
+ * los precios ({@code long} en centavos por índice); al final los registros
+ * {@code hash | largo clave | clave | largo nombre | nombre}, con los largos
+ * alineados a 4 bytes. La firma se escribe al terminar: un archivo sin firma
+ * está incompleto y se reconstruye.
+ */
+public class AlmacenMaestros {
+
+    private static final int FIRMA = 0x564D4132; // "VMA2"
+    private static final int TAMANO_ENCABEZADO = 128;
+    private static final int DESCRIPTOR_VENDEDORES = 40;
+    private static final int DESCRIPTOR_PRODUCTOS = 72;
+    private static final int FIN_DATOS = 104;
+
+    /**
+     * Recibe los vendedores leídos de vendedores.txt.
+     */
+    public interface DestinoVendedores {
+        void vendedor(String tipoDoc, String numDoc, String nombres, String apellidos) throws IOException;
+    }
+
+    /**
+     * Recibe los productos leídos de productos.txt.
+     */
+    public interface DestinoProductos {
+        void producto(String id, String nombre, long precio) throws IOException;
+    }
+
+    private final Memoria memoria;
+    public final Tabla vendedores;
+    public final Tabla productos;
+
+    private AlmacenMaestros(Memoria memoria) {
+        this.memoria = memoria;
+        this.vendedores = new Tabla(memoria, DESCRIPTOR_VENDEDORES);
+        this.productos = new Tabla(memoria, DESCRIPTOR_PRODUCTOS);
+    }
+
+    /**
+     * @param indice índice denso del producto
+     * @return su precio en centavos
+     */
+    public long precio(int indice) {
+        return memoria.getLong(productos.precios + (long) indice * Long.BYTES);
+    }
+
+    /**
+     * Abre un almacén construido antes, si corresponde a la versión actual de
+     * los archivos de texto (mismo tamaño y fecha de modificación).
+     *
+     * @param archivo archivo del almacén
+     * @param archivoVendedores vendedores.txt
+     * @param archivoProductos productos.txt
+     * @return el almacén, o null si no existe, está incompleto o desactualizado
+     * @throws IOException si el archivo existe pero no se puede mapear
+     */
+    public static AlmacenMaestros abrir(File archivo, File archivoVendedores, File archivoProductos)
+            throws IOException {
+        if (!archivo.isFile() || archivo.length() < TAMANO_ENCABEZADO) {
+            return null;
+        }
+        Memoria memoria;
+        try (FileChannel canal = FileChannel.open(archivo.toPath(), StandardOpenOption.READ)) {
+            memoria = new Memoria(canal, FileChannel.MapMode.READ_ONLY, canal.size());
+        }
+        if (memoria.getInt(0) != FIRMA
+                || memoria.getLong(8) != archivoVendedores.length()
+                || memoria.getLong(16) != archivoVendedores.lastModified()
+                || memoria.getLong(24) != archivoProductos.length()
+                || memoria.getLong(32) != archivoProductos.lastModified()
+                || memoria.getLong(FIN_DATOS) != memoria.tamano) {
+            return null;
+        }
+        return new AlmacenMaestros(memoria);
+    }
+
+    /**
+     * Empieza a construir un almacén nuevo. Los vendedores y productos se
+     * agregan con el constructor devuelto y el almacén queda disponible al
+     * llamar a {@link Constructor#terminar()}.
+     *
+     * @param archivo archivo del almacén (se reemplaza al terminar)
+     * @param archivoVendedores vendedores.txt
+     * @param archivoProductos productos.txt
+     * @return el constructor
+     * @throws IOException si no se puede crear el archivo
+     */
+    public static Constructor construir(File archivo, File archivoVendedores, File archivoProductos)
+            throws IOException {
+        return new Constructor(archivo, archivoVendedores, archivoProductos);
+    }
+
+    /**
+     * Tabla hash de un catálogo dentro del archivo mapeado.
+     */
+    public static class Tabla implements BuscadorIds {
+        private final Memoria memoria;
+        private final int cantidad;
+        private final int mascara;
+        private final long ranuras;
+        private final long registros;
+        final long precios;
+
+        private Tabla(Memoria memoria, int descriptor) {
+            this.memoria = memoria;
+            this.cantidad = memoria.getInt(descriptor);
+            this.mascara = memoria.getInt(descriptor + 4) - 1;
+            this.ranuras = memoria.getLong(descriptor + 8);
+            this.registros = memoria.getLong(descriptor + 16);
+            this.precios = memoria.getLong(descriptor + 24);
+        }
+
+        @Override
+        public int buscar(ByteBuffer datos, int desde, int hasta) {
+            int hash = DiccionarioIds.hash(datos, desde, hasta);
+            int largo = hasta - desde;
+            for (int ranura = hash & mascara; ; ranura = (ranura + 1) & mascara) {
+                int indice = memoria.getInt(ranuras + (long) ranura * Integer.BYTES) - 1;
+                if (indice < 0) {
+                    return -1;
+                }
+                long registro = posicionRegistro(indice);
+                if (memoria.getInt(registro) == hash && memoria.getInt(registro + 4) == largo
+                        && memoria.iguales(registro + 8, datos, desde, hasta)) {
+                    return indice;
+                }
+            }
+        }
+
+        @Override
+        public int tamano() {
+            return cantidad;
+        }
+
+        /**
+         * @param indice índice denso de la entrada
+         * @return el nombre guardado (nombres y apellidos en vendedores)
+         */
+        public String nombre(int indice) {
+            long registro = posicionRegistro(indice);
+            long posicionNombre = registro + 8 + alinear4(memoria.getInt(registro + 4));
+            return memoria.texto(posicionNombre + 4, memoria.getInt(posicionNombre));
+        }
+
+        /**
+         * @param indice índice denso de la entrada
+         * @return el identificador ({@code tipoDoc;numDoc} en vendedores)
+         */
+        public String clave(int indice) {
+            long registro = posicionRegistro(indice);
+            return memoria.texto(registro + 8, memoria.getInt(registro + 4));
+        }
+
+        private long posicionRegistro(int indice) {
+            return memoria.getLong(registros + (long) indice * Long.BYTES);
+        }
+    }
+
+    /**
+     * Construcción del almacén: escribe los registros en un archivo temporal
+     * mapeado, con espacio reservado según el tamaño de los archivos de texto,
+     * y al terminar lo recorta, lo sincroniza y lo publica.
+     */
+    public static class Constructor implements DestinoVendedores, DestinoProductos {
+        private final File archivo;
+        private final File temporal;
+        private final File archivoVendedores;
+        private final File archivoProductos;
+        private final FileChannel canal;
+        private final Memoria memoria;
+        private final TablaEnConstruccion vendedores;
+        private final TablaEnConstruccion productos;
+        private long finDatos;
+
+        private Constructor(File archivo, File archivoVendedores, File archivoProductos) throws IOException {
+            this.archivo = archivo;
+            this.temporal = new File(archivo.getPath() + ".tmp");
+            this.archivoVendedores = archivoVendedores;
+            this.archivoProductos = archivoProductos;
+
+            // Cada línea produce a lo sumo una entrada; cada carácter leído ocupa
+            // a lo sumo 3 bytes al volver a codificarlo en UTF-8
+            long lineasVendedores = contarLineas(archivoVendedores);
+            long lineasProductos = contarLineas(archivoProductos);
+            long posicion = TAMANO_ENCABEZADO;
+            vendedores = new TablaEnConstruccion(lineasVendedores, posicion, false);
+            posicion = vendedores.fin;
+            productos = new TablaEnConstruccion(lineasProductos, posicion, true);
+            posicion = productos.fin;
+            finDatos = posicion;
+            long tamano = posicion
+                    + 6 * archivoVendedores.length() + 3 * archivoProductos.length()
+                    + 24 * (lineasVendedores + lineasProductos);
+
+            canal = FileChannel.open(temporal.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            canal.write(ByteBuffer.allocate(1), tamano - 1);
+            memoria = new Memoria(canal, FileChannel.MapMode.READ_WRITE, tamano);
+        }
+
+        @Override
+        public void vendedor(String tipoDoc, String numDoc, String nombres, String apellidos) {
+            agregar(vendedores, tipoDoc + ";" + numDoc, nombres + " " + apellidos);
+        }
+
+        @Override
+        public void producto(String id, String nombre, long precio) {
+            int indice = agregar(productos, id, nombre);
+            memoria.putLong(productos.precios + (long) indice * Long.BYTES, precio);
+        }
+
+        private int agregar(TablaEnConstruccion tabla, String id, String nombre) {
+            byte[] clave = id.getBytes(StandardCharsets.UTF_8);
+            byte[] bytesNombre = nombre.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer datosClave = ByteBuffer.wrap(clave);
+            int hash = DiccionarioIds.hash(datosClave, 0, clave.length);
+
+            long registro = finDatos;
+            memoria.putInt(registro, hash);
+            memoria.putInt(registro + 4, clave.length);
+            memoria.put(registro + 8, clave);
+            long posicionNombre = registro + 8 + alinear4(clave.length);
+            memoria.putInt(posicionNombre, bytesNombre.length);
+            memoria.put(posicionNombre + 4, bytesNombre);
+            finDatos = posicionNombre + 4 + alinear4(bytesNombre.length);
+
+            int ranura = hash & tabla.mascara;
+            while (true) {
+                long posicionRanura = tabla.ranuras + (long) ranura * Integer.BYTES;
+                int indice = memoria.getInt(posicionRanura) - 1;
+                if (indice < 0) {
+                    indice = tabla.cantidad++;
+                    memoria.putInt(posicionRanura, indice + 1);
+                    memoria.putLong(tabla.registros + (long) indice * Long.BYTES, registro);
+                    return indice;
+                }
+                long anterior = memoria.getLong(tabla.registros + (long) indice * Long.BYTES);
+                if (memoria.getInt(anterior) == hash && memoria.getInt(anterior + 4) == clave.length
+                        && memoria.iguales(anterior + 8, datosClave, 0, clave.length)) {
+                    // Identificador repetido: conserva el índice, con los datos nuevos
+                    memoria.putLong(tabla.registros + (long) indice * Long.BYTES, registro);
+                    return indice;
+                }
+                ranura = (ranura + 1) & tabla.mascara;
+            }
+        }
+
+        /**
+         * @return cantidad de vendedores agregados hasta el momento
+         */
+        public int vendedores() {
+            return vendedores.cantidad;
+        }
+
+        /**
+         * @return cantidad de productos agregados hasta el momento
+         */
+        public int productos() {
+            return productos.cantidad;
+        }
+
+        /**
+         * Completa el encabezado, recorta el espacio reservado sin usar y
+         * publica el archivo.
+         *
+         * @return el almacén construido, abierto para consultas
+         * @throws IOException si no se puede escribir el archivo
+         */
+        public AlmacenMaestros terminar() throws IOException {
+            memoria.putLong(8, archivoVendedores.length());
+            memoria.putLong(16, archivoVendedores.lastModified());
+            memoria.putLong(24, archivoProductos.length());
+            memoria.putLong(32, archivoProductos.lastModified());
+            vendedores.describir(memoria, DESCRIPTOR_VENDEDORES);
+            productos.describir(memoria, DESCRIPTOR_PRODUCTOS);
+            memoria.putLong(FIN_DATOS, finDatos);
+            memoria.forzar();
+            // La firma va al final: su presencia indica que el archivo está completo
+            memoria.putInt(0, FIRMA);
+            memoria.forzar();
+
+            canal.truncate(finDatos);
+            canal.force(true);
+            canal.close();
+            Files.move(temporal.toPath(), archivo.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+
+            AlmacenMaestros almacen = abrir(archivo, archivoVendedores, archivoProductos);
+            if (almacen == null) {
+                throw new IOException("Los datos maestros cambiaron durante la construcción de "
+                        + archivo.getName());
+            }
+            return almacen;
+        }
+
+        /**
+         * Descarta la construcción y borra el archivo temporal.
+         */
+        public void descartar() {
+            try {
+                canal.close();
+            } catch (IOException e) {
+                // Se intenta borrar igual
+            }
+            temporal.delete();
+        }
+    }
+
+    /**
+     * Ubicación de las regiones de una tabla durante la construcción.
+     */
+    private static class TablaEnConstruccion {
+        final int mascara;
+        final long ranuras;
+        final long registros;
+        final long precios;
+        final long fin;
+        int cantidad;
+
+        TablaEnConstruccion(long maximoEntradas, long inicio, boolean conPrecios) throws IOException {
+            if (maximoEntradas > (1 << 29)) {
+                throw new IOException("Catálogo demasiado grande para el almacén de maestros");
+            }
+            // Ocupación máxima del 50%, como en DiccionarioIds
+            int capacidad = Integer.highestOneBit((int) Math.max(8, maximoEntradas * 2 - 1)) << 1;
+            mascara = capacidad - 1;
+            ranuras = inicio;
+            registros = alinear8(ranuras + (long) capacidad * Integer.BYTES);
+            precios = conPrecios ? registros + maximoEntradas * Long.BYTES : -1;
+            fin = (conPrecios ? precios : registros) + maximoEntradas * Long.BYTES;
+        }
+
+        void describir(Memoria memoria, int descriptor) {
+            memoria.putInt(descriptor, cantidad);
+            memoria.putInt(descriptor + 4, mascara + 1);
+            memoria.putLong(descriptor + 8, ranuras);
+            memoria.putLong(descriptor + 16, registros);
+            memoria.putLong(descriptor + 24, precios);
+        }
+    }
+
+    private static long contarLineas(File archivo) throws IOException {
+        long lineas = 1;
+        byte[] bloque = new byte[1 << 16];
+        try (FileInputStream entrada = new FileInputStream(archivo)) {
+            int leidos;
+            while ((leidos = entrada.read(bloque)) > 0) {
+                for (int i = 0; i < leidos; i++) {
+                    if (bloque[i] == '\n' || bloque[i] == '\r') {
+                        lineas++;
+                    }
+                }
+            }
+        }
+        return lineas;
+    }
+
+    private static long alinear4(long valor) {
+        return (valor + 3) & ~3L;
+    }
+
+    private static long alinear8(long valor) {
+        return (valor + 7) & ~7L;
+    }
+
+    /**
+     * Archivo mapeado en bloques de 1 GB (un MappedByteBuffer no supera 2 GB)
+     * con acceso por posición de 64 bits. Los enteros y largos están
+     * alineados, así que nunca cruzan el límite entre bloques.
+     */
+    private static class Memoria {
+        private static final int BITS_BLOQUE = 30;
+        private static final long MASCARA_BLOQUE = (1L << BITS_BLOQUE) - 1;
+
+        final long tamano;
+        private final MappedByteBuffer[] bloques;
+
+        Memoria(FileChannel canal, FileChannel.MapMode modo, long tamano) throws IOException {
+            this.tamano = tamano;
+            bloques = new MappedByteBuffer[(int) ((tamano + MASCARA_BLOQUE) >>> BITS_BLOQUE)];
+            for (int i = 0; i < bloques.length; i++) {
+                long inicio = (long) i << BITS_BLOQUE;
+                bloques[i] = canal.map(modo, inicio, Math.min(MASCARA_BLOQUE + 1, tamano - inicio));
+            }
+        }
+
+        private MappedByteBuffer bloque(long posicion) {
+            return bloques[(int) (posicion >>> BITS_BLOQUE)];
+        }
+
+        byte get(long posicion) {
+            return bloque(posicion).get((int) (posicion & MASCARA_BLOQUE));
+        }
+
+        int getInt(long posicion) {
+            return bloque(posicion).getInt((int) (posicion & MASCARA_BLOQUE));
+        }
+
+        long getLong(long posicion) {
+            return bloque(posicion).getLong((int) (posicion & MASCARA_BLOQUE));
+        }
+
+        void putInt(long posicion, int valor) {
+            bloque(posicion).putInt((int) (posicion & MASCARA_BLOQUE), valor);
+        }
+
+        void putLong(long posicion, long valor) {
+            bloque(posicion).putLong((int) (posicion & MASCARA_BLOQUE), valor);
+        }
+
+        void put(long posicion, byte[] bytes) {
+            for (int i = 0; i < bytes.length; i++) {
+                long destino = posicion + i;
+                bloque(destino).put((int) (destino & MASCARA_BLOQUE), bytes[i]);
+            }
+        }
+
+        boolean iguales(long posicion, ByteBuffer datos, int desde, int hasta) {
+            for (int i = desde; i < hasta; i++, posicion++) {
+                if (get(posicion) != datos.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        String texto(long posicion, int largo) {
+            byte[] bytes = new byte[largo];
+            for (int i = 0; i < largo; i++) {
+                bytes[i] = get(posicion + i);
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        void forzar() {
+            for (MappedByteBuffer bloque : bloques) {
+                bloque.force();
+            }
+        }
+    }
+}
@@ -0,0 +1,24 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Búsqueda del índice denso de un identificador directamente sobre bytes.
+ * La implementan el diccionario en memoria (DiccionarioIds) y las tablas del
+ * almacén de datos maestros mapeado (AlmacenMaestros).
+ */
+public interface BuscadorIds {
+
+    /**
+     * Busca el identificador contenido en datos[desde, hasta).
+     *
+     * @param datos bytes donde está el identificador
+     * @param desde posición inicial (inclusiva)
+     * @param hasta posición final (exclusiva)
+     * @return índice del identificador o -1 si no está registrado
+     */
+    int buscar(ByteBuffer datos, int desde, int hasta);
+
+    /**
+     * @return cantidad de identificadores registrados
+     */
+    int tamano();
+}
@@ -0,0 +1,202 @@
+import java.io.*;
+import java.nio.file.*;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Caché de reportes ya generados, indexada por una huella de las entradas.
+ *
+ * La huella resume vendedores.txt, productos.txt y la lista de fuentes de
+ * ventas (nombre, tamaño y fecha de modificación, y opcionalmente el CRC32C
+ * del contenido) junto con las opciones que cambian el contenido de los
+ * reportes. Si la huella de una ejecución ya está en la caché, se copian los
+ * reportes guardados sin leer ningún archivo de datos. Como no depende de la
+ * ruta del directorio, dos copias idénticas de los datos comparten la entrada.
+ *
+ * Cada entrada es un subdirectorio con el nombre de la huella. Se escribe en
+ * un directorio temporal y se publica con un renombre atómico, así que varios
+ * procesos pueden compartir la caché. Al superar la capacidad se borran las
+ * entradas usadas hace más tiempo: cada acierto actualiza la fecha de
+ * modificación de su entrada y esa fecha define el orden LRU.
+ *
+ * Un archivo que no existía al guardar (como la cuarentena de una ingesta
+ * sin rechazos) se guarda vacío y al recuperarlo se borra del destino, para
+ * no dejar el de otra ejecución. Así cada entrada tiene siempre todos sus
+ * archivos y uno faltante solo indica que la entrada se está desalojando.
+ */
+public class CacheResultados {
+
+    // Cambia si cambia el formato de los reportes, para no reutilizar los anteriores
+    private static final int VERSION = 2;
+    private static final String PREFIJO_TEMPORAL = ".nueva-";
+    // Antigüedad a partir de la cual un temporal se considera abandonado
+    private static final long ABANDONO_MS = 60 * 60 * 1000L;
+
+    private final File directorio;
+    private final int capacidad;
+
+    /**
+     * @param directorio directorio de la caché (se crea si no existe)
+     * @param capacidad cantidad máxima de entradas
+     */
+    public CacheResultados(File directorio, int capacidad) {
+        this.directorio = directorio;
+        this.capacidad = capacidad;
+    }
+
+    /**
+     * Calcula la huella de las entradas de una ejecución.
+     *
+     * @param opciones opciones que cambian el contenido de los reportes
+     * @param contenido si se incluye el CRC32C del contenido de cada archivo
+     *                  (más lento, pero detecta cambios que conservan tamaño y fecha)
+     * @param vendedores vendedores.txt
+     * @param productos productos.txt
+     * @param fuentes fuentes de ventas, en el orden en que se procesan
+     * @return huella en hexadecimal
+     * @throws IOException si no se puede leer algún archivo
+     */
+    public static String huella(String opciones, boolean contenido, File vendedores, File productos,
+            FuenteVentas[] fuentes) throws IOException {
+        MessageDigest resumen;
+        try {
+            resumen = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+        try (DataOutputStream salida = new DataOutputStream(new BufferedOutputStream(
+                new DigestOutputStream(OutputStream.nullOutputStream(), resumen)))) {
+            salida.writeInt(VERSION);
+            salida.writeUTF(opciones);
+            agregarArchivo(salida, vendedores, contenido);
+            agregarArchivo(salida, productos, contenido);
+            salida.writeInt(fuentes.length);
+            for (FuenteVentas fuente : fuentes) {
+                salida.writeUTF(fuente.clave());
+                if (fuente.enSegmento()) {
+                    // Los registros de un segmento no cambian y su CRC está en el índice
+                    salida.writeInt(fuente.longitud);
+                    salida.writeLong(fuente.crc);
+                } else {
+                    agregarArchivo(salida, fuente.archivo, contenido);
+                }
+            }
+        }
+        return HexFormat.of().formatHex(resumen.digest(), 0, 16);
+    }
+
+    private static void agregarArchivo(DataOutputStream salida, File archivo, boolean contenido)
+            throws IOException {
+        salida.writeLong(archivo.length());
+        salida.writeLong(archivo.lastModified());
+        if (contenido) {
+            salida.writeLong(PuntoControl.crc(archivo));
+        }
+    }
+
+    /**
+     * Copia los reportes guardados con la huella al directorio de destino.
+     *
+     * @param huella huella de las entradas
+     * @param destino directorio donde se escriben los reportes
+     * @param reportes nombres de los reportes y demás archivos de resultados
+     * @return true si la huella estaba en la caché y se copiaron los reportes
+     * @throws IOException si no se pueden escribir los reportes
+     */
+    public boolean recuperar(String huella, File destino, String... reportes) throws IOException {
+        File entrada = new File(directorio, huella);
+        if (!entrada.isDirectory()) {
+            return false;
+        }
+        try {
+            for (String nombre : reportes) {
+                // Copia a un temporal y renombre, para no dejar un reporte a medias
+                Path temporal = new File(destino, nombre + ".tmp").toPath();
+                File guardado = new File(entrada, nombre);
+                if (!guardado.exists()) {
+                    throw new NoSuchFileException(guardado.getPath());
+                }
+                if (guardado.length() == 0) {
+                    Files.deleteIfExists(new File(destino, nombre).toPath());
+                    continue;
+                }
+                Files.copy(guardado.toPath(), temporal, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(temporal, new File(destino, nombre).toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            }
+        } catch (NoSuchFileException e) {
+            // Otro proceso desalojó la entrada mientras se copiaba
+            return false;
+        }
+        entrada.setLastModified(System.currentTimeMillis());
+        return true;
+    }
+
+    /**
+     * Guarda los reportes con la huella y desaloja las entradas menos usadas
+     * si se supera la capacidad.
+     *
+     * @param huella huella de las entradas con que se generaron
+     * @param origen directorio donde están los reportes
+     * @param reportes nombres de los reportes y demás archivos de resultados
+     * @throws IOException si no se puede escribir la caché
+     */
+    public void guardar(String huella, File origen, String... reportes) throws IOException {
+        Files.createDirectories(directorio.toPath());
+        Path temporal = Files.createTempDirectory(directorio.toPath(), PREFIJO_TEMPORAL);
+        try {
+            for (String nombre : reportes) {
+                File archivo = new File(origen, nombre);
+                if (archivo.exists()) {
+                    Files.copy(archivo.toPath(), temporal.resolve(nombre));
+                } else {
+                    Files.createFile(temporal.resolve(nombre));
+                }
+            }
+            try {
+                Files.move(temporal, new File(directorio, huella).toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException | DirectoryNotEmptyException e) {
+                // Otro proceso guardó la misma huella antes
+            }
+        } finally {
+            borrar(temporal.toFile());
+        }
+        desalojar();
+    }
+
+    private void desalojar() {
+        File[] entradas = directorio.listFiles(File::isDirectory);
+        if (entradas == null) {
+            return;
+        }
+        long ahora = System.currentTimeMillis();
+        List<File> publicadas = new ArrayList<>();
+        for (File entrada : entradas) {
+            if (!entrada.getName().startsWith(PREFIJO_TEMPORAL)) {
+                publicadas.add(entrada);
+            } else if (ahora - entrada.lastModified() > ABANDONO_MS) {
+                borrar(entrada);
+            }
+        }
+        if (publicadas.size() <= capacidad) {
+            return;
+        }
+        // Las más recientes primero; se conservan las primeras 'capacidad'
+        publicadas.sort(Comparator.comparingLong(File::lastModified).reversed());
+        for (File entrada : publicadas.subList(capacidad, publicadas.size())) {
+            borrar(entrada);
+        }
+    }
+
+    private static void borrar(File entrada) {
+        File[] archivos = entrada.listFiles();
+        if (archivos != null) {
+            for (File archivo : archivos) {
+                archivo.delete();
+            }
+        }
+        entrada.delete();
+    }
+}
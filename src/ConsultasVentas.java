@@ -0,0 +1,654 @@
+import java.util.*;
+
+/**
+ * Consultas en memoria sobre las ventas ya procesadas.
+ *
+ * Los índices se construyen una vez al terminar la ingesta, a partir del
+ * aporte de cada archivo (vendedor y cantidades por producto):
+ * 1. Cantidades por vendedor y producto, agrupadas por vendedor (CSR) y su
+ *    transpuesta agrupada por producto, ambas ordenadas por índice.
+ * 2. Vendedores por tipo de documento.
+ * 3. Productos ordenados por precio, para los rangos de precio.
+ * 4. Vendedores y productos en el orden de los reportes, para los grupos.
+ *
+ * Sintaxis (una consulta por línea, cláusulas en cualquier orden):
+ * <pre>
+ * vendedores [tipo CC,CE] [precio MIN MAX] [producto ID] [por producto] [top N]
+ * productos  [tipo CC,CE] [precio MIN MAX] [vendedor TIPO;NUM] [por vendedor] [top N]
+ * </pre>
+ * {@code vendedores} ordena por recaudación y {@code productos} por cantidad
+ * vendida, de mayor a menor. Con {@code por producto} / {@code por vendedor}
+ * se lista el top N de cada grupo; los grupos siguen el orden de los
+ * reportes. En los rangos de precio {@code *} indica sin límite.
+ */
+public class ConsultasVentas {
+
+    /**
+     * Texto de ayuda con la sintaxis de las consultas.
+     */
+    public static final String AYUDA =
+            "vendedores [tipo CC,CE] [precio MIN MAX] [producto ID] [por producto] [top N]\n"
+            + "productos  [tipo CC,CE] [precio MIN MAX] [vendedor TIPO;NUM] [por vendedor] [top N]\n"
+            + "  precio: rango inclusivo, * = sin límite; top N: por grupo con 'por'\n";
+
+    /**
+     * Acceso a los datos maestros por índice denso, con búsqueda por
+     * identificador.
+     */
+    public interface Catalogo extends CruceVentas.Catalogo {
+        /** @return índice del vendedor o -1 si no existe */
+        int buscarVendedor(String identificacion);
+
+        /** @return índice del producto o -1 si no existe */
+        int buscarProducto(String id);
+    }
+
+    private final Catalogo catalogo;
+    // Precios y recaudaciones en centavos
+    private final long[] precios;
+    private final long[] ventasPorProducto;
+    private final long[] recaudacionPorVendedor;
+
+    // Cantidades por vendedor: productos y cantidades en [inicioVendedor[v], inicioVendedor[v + 1])
+    private final int[] inicioVendedor;
+    private final int[] productoVendedor;
+    private final long[] cantidadVendedor;
+
+    // Transpuesta: vendedores y cantidades de cada producto
+    private final int[] inicioProducto;
+    private final int[] vendedorProducto;
+    private final long[] cantidadProducto;
+
+    // Tipos de documento y vendedores de cada tipo, en orden de índice
+    private final Map<String, int[]> vendedoresPorTipo;
+    private final short[] tipoPorVendedor;
+    private final List<String> tipos;
+
+    // Productos de mayor a menor precio
+    private final int[] productosPorPrecio;
+
+    // Orden de los reportes, para los grupos de las consultas con 'por'
+    private final int[] vendedoresPorRecaudacion;
+    private final int[] productosPorCantidad;
+
+    // Acumuladores por producto reutilizados entre consultas; se limpian
+    // recorriendo solo los productos tocados
+    private long[] acumulado;
+    private boolean[] tocado;
+
+    /**
+     * Acumula el aporte de cada archivo para construir los índices.
+     */
+    public static class Constructor {
+        private final int vendedores;
+        private final int productos;
+        private int[] vendedor = new int[1024];
+        private int[] producto = new int[1024];
+        private long[] cantidad = new long[1024];
+        private int tamano;
+
+        /**
+         * @param vendedores cantidad de vendedores
+         * @param productos cantidad de productos
+         */
+        public Constructor(int vendedores, int productos) {
+            this.vendedores = vendedores;
+            this.productos = productos;
+        }
+
+        /**
+         * Agrega las cantidades vendidas por un vendedor en un archivo.
+         *
+         * @param indiceVendedor vendedor del archivo
+         * @param indicesProductos productos vendidos
+         * @param cantidades cantidad de cada producto
+         */
+        public void agregar(int indiceVendedor, int[] indicesProductos, long[] cantidades) {
+            int requerido = tamano + indicesProductos.length;
+            if (requerido > vendedor.length) {
+                int capacidad = Math.max(requerido, vendedor.length * 2);
+                vendedor = Arrays.copyOf(vendedor, capacidad);
+                producto = Arrays.copyOf(producto, capacidad);
+                cantidad = Arrays.copyOf(cantidad, capacidad);
+            }
+            for (int i = 0; i < indicesProductos.length; i++) {
+                vendedor[tamano] = indiceVendedor;
+                producto[tamano] = indicesProductos[i];
+                cantidad[tamano++] = cantidades[i];
+            }
+        }
+
+        /**
+         * Construye los índices.
+         *
+         * @param catalogo datos maestros
+         * @param precios precio de cada producto, en centavos
+         * @param ventasPorProducto cantidad total vendida de cada producto
+         * @param recaudacionPorVendedor recaudación total de cada vendedor, en centavos
+         * @return el motor de consultas
+         */
+        public ConsultasVentas construir(Catalogo catalogo, long[] precios, long[] ventasPorProducto,
+                long[] recaudacionPorVendedor) {
+            return new ConsultasVentas(this, catalogo, precios, ventasPorProducto, recaudacionPorVendedor);
+        }
+    }
+
+    private ConsultasVentas(Constructor datos, Catalogo catalogo, long[] precios, long[] ventasPorProducto,
+            long[] recaudacionPorVendedor) {
+        this.catalogo = catalogo;
+        this.precios = precios;
+        this.ventasPorProducto = ventasPorProducto;
+        this.recaudacionPorVendedor = recaudacionPorVendedor;
+
+        // Agrupar por vendedor (ordenamiento por conteo) y dentro de cada
+        // vendedor ordenar por producto, combinando los repetidos
+        int cantidadVendedores = datos.vendedores;
+        int[] conteo = new int[cantidadVendedores + 1];
+        for (int i = 0; i < datos.tamano; i++) {
+            conteo[datos.vendedor[i] + 1]++;
+        }
+        for (int v = 0; v < cantidadVendedores; v++) {
+            conteo[v + 1] += conteo[v];
+        }
+        int[] siguiente = Arrays.copyOf(conteo, cantidadVendedores);
+        long[] claves = new long[datos.tamano];
+        for (int i = 0; i < datos.tamano; i++) {
+            // Producto en la parte alta para ordenar; posición original en la baja
+            claves[siguiente[datos.vendedor[i]]++] = ((long) datos.producto[i] << 32) | i;
+        }
+
+        inicioVendedor = new int[cantidadVendedores + 1];
+        int[] productoCombinado = new int[datos.tamano];
+        long[] cantidadCombinada = new long[datos.tamano];
+        int escritos = 0;
+        for (int v = 0; v < cantidadVendedores; v++) {
+            inicioVendedor[v] = escritos;
+            Arrays.sort(claves, conteo[v], conteo[v + 1]);
+            for (int k = conteo[v]; k < conteo[v + 1]; k++) {
+                int indiceProducto = (int) (claves[k] >>> 32);
+                long cantidad = datos.cantidad[(int) claves[k]];
+                if (escritos > inicioVendedor[v] && productoCombinado[escritos - 1] == indiceProducto) {
+                    cantidadCombinada[escritos - 1] += cantidad;
+                } else {
+                    productoCombinado[escritos] = indiceProducto;
+                    cantidadCombinada[escritos++] = cantidad;
+                }
+            }
+        }
+        inicioVendedor[cantidadVendedores] = escritos;
+        productoVendedor = Arrays.copyOf(productoCombinado, escritos);
+        cantidadVendedor = Arrays.copyOf(cantidadCombinada, escritos);
+
+        // Transpuesta por producto; al recorrer los vendedores en orden, cada
+        // lista queda ordenada por vendedor
+        int cantidadProductos = datos.productos;
+        inicioProducto = new int[cantidadProductos + 1];
+        for (int k = 0; k < escritos; k++) {
+            inicioProducto[productoVendedor[k] + 1]++;
+        }
+        for (int p = 0; p < cantidadProductos; p++) {
+            inicioProducto[p + 1] += inicioProducto[p];
+        }
+        int[] posicion = Arrays.copyOf(inicioProducto, cantidadProductos);
+        vendedorProducto = new int[escritos];
+        cantidadProducto = new long[escritos];
+        for (int v = 0; v < cantidadVendedores; v++) {
+            for (int k = inicioVendedor[v]; k < inicioVendedor[v + 1]; k++) {
+                int destino = posicion[productoVendedor[k]]++;
+                vendedorProducto[destino] = v;
+                cantidadProducto[destino] = cantidadVendedor[k];
+            }
+        }
+
+        // Vendedores por tipo de documento
+        tipos = new ArrayList<>();
+        Map<String, Integer> codigos = new HashMap<>();
+        tipoPorVendedor = new short[cantidadVendedores];
+        int[] porTipo = new int[0];
+        for (int v = 0; v < cantidadVendedores; v++) {
+            String identificacion = catalogo.identificacionVendedor(v);
+            int separador = identificacion.indexOf(';');
+            String tipo = separador < 0 ? identificacion : identificacion.substring(0, separador);
+            Integer codigo = codigos.get(tipo);
+            if (codigo == null) {
+                if (tipos.size() > Short.MAX_VALUE) {
+                    throw new IllegalStateException("Demasiados tipos de documento distintos");
+                }
+                codigo = tipos.size();
+                codigos.put(tipo, codigo);
+                tipos.add(tipo);
+                porTipo = Arrays.copyOf(porTipo, tipos.size());
+            }
+            tipoPorVendedor[v] = (short) (int) codigo;
+            porTipo[codigo]++;
+        }
+        vendedoresPorTipo = new HashMap<>();
+        int[][] listas = new int[tipos.size()][];
+        for (int t = 0; t < listas.length; t++) {
+            listas[t] = new int[porTipo[t]];
+            vendedoresPorTipo.put(tipos.get(t), listas[t]);
+        }
+        int[] llenos = new int[tipos.size()];
+        for (int v = 0; v < cantidadVendedores; v++) {
+            listas[tipoPorVendedor[v]][llenos[tipoPorVendedor[v]]++] = v;
+        }
+
+        productosPorPrecio = OrdenIndices.ordenar(precios);
+        vendedoresPorRecaudacion = OrdenIndices.ordenar(recaudacionPorVendedor);
+        productosPorCantidad = OrdenIndices.ordenar(ventasPorProducto);
+    }
+
+    /**
+     * Filtros y forma de una consulta.
+     */
+    private static class Consulta {
+        boolean vendedores;
+        boolean agrupada;
+        List<String> tipos;
+        // Por código de tipo, si está entre los pedidos (null = todos)
+        boolean[] tiposPermitidos;
+        // Rango de precio en centavos, inclusivo
+        long precioMinimo = Long.MIN_VALUE;
+        long precioMaximo = Long.MAX_VALUE;
+        boolean conPrecio;
+        int producto = -1;
+        int vendedor = -1;
+        int top;
+
+        boolean enRango(long precio) {
+            return precio >= precioMinimo && precio <= precioMaximo;
+        }
+    }
+
+    /**
+     * Ejecuta una consulta y escribe el resultado en formato CSV, con
+     * encabezado.
+     *
+     * @param texto consulta (ver la sintaxis en la descripción de la clase)
+     * @param salida destino del resultado
+     * @return cantidad de filas del resultado
+     * @throws IllegalArgumentException si la consulta no es válida
+     */
+    public int consultar(String texto, StringBuilder salida) {
+        Consulta consulta = interpretar(texto);
+        if (consulta.vendedores) {
+            return consulta.agrupada ? vendedoresPorProducto(consulta, salida) : vendedores(consulta, salida);
+        }
+        return consulta.agrupada ? productosPorVendedor(consulta, salida) : productos(consulta, salida);
+    }
+
+    private Consulta interpretar(String texto) {
+        String[] partes = texto.trim().split("\\s+");
+        Consulta consulta = new Consulta();
+        if (partes[0].equals("vendedores")) {
+            consulta.vendedores = true;
+        } else if (!partes[0].equals("productos")) {
+            throw new IllegalArgumentException("La consulta debe empezar con 'vendedores' o 'productos'");
+        }
+
+        for (int i = 1; i < partes.length; i++) {
+            String clausula = partes[i];
+            if (i + 1 >= partes.length) {
+                throw new IllegalArgumentException("Falta el valor de '" + clausula + "'");
+            }
+            String valor = partes[++i];
+            switch (clausula) {
+                case "tipo":
+                    // Sin repetidos, para no contar dos veces a los vendedores de un tipo
+                    consulta.tipos = new ArrayList<>(new LinkedHashSet<>(Arrays.asList(valor.split(","))));
+                    consulta.tiposPermitidos = new boolean[tipos.size()];
+                    for (int t = 0; t < tipos.size(); t++) {
+                        consulta.tiposPermitidos[t] = consulta.tipos.contains(tipos.get(t));
+                    }
+                    break;
+                case "precio":
+                    if (i + 1 >= partes.length) {
+                        throw new IllegalArgumentException("'precio' espera un mínimo y un máximo");
+                    }
+                    consulta.precioMinimo = limitePrecio(valor, Long.MIN_VALUE);
+                    consulta.precioMaximo = limitePrecio(partes[++i], Long.MAX_VALUE);
+                    consulta.conPrecio = true;
+                    break;
+                case "producto":
+                    if (!consulta.vendedores) {
+                        throw new IllegalArgumentException("'producto' solo aplica a consultas de vendedores");
+                    }
+                    consulta.producto = catalogo.buscarProducto(valor);
+                    if (consulta.producto < 0) {
+                        throw new IllegalArgumentException("Producto no encontrado: " + valor);
+                    }
+                    break;
+                case "vendedor":
+                    if (consulta.vendedores) {
+                        throw new IllegalArgumentException("'vendedor' solo aplica a consultas de productos");
+                    }
+                    consulta.vendedor = catalogo.buscarVendedor(valor);
+                    if (consulta.vendedor < 0) {
+                        throw new IllegalArgumentException("Vendedor no encontrado: " + valor);
+                    }
+                    break;
+                case "por":
+                    if (!valor.equals(consulta.vendedores ? "producto" : "vendedor")) {
+                        throw new IllegalArgumentException("Agrupación no disponible: por " + valor);
+                    }
+                    consulta.agrupada = true;
+                    break;
+                case "top":
+                    consulta.top = Integer.parseInt(valor);
+                    if (consulta.top <= 0) {
+                        throw new IllegalArgumentException("El valor de 'top' debe ser mayor a 0");
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Cláusula desconocida: " + clausula);
+            }
+        }
+        return consulta;
+    }
+
+    private static long limitePrecio(String valor, long sinLimite) {
+        if (valor.equals("*")) {
+            return sinLimite;
+        }
+        try {
+            return ParserVentas.parsearCentavos(valor);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Precio inválido: " + valor);
+        }
+    }
+
+    /**
+     * Vendedores de los tipos pedidos, en orden de índice.
+     */
+    private int[] vendedoresCandidatos(Consulta consulta) {
+        if (consulta.tipos == null) {
+            return todos(recaudacionPorVendedor.length);
+        }
+        int[] candidatos = new int[0];
+        for (String tipo : consulta.tipos) {
+            int[] lista = vendedoresPorTipo.getOrDefault(tipo, new int[0]);
+            int anterior = candidatos.length;
+            candidatos = Arrays.copyOf(candidatos, anterior + lista.length);
+            System.arraycopy(lista, 0, candidatos, anterior, lista.length);
+        }
+        Arrays.sort(candidatos);
+        return candidatos;
+    }
+
+    private boolean tipoPermitido(Consulta consulta, int vendedor) {
+        return consulta.tiposPermitidos == null || consulta.tiposPermitidos[tipoPorVendedor[vendedor]];
+    }
+
+    /**
+     * Productos dentro del rango de precio, en orden de índice.
+     */
+    private int[] productosEnRango(Consulta consulta) {
+        // productosPorPrecio está de mayor a menor precio
+        int desde = 0;
+        int hasta = productosPorPrecio.length;
+        int bajo = 0;
+        int alto = productosPorPrecio.length;
+        while (bajo < alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (precios[productosPorPrecio[medio]] > consulta.precioMaximo) {
+                bajo = medio + 1;
+            } else {
+                alto = medio;
+            }
+        }
+        desde = bajo;
+        alto = productosPorPrecio.length;
+        while (bajo < alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (precios[productosPorPrecio[medio]] >= consulta.precioMinimo) {
+                bajo = medio + 1;
+            } else {
+                alto = medio;
+            }
+        }
+        hasta = bajo;
+        if (hasta - desde > precios.length / 16) {
+            // Rango amplio: recorrer en orden es más barato que ordenar el tramo
+            int[] productos = new int[hasta - desde];
+            int cantidad = 0;
+            for (int p = 0; p < precios.length; p++) {
+                if (consulta.enRango(precios[p])) {
+                    productos[cantidad++] = p;
+                }
+            }
+            return productos;
+        }
+        int[] productos = Arrays.copyOfRange(productosPorPrecio, desde, hasta);
+        Arrays.sort(productos);
+        return productos;
+    }
+
+    private int vendedores(Consulta consulta, StringBuilder salida) {
+        if (consulta.producto < 0 && consulta.tipos == null && !consulta.conPrecio) {
+            // Sin filtros: el orden del reporte
+            salida.append("Vendedor;Recaudacion\n");
+            int filas = limite(vendedoresPorRecaudacion.length, consulta.top);
+            for (int i = 0; i < filas; i++) {
+                int v = vendedoresPorRecaudacion[i];
+                salida.append(catalogo.nombreVendedor(v)).append(';');
+                FormatoNumeros.agregarCentavos(salida, recaudacionPorVendedor[v]);
+                salida.append('\n');
+            }
+            return filas;
+        }
+        int[] candidatos;
+        long[] recaudacion;
+        int cantidad = 0;
+        if (consulta.producto >= 0) {
+            // Recaudación del producto por cada vendedor que lo vendió
+            int p = consulta.producto;
+            candidatos = new int[inicioProducto[p + 1] - inicioProducto[p]];
+            recaudacion = new long[candidatos.length];
+            if (consulta.enRango(precios[p])) {
+                for (int k = inicioProducto[p]; k < inicioProducto[p + 1]; k++) {
+                    if (tipoPermitido(consulta, vendedorProducto[k])) {
+                        candidatos[cantidad] = vendedorProducto[k];
+                        recaudacion[cantidad++] = cantidadProducto[k] * precios[p];
+                    }
+                }
+            }
+        } else {
+            candidatos = vendedoresCandidatos(consulta);
+            recaudacion = new long[candidatos.length];
+            for (int v : candidatos) {
+                if (!consulta.conPrecio) {
+                    candidatos[cantidad] = v;
+                    recaudacion[cantidad++] = recaudacionPorVendedor[v];
+                    continue;
+                }
+                // Solo los productos del rango de precio
+                long suma = 0;
+                boolean vendio = false;
+                for (int k = inicioVendedor[v]; k < inicioVendedor[v + 1]; k++) {
+                    long precio = precios[productoVendedor[k]];
+                    if (consulta.enRango(precio)) {
+                        suma += cantidadVendedor[k] * precio;
+                        vendio = true;
+                    }
+                }
+                if (vendio) {
+                    candidatos[cantidad] = v;
+                    recaudacion[cantidad++] = suma;
+                }
+            }
+        }
+
+        salida.append("Vendedor;Recaudacion\n");
+        int[] orden = ordenar(recaudacion, cantidad, consulta.top);
+        for (int posicion : orden) {
+            salida.append(catalogo.nombreVendedor(candidatos[posicion])).append(';');
+            FormatoNumeros.agregarCentavos(salida, recaudacion[posicion]);
+            salida.append('\n');
+        }
+        return orden.length;
+    }
+
+    private int productos(Consulta consulta, StringBuilder salida) {
+        if (consulta.vendedor < 0 && consulta.tipos == null && !consulta.conPrecio) {
+            // Sin filtros: el orden del reporte
+            salida.append("Producto;Precio;Cantidad_Vendida\n");
+            int filas = limite(productosPorCantidad.length, consulta.top);
+            for (int i = 0; i < filas; i++) {
+                int p = productosPorCantidad[i];
+                salida.append(catalogo.nombreProducto(p)).append(';');
+                FormatoNumeros.agregarCentavos(salida, precios[p]);
+                salida.append(';').append(ventasPorProducto[p]).append('\n');
+            }
+            return filas;
+        }
+        int[] candidatos;
+        long[] cantidades;
+        int cantidad = 0;
+        if (consulta.vendedor >= 0 || consulta.tipos != null) {
+            // Cantidades de los vendedores elegidos, solo de productos que vendieron
+            if (acumulado == null) {
+                acumulado = new long[precios.length];
+                tocado = new boolean[precios.length];
+            }
+            int[] vendedores = consulta.vendedor >= 0 ? new int[] {consulta.vendedor} : vendedoresCandidatos(consulta);
+            candidatos = new int[16];
+            int tocados = 0;
+            for (int v : vendedores) {
+                if (!tipoPermitido(consulta, v)) {
+                    continue;
+                }
+                for (int k = inicioVendedor[v]; k < inicioVendedor[v + 1]; k++) {
+                    int p = productoVendedor[k];
+                    if (!consulta.enRango(precios[p])) {
+                        continue;
+                    }
+                    if (!tocado[p]) {
+                        tocado[p] = true;
+                        if (tocados == candidatos.length) {
+                            candidatos = Arrays.copyOf(candidatos, tocados * 2);
+                        }
+                        candidatos[tocados++] = p;
+                    }
+                    acumulado[p] += cantidadVendedor[k];
+                }
+            }
+            Arrays.sort(candidatos, 0, tocados);
+            cantidades = new long[tocados];
+            for (int i = 0; i < tocados; i++) {
+                int p = candidatos[i];
+                cantidades[cantidad++] = acumulado[p];
+                acumulado[p] = 0;
+                tocado[p] = false;
+            }
+        } else {
+            candidatos = productosEnRango(consulta);
+            cantidades = new long[candidatos.length];
+            for (int p : candidatos) {
+                cantidades[cantidad++] = ventasPorProducto[p];
+            }
+        }
+
+        salida.append("Producto;Precio;Cantidad_Vendida\n");
+        int[] orden = ordenar(cantidades, cantidad, consulta.top);
+        for (int posicion : orden) {
+            int p = candidatos[posicion];
+            salida.append(catalogo.nombreProducto(p)).append(';');
+            FormatoNumeros.agregarCentavos(salida, precios[p]);
+            salida.append(';').append(cantidades[posicion]).append('\n');
+        }
+        return orden.length;
+    }
+
+    private int vendedoresPorProducto(Consulta consulta, StringBuilder salida) {
+        salida.append("Producto;Vendedor;Recaudacion\n");
+        int filas = 0;
+        int[] grupos = consulta.producto >= 0 ? new int[] {consulta.producto} : productosPorCantidad;
+        long[] cantidades = new long[0];
+        int[] vendedores = new int[0];
+        for (int p : grupos) {
+            if (!consulta.enRango(precios[p])) {
+                continue;
+            }
+            int tamano = inicioProducto[p + 1] - inicioProducto[p];
+            if (tamano == 0) {
+                continue;
+            }
+            if (cantidades.length < tamano) {
+                cantidades = new long[tamano];
+                vendedores = new int[tamano];
+            }
+            int cantidad = 0;
+            for (int k = inicioProducto[p]; k < inicioProducto[p + 1]; k++) {
+                if (tipoPermitido(consulta, vendedorProducto[k])) {
+                    vendedores[cantidad] = vendedorProducto[k];
+                    cantidades[cantidad++] = cantidadProducto[k];
+                }
+            }
+            // Con un solo precio por producto, ordenar por cantidad es ordenar por recaudación
+            for (int posicion : ordenar(cantidades, cantidad, consulta.top)) {
+                salida.append(catalogo.nombreProducto(p)).append(';')
+                        .append(catalogo.nombreVendedor(vendedores[posicion])).append(';');
+                FormatoNumeros.agregarCentavos(salida, cantidades[posicion] * precios[p]);
+                salida.append('\n');
+                filas++;
+            }
+        }
+        return filas;
+    }
+
+    private int productosPorVendedor(Consulta consulta, StringBuilder salida) {
+        salida.append("Vendedor;Producto;Cantidad_Vendida\n");
+        int filas = 0;
+        int[] grupos = consulta.vendedor >= 0 ? new int[] {consulta.vendedor} : vendedoresPorRecaudacion;
+        long[] cantidades = new long[0];
+        int[] productos = new int[0];
+        for (int v : grupos) {
+            if (!tipoPermitido(consulta, v)) {
+                continue;
+            }
+            int tamano = inicioVendedor[v + 1] - inicioVendedor[v];
+            if (tamano == 0) {
+                continue;
+            }
+            if (cantidades.length < tamano) {
+                cantidades = new long[tamano];
+                productos = new int[tamano];
+            }
+            int cantidad = 0;
+            for (int k = inicioVendedor[v]; k < inicioVendedor[v + 1]; k++) {
+                if (consulta.enRango(precios[productoVendedor[k]])) {
+                    productos[cantidad] = productoVendedor[k];
+                    cantidades[cantidad++] = cantidadVendedor[k];
+                }
+            }
+            for (int posicion : ordenar(cantidades, cantidad, consulta.top)) {
+                salida.append(catalogo.nombreVendedor(v)).append(';')
+                        .append(catalogo.nombreProducto(productos[posicion])).append(';')
+                        .append(cantidades[posicion]).append('\n');
+                filas++;
+            }
+        }
+        return filas;
+    }
+
+    /**
+     * Ordena las primeras {@code cantidad} posiciones de mayor a menor valor,
+     * con el mismo criterio que los reportes.
+     */
+    private static int[] ordenar(long[] valores, int cantidad, int top) {
+        long[] claves = Arrays.copyOf(valores, cantidad);
+        return top > 0 ? OrdenIndices.mayores(claves, top) : OrdenIndices.ordenar(claves);
+    }
+
+    private static int limite(int cantidad, int top) {
+        return top > 0 ? Math.min(cantidad, top) : cantidad;
+    }
+
+    private static int[] todos(int cantidad) {
+        int[] indices = new int[cantidad];
+        for (int i = 0; i < cantidad; i++) {
+            indices[i] = i;
+        }
+        return indices;
+    }
+}
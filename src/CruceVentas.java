@@ -0,0 +1,277 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Cruce vendedor × producto: cantidad vendida por cada par con ventas.
+ *
+ * Tabla hash de direccionamiento abierto con claves {@code long} (vendedor en
+ * los 32 bits altos, producto en los bajos) y las cantidades en un arreglo
+ * paralelo: 16 bytes por ranura y ningún objeto por par, así que la memoria
+ * depende solo de la cantidad de pares con ventas, no de vendedores ×
+ * productos. La recaudación de un par es su cantidad por el precio del
+ * producto y se calcula al exportar.
+ *
+ * La exportación recorre los pares ordenados por vendedor y producto
+ * (índices densos) y los escribe a medida que los recorre. Si el archivo
+ * termina en {@code .csv} se escribe texto:
+ * {@code TipoDocumento;NumeroDocumento;Vendedor;IdProducto;Producto;Cantidad_Vendida;Recaudacion};
+ * si no, binario con DataOutputStream:
+ * {@code FIRMA | v int | v × identificación UTF | p int | p × id UTF |
+ * n long | n × (vendedor int, producto int, cantidad long, recaudación long)},
+ * donde vendedor y producto son posiciones en las listas de identificadores
+ * y la recaudación está en centavos.
+ */
+public class CruceVentas {
+
+    private static final int FIRMA = 0x56435232; // "VCR2"
+    private static final long LIBRE = -1L;
+
+    private long[] claves;
+    private long[] cantidades;
+    private int mascara;
+    private int tamano;
+
+    public CruceVentas() {
+        this(16);
+    }
+
+    /**
+     * @param capacidad cantidad de ranuras inicial (se redondea a potencia de 2)
+     */
+    public CruceVentas(int capacidad) {
+        int ranuras = Integer.highestOneBit(Math.max(16, capacidad - 1)) << 1;
+        claves = new long[ranuras];
+        cantidades = new long[ranuras];
+        Arrays.fill(claves, LIBRE);
+        mascara = ranuras - 1;
+    }
+
+    /**
+     * Suma una cantidad vendida al par.
+     *
+     * @param vendedor índice denso del vendedor
+     * @param producto índice denso del producto
+     * @param cantidad cantidad vendida
+     */
+    public void agregar(int vendedor, int producto, long cantidad) {
+        agregar(((long) vendedor << 32) | producto, cantidad);
+    }
+
+    private void agregar(long clave, long cantidad) {
+        int ranura = ranura(clave);
+        while (claves[ranura] != LIBRE) {
+            if (claves[ranura] == clave) {
+                cantidades[ranura] += cantidad;
+                return;
+            }
+            ranura = (ranura + 1) & mascara;
+        }
+        claves[ranura] = clave;
+        cantidades[ranura] = cantidad;
+        // Ocupación máxima del 50%, como en DiccionarioIds
+        if (++tamano * 2 > claves.length) {
+            crecer();
+        }
+    }
+
+    private int ranura(long clave) {
+        long mezcla = clave * 0x9E3779B97F4A7C15L;
+        return (int) (mezcla ^ (mezcla >>> 32)) & mascara;
+    }
+
+    private void crecer() {
+        long[] clavesAnteriores = claves;
+        long[] cantidadesAnteriores = cantidades;
+        claves = new long[clavesAnteriores.length * 2];
+        cantidades = new long[claves.length];
+        Arrays.fill(claves, LIBRE);
+        mascara = claves.length - 1;
+        for (int i = 0; i < clavesAnteriores.length; i++) {
+            if (clavesAnteriores[i] != LIBRE) {
+                int ranura = ranura(clavesAnteriores[i]);
+                while (claves[ranura] != LIBRE) {
+                    ranura = (ranura + 1) & mascara;
+                }
+                claves[ranura] = clavesAnteriores[i];
+                cantidades[ranura] = cantidadesAnteriores[i];
+            }
+        }
+    }
+
+    /**
+     * @return cantidad de pares con ventas
+     */
+    public int tamano() {
+        return tamano;
+    }
+
+    /**
+     * Copia el producto y la cantidad de cada par, en el orden de la tabla.
+     * Sirve para un cruce con un solo vendedor, como el de un archivo.
+     *
+     * @param productos destino de los índices de producto, de tamaño {@link #tamano()}
+     * @param cantidades destino de las cantidades, de tamaño {@link #tamano()}
+     */
+    public void copiarProductos(int[] productos, long[] cantidades) {
+        int j = 0;
+        for (int i = 0; i < claves.length; i++) {
+            if (claves[i] != LIBRE) {
+                productos[j] = (int) claves[i];
+                cantidades[j++] = this.cantidades[i];
+            }
+        }
+    }
+
+    /**
+     * Suma los pares de otro cruce a este y deja el otro vacío, conservando
+     * su capacidad.
+     *
+     * @param otro cruce a combinar
+     */
+    public void combinar(CruceVentas otro) {
+        for (int i = 0; i < otro.claves.length; i++) {
+            if (otro.claves[i] != LIBRE) {
+                agregar(otro.claves[i], otro.cantidades[i]);
+                otro.claves[i] = LIBRE;
+            }
+        }
+        otro.tamano = 0;
+    }
+
+    /**
+     * Datos maestros necesarios para exportar.
+     */
+    public interface Catalogo {
+        /** @return {@code tipoDoc;numDoc} del vendedor */
+        String identificacionVendedor(int indice);
+
+        String nombreVendedor(int indice);
+
+        String idProducto(int indice);
+
+        String nombreProducto(int indice);
+    }
+
+    /**
+     * Recibe los pares en orden de vendedor y producto.
+     */
+    private interface Visitante {
+        void par(int vendedor, int producto, long cantidad) throws IOException;
+    }
+
+    /**
+     * Exporta el cruce, en CSV si el archivo termina en {@code .csv} y en
+     * binario si no.
+     *
+     * @param archivo archivo de destino
+     * @param catalogo datos maestros
+     * @param vendedores cantidad de vendedores
+     * @param precios precio de cada producto, en centavos
+     * @throws IOException si no se puede escribir el archivo
+     */
+    public void exportar(File archivo, Catalogo catalogo, int vendedores, long[] precios) throws IOException {
+        if (archivo.getName().toLowerCase(Locale.ROOT).endsWith(".csv")) {
+            exportarCsv(archivo, catalogo, precios);
+        } else {
+            exportarBinario(archivo, catalogo, vendedores, precios);
+        }
+    }
+
+    private void exportarCsv(File archivo, Catalogo catalogo, long[] precios) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(archivo),
+                StandardCharsets.UTF_8), 1 << 16)) {
+            writer.write("TipoDocumento;NumeroDocumento;Vendedor;IdProducto;Producto;Cantidad_Vendida;Recaudacion\n");
+            StringBuilder fila = new StringBuilder(160);
+            int[] ultimo = {-1};
+            String[] vendedor = new String[2];
+            recorrer((v, p, cantidad) -> {
+                if (v != ultimo[0]) {
+                    // Nombre e identificación una vez por vendedor
+                    ultimo[0] = v;
+                    vendedor[0] = catalogo.identificacionVendedor(v);
+                    vendedor[1] = catalogo.nombreVendedor(v);
+                }
+                fila.setLength(0);
+                fila.append(vendedor[0]).append(';').append(vendedor[1]).append(';')
+                        .append(catalogo.idProducto(p)).append(';').append(catalogo.nombreProducto(p)).append(';')
+                        .append(cantidad).append(';');
+                FormatoNumeros.agregarCentavos(fila, cantidad * precios[p]);
+                fila.append('\n');
+                writer.append(fila);
+            });
+        }
+    }
+
+    private void exportarBinario(File archivo, Catalogo catalogo, int vendedores, long[] precios)
+            throws IOException {
+        try (DataOutputStream salida = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(archivo), 1 << 16))) {
+            salida.writeInt(FIRMA);
+            salida.writeInt(vendedores);
+            for (int v = 0; v < vendedores; v++) {
+                salida.writeUTF(catalogo.identificacionVendedor(v));
+            }
+            salida.writeInt(precios.length);
+            for (int p = 0; p < precios.length; p++) {
+                salida.writeUTF(catalogo.idProducto(p));
+            }
+            salida.writeLong(tamano);
+            recorrer((v, p, cantidad) -> {
+                salida.writeInt(v);
+                salida.writeInt(p);
+                salida.writeLong(cantidad);
+                salida.writeLong(cantidad * precios[p]);
+            });
+        }
+    }
+
+    /**
+     * Recorre los pares en orden de vendedor y producto: los agrupa por
+     * vendedor (ordenamiento por conteo) y ordena los productos de cada uno.
+     */
+    private void recorrer(Visitante visitante) throws IOException {
+        int vendedores = 0;
+        for (long clave : claves) {
+            if (clave != LIBRE) {
+                vendedores = Math.max(vendedores, (int) (clave >>> 32) + 1);
+            }
+        }
+        int[] inicio = new int[vendedores + 1];
+        for (long clave : claves) {
+            if (clave != LIBRE) {
+                inicio[(int) (clave >>> 32) + 1]++;
+            }
+        }
+        for (int v = 0; v < vendedores; v++) {
+            inicio[v + 1] += inicio[v];
+        }
+        int[] siguiente = Arrays.copyOf(inicio, vendedores);
+        int[] productos = new int[tamano];
+        long[] cantidadesPar = new long[tamano];
+        for (int i = 0; i < claves.length; i++) {
+            if (claves[i] != LIBRE) {
+                int destino = siguiente[(int) (claves[i] >>> 32)]++;
+                productos[destino] = (int) claves[i];
+                cantidadesPar[destino] = cantidades[i];
+            }
+        }
+
+        long[] orden = new long[16];
+        for (int v = 0; v < vendedores; v++) {
+            int cantidad = inicio[v + 1] - inicio[v];
+            if (cantidad > orden.length) {
+                orden = new long[Math.max(cantidad, orden.length * 2)];
+            }
+            // Producto en la parte alta para ordenar; posición en la baja
+            for (int k = 0; k < cantidad; k++) {
+                orden[k] = ((long) productos[inicio[v] + k] << 32) | k;
+            }
+            Arrays.sort(orden, 0, cantidad);
+            for (int k = 0; k < cantidad; k++) {
+                int posicion = inicio[v] + (int) orden[k];
+                visitante.par(v, (int) (orden[k] >>> 32), cantidadesPar[posicion]);
+            }
+        }
+    }
+}
@@ -0,0 +1,517 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cuarentena de las filas y archivos de ventas rechazados en una ingesta.
+ *
+ * Cada rechazo se escribe como una línea de {@code cuarentena_ventas.csv}
+ * ({@code Archivo;Linea;Motivo;Contenido}) con el archivo de origen, el número
+ * de línea (la fila en formato columnar, o 0 si se descartó el archivo
+ * completo), el motivo con las etiquetas de MetricasEjecucion y el contenido
+ * original de la línea, que va al final porque puede tener ';'. En modo
+ * incremental los archivos sin cambios no se releen: sus rechazos se copian
+ * de la cuarentena anterior (ver {@link #conservar(Set)}), así que el archivo
+ * siempre describe todos los archivos de ventas vigentes. En la agregación
+ * distribuida cada trabajador envía sus rechazos (ver {@link #registros(File)})
+ * y el coordinador los agrega con {@link #agregar(byte[], MetricasEjecucion)}.
+ *
+ * Los hilos de ingesta copian los bytes de cada fila a un lote propio, sin
+ * crear Strings ni competir entre sí, y entregan los lotes llenos por una
+ * cola acotada a un hilo escritor. La ingesta solo espera al disco si la
+ * cola se llena. El archivo se crea con el primer rechazo.
+ *
+ * Las advertencias por consola se limitan a {@value #ADVERTENCIAS_POR_SEGUNDO}
+ * por segundo; las demás solo se cuentan para el resumen final.
+ */
+public class CuarentenaVentas {
+
+    public static final String ARCHIVO = "cuarentena_ventas.csv";
+
+    private static final int TAMANO_LOTE = 1 << 16;
+    private static final int LOTES_EN_COLA = 16;
+    private static final int ADVERTENCIAS_POR_SEGUNDO = 10;
+    private static final byte[] ENCABEZADO = "Archivo;Linea;Motivo;Contenido\n".getBytes(StandardCharsets.UTF_8);
+    // Marca de fin para el escritor
+    private static final byte[] FIN = new byte[0];
+
+    /**
+     * Rechazos de un hilo pendientes de entregar al escritor.
+     */
+    private class Lote {
+        byte[] datos = new byte[TAMANO_LOTE];
+        int tamano;
+
+        void reservar(int bytes) {
+            if (tamano + bytes > datos.length) {
+                entregar();
+                if (bytes > datos.length) {
+                    datos = new byte[bytes];
+                }
+            }
+        }
+
+        void agregar(byte[] bytes) {
+            System.arraycopy(bytes, 0, datos, tamano, bytes.length);
+            tamano += bytes.length;
+        }
+
+        void agregar(ByteBuffer origen, int desde, int hasta) {
+            origen.get(desde, datos, tamano, hasta - desde);
+            tamano += hasta - desde;
+        }
+
+        void agregar(char c) {
+            datos[tamano++] = (byte) c;
+        }
+
+        void agregarEntero(int valor) {
+            if (valor < 0) {
+                datos[tamano++] = '-';
+            }
+            // Dígitos en negativo para que Integer.MIN_VALUE no desborde
+            int negativo = valor < 0 ? valor : -valor;
+            int digitos = 1;
+            for (int resto = negativo / 10; resto != 0; resto /= 10) {
+                digitos++;
+            }
+            for (int i = tamano + digitos - 1; i >= tamano; i--) {
+                datos[i] = (byte) ('0' - negativo % 10);
+                negativo /= 10;
+            }
+            tamano += digitos;
+        }
+
+        void entregar() {
+            if (tamano == 0) {
+                return;
+            }
+            try {
+                cola.put(Arrays.copyOf(datos, tamano));
+            } catch (InterruptedException e) {
+                // La ingesta se está cancelando: el lote se pierde
+                Thread.currentThread().interrupt();
+            }
+            tamano = 0;
+        }
+    }
+
+    // Destino de la ingesta en curso (null = los rechazos solo se cuentan) y
+    // cuarentena de la ingesta anterior, que se borra al terminar
+    private File archivo;
+    private File anterior;
+    private BlockingQueue<byte[]> cola;
+    private Thread escritor;
+    private volatile IOException error;
+    private ThreadLocal<Lote> loteHilo;
+    private final List<Lote> lotes = Collections.synchronizedList(new ArrayList<>());
+
+    private final LongAdder filas = new LongAdder();
+    private final LongAdder archivos = new LongAdder();
+    private final LongAdder omitidas = new LongAdder();
+    // Segundo de la ventana de advertencias y cuántas se mostraron en él
+    private final AtomicLong ventana = new AtomicLong(-1);
+    private final AtomicInteger enVentana = new AtomicInteger();
+
+    /**
+     * Empieza la cuarentena de una ingesta. La de la ingesta anterior se
+     * aparta para {@link #conservar(Set)} y se borra al terminar. Debe
+     * llamarse antes de que empiecen los hilos de ingesta.
+     *
+     * @param archivo destino de los rechazos, o null para solo contarlos
+     */
+    public void iniciar(File archivo) {
+        this.archivo = archivo;
+        filas.reset();
+        archivos.reset();
+        omitidas.reset();
+        error = null;
+        lotes.clear();
+        loteHilo = ThreadLocal.withInitial(() -> {
+            Lote lote = new Lote();
+            lotes.add(lote);
+            return lote;
+        });
+        if (archivo == null) {
+            return;
+        }
+        anterior = new File(archivo.getPath() + ".anterior");
+        anterior.delete();
+        if (!archivo.renameTo(anterior)) {
+            archivo.delete();
+        }
+        cola = new ArrayBlockingQueue<>(LOTES_EN_COLA);
+        escritor = new Thread(this::escribir, "cuarentena-ventas");
+        escritor.setDaemon(true);
+        escritor.start();
+    }
+
+    /**
+     * Copia de la cuarentena anterior los rechazos de archivos que no se
+     * vuelven a leer porque no cambiaron, contándolos como los de esta
+     * ingesta. Debe llamarse entre {@link #iniciar(File)} y
+     * {@link #terminar()}.
+     *
+     * @param nombres nombres de los archivos de ventas sin cambios
+     * @throws IOException si no se puede leer la cuarentena anterior
+     */
+    public void conservar(Set<String> nombres) throws IOException {
+        if (archivo == null || nombres.isEmpty() || !anterior.exists()) {
+            return;
+        }
+        // Por bytes y cortando solo en '\n', para copiar el contenido tal cual
+        try (InputStream entrada = new BufferedInputStream(new FileInputStream(anterior), 1 << 16)) {
+            ByteArrayOutputStream linea = new ByteArrayOutputStream();
+            boolean encabezado = true;
+            for (int b = entrada.read(); b >= 0; b = entrada.read()) {
+                if (b != '\n') {
+                    linea.write(b);
+                    continue;
+                }
+                if (!encabezado) {
+                    copiarLinea(linea.toByteArray(), nombres, null);
+                }
+                encabezado = false;
+                linea.reset();
+            }
+        }
+    }
+
+    /**
+     * Agrega los rechazos que otro proceso registró en su cuarentena (las
+     * líneas sin el encabezado), contándolos en el resumen y en las métricas
+     * por motivo como si se hubieran rechazado en esta ingesta.
+     *
+     * @param registros líneas de cuarentena, cada una terminada en '\n'
+     * @param metricas métricas a las que se suman los rechazos
+     */
+    public void agregar(byte[] registros, MetricasEjecucion metricas) {
+        int desde = 0;
+        for (int i = 0; i < registros.length; i++) {
+            if (registros[i] == '\n') {
+                copiarLinea(Arrays.copyOfRange(registros, desde, i), null, metricas);
+                desde = i + 1;
+            }
+        }
+    }
+
+    /**
+     * Copia una línea de otra cuarentena si su archivo está entre los nombres
+     * (o siempre, si son null) y la cuenta por su motivo.
+     */
+    private void copiarLinea(byte[] linea, Set<String> nombres, MetricasEjecucion metricas) {
+        int finArchivo = indiceDe(linea, 0);
+        int finNumero = finArchivo < 0 ? -1 : indiceDe(linea, finArchivo + 1);
+        if (finNumero < 0 || nombres != null
+                && !nombres.contains(new String(linea, 0, finArchivo, StandardCharsets.UTF_8))) {
+            return;
+        }
+        // Línea 0: archivo descartado completo
+        boolean deArchivo = finNumero == finArchivo + 2 && linea[finArchivo + 1] == '0';
+        (deArchivo ? archivos : filas).increment();
+        if (metricas != null) {
+            int finMotivo = indiceDe(linea, finNumero + 1);
+            String motivo = new String(linea, finNumero + 1, (finMotivo < 0 ? linea.length : finMotivo) - finNumero - 1,
+                    StandardCharsets.UTF_8);
+            contarMotivo(metricas, deArchivo, motivo);
+        }
+        if (archivo == null) {
+            return;
+        }
+        Lote lote = loteHilo.get();
+        lote.reservar(linea.length + 1);
+        lote.agregar(linea);
+        lote.agregar('\n');
+    }
+
+    private static void contarMotivo(MetricasEjecucion metricas, boolean deArchivo, String etiqueta) {
+        if (deArchivo) {
+            for (MetricasEjecucion.MotivoArchivo motivo : MetricasEjecucion.MotivoArchivo.values()) {
+                if (motivo.etiqueta.equals(etiqueta)) {
+                    metricas.archivoRechazado(motivo);
+                }
+            }
+        } else {
+            for (MetricasEjecucion.MotivoFila motivo : MetricasEjecucion.MotivoFila.values()) {
+                if (motivo.etiqueta.equals(etiqueta)) {
+                    metricas.filaRechazada(motivo);
+                }
+            }
+        }
+    }
+
+    private static int indiceDe(byte[] linea, int desde) {
+        return indiceDe(linea, desde, linea.length);
+    }
+
+    private static int indiceDe(byte[] linea, int desde, int hasta) {
+        for (int i = desde; i < hasta; i++) {
+            if (linea[i] == ';') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Registra una fila de texto rechazada.
+     *
+     * @param motivo motivo del rechazo
+     * @param posicion archivo y línea de la fila
+     * @param datos contenido del archivo
+     * @param desde inicio de la línea
+     * @param hasta fin de la línea (exclusivo, sin el salto de línea)
+     */
+    public void rechazarFila(MetricasEjecucion.MotivoFila motivo, ParserVentas.Posicion posicion,
+            ByteBuffer datos, int desde, int hasta) {
+        filas.increment();
+        if (archivo == null) {
+            return;
+        }
+        Lote lote = inicioRegistro(posicion.nombre, posicion.linea, motivo.etiqueta, hasta - desde);
+        lote.agregar(datos, desde, hasta);
+        lote.agregar('\n');
+    }
+
+    /**
+     * Registra una fila columnar rechazada, escribiéndola como en el formato
+     * de texto ({@code producto;cantidad}, con el ';' final si lo tenía).
+     *
+     * @param motivo motivo del rechazo
+     * @param posicion archivo y línea
+     * @param datos contenido del archivo
+     * @param inicioProducto inicio del id del producto
+     * @param finProducto fin del id del producto (exclusivo)
+     * @param cantidad cantidad de la fila
+     * @param puntoYComaFinal si la línea terminaba con ';'
+     */
+    public void rechazarFila(MetricasEjecucion.MotivoFila motivo, ParserVentas.Posicion posicion,
+            ByteBuffer datos, int inicioProducto, int finProducto, int cantidad, boolean puntoYComaFinal) {
+        filas.increment();
+        if (archivo == null) {
+            return;
+        }
+        Lote lote = inicioRegistro(posicion.nombre, posicion.linea, motivo.etiqueta,
+                finProducto - inicioProducto + 13);
+        lote.agregar(datos, inicioProducto, finProducto);
+        lote.agregar(';');
+        lote.agregarEntero(cantidad);
+        if (puntoYComaFinal) {
+            lote.agregar(';');
+        }
+        lote.agregar('\n');
+    }
+
+    /**
+     * Registra un archivo descartado completo, con línea 0 y el detalle del
+     * error como contenido.
+     *
+     * @param motivo motivo del descarte
+     * @param nombreArchivo archivo descartado
+     * @param detalle descripción del error
+     */
+    public void rechazarArchivo(MetricasEjecucion.MotivoArchivo motivo, String nombreArchivo, String detalle) {
+        archivos.increment();
+        if (archivo == null) {
+            return;
+        }
+        byte[] contenido = String.valueOf(detalle).replace('\n', ' ').replace('\r', ' ')
+                .getBytes(StandardCharsets.UTF_8);
+        Lote lote = inicioRegistro(nombreArchivo.getBytes(StandardCharsets.UTF_8), 0, motivo.etiqueta,
+                contenido.length);
+        lote.agregar(contenido);
+        lote.agregar('\n');
+    }
+
+    /**
+     * Reserva lugar para un registro y escribe sus campos hasta el contenido.
+     */
+    private Lote inicioRegistro(byte[] nombre, int linea, String motivo, int contenido) {
+        Lote lote = loteHilo.get();
+        lote.reservar(nombre.length + motivo.length() + contenido + 16);
+        lote.agregar(nombre);
+        lote.agregar(';');
+        lote.agregarEntero(linea);
+        lote.agregar(';');
+        for (int i = 0; i < motivo.length(); i++) {
+            lote.agregar(motivo.charAt(i));
+        }
+        lote.agregar(';');
+        return lote;
+    }
+
+    /**
+     * Lee los rechazos de un archivo de cuarentena, sin el encabezado.
+     *
+     * @param archivo cuarentena escrita por {@link #terminar()}
+     * @return las líneas de rechazo, o ninguna si el archivo no existe
+     * @throws IOException si no se puede leer el archivo
+     */
+    public static byte[] registros(File archivo) throws IOException {
+        return registros(archivo, "");
+    }
+
+    /**
+     * Lee los rechazos de un archivo de cuarentena, sin el encabezado y con
+     * un prefijo delante del nombre de archivo de cada línea.
+     *
+     * @param archivo cuarentena escrita por {@link #terminar()}
+     * @param prefijo texto que se antepone a cada línea (por ejemplo, un directorio)
+     * @return las líneas de rechazo, o ninguna si el archivo no existe
+     * @throws IOException si no se puede leer el archivo
+     */
+    public static byte[] registros(File archivo, String prefijo) throws IOException {
+        if (!archivo.exists()) {
+            return new byte[0];
+        }
+        byte[] contenido = Files.readAllBytes(archivo.toPath());
+        int desde = Math.min(ENCABEZADO.length, contenido.length);
+        if (prefijo.isEmpty()) {
+            return Arrays.copyOfRange(contenido, desde, contenido.length);
+        }
+        byte[] bytesPrefijo = prefijo.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream registros = new ByteArrayOutputStream(contenido.length - desde);
+        for (int i = desde; i < contenido.length; i++) {
+            if (i == desde || contenido[i - 1] == '\n') {
+                registros.write(bytesPrefijo, 0, bytesPrefijo.length);
+            }
+            registros.write(contenido[i]);
+        }
+        return registros.toByteArray();
+    }
+
+    /**
+     * Cuenta los rechazos de un archivo de cuarentena.
+     *
+     * @param archivo cuarentena escrita por {@link #terminar()}
+     * @return filas rechazadas y archivos descartados, en ese orden
+     * @throws IOException si no se puede leer el archivo
+     */
+    public static long[] contar(File archivo) throws IOException {
+        byte[] registros = registros(archivo);
+        long[] cantidades = new long[2];
+        int desde = 0;
+        for (int i = 0; i < registros.length; i++) {
+            if (registros[i] != '\n') {
+                continue;
+            }
+            int finArchivo = indiceDe(registros, desde, i);
+            // Línea 0: archivo descartado completo
+            boolean deArchivo = finArchivo >= 0 && finArchivo + 2 < i && registros[finArchivo + 1] == '0'
+                    && registros[finArchivo + 2] == ';';
+            cantidades[deArchivo ? 1 : 0]++;
+            desde = i + 1;
+        }
+        return cantidades;
+    }
+
+    /**
+     * Indica si se puede mostrar una advertencia por consola sin superar el
+     * límite por segundo; si no, la cuenta como omitida.
+     */
+    public boolean puedeAdvertir() {
+        long segundo = System.nanoTime() / 1_000_000_000L;
+        long actual = ventana.get();
+        if (segundo != actual && ventana.compareAndSet(actual, segundo)) {
+            enVentana.set(0);
+        }
+        // Leer antes de incrementar evita escribir el contador compartido una vez alcanzado el límite
+        if (enVentana.get() < ADVERTENCIAS_POR_SEGUNDO
+                && enVentana.incrementAndGet() <= ADVERTENCIAS_POR_SEGUNDO) {
+            return true;
+        }
+        omitidas.increment();
+        return false;
+    }
+
+    private void escribir() {
+        OutputStream salida = null;
+        try {
+            for (byte[] lote = cola.take(); lote != FIN; lote = cola.take()) {
+                if (error != null) {
+                    // Se siguen tomando lotes para no bloquear a la ingesta
+                    continue;
+                }
+                try {
+                    if (salida == null) {
+                        salida = new FileOutputStream(archivo);
+                        salida.write(ENCABEZADO);
+                    }
+                    salida.write(lote);
+                } catch (IOException e) {
+                    error = e;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (salida != null) {
+                try {
+                    salida.close();
+                } catch (IOException e) {
+                    if (error == null) {
+                        error = e;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Entrega los lotes pendientes y espera a que el escritor termine. Debe
+     * llamarse cuando ya terminaron los hilos de ingesta.
+     *
+     * @throws IOException si no se pudo escribir el archivo de cuarentena
+     */
+    public void terminar() throws IOException {
+        if (archivo == null || escritor == null) {
+            return;
+        }
+        try {
+            synchronized (lotes) {
+                for (Lote lote : lotes) {
+                    lote.entregar();
+                }
+            }
+            cola.put(FIN);
+            escritor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Escritura de la cuarentena interrumpida", e);
+        } finally {
+            escritor = null;
+            anterior.delete();
+        }
+        if (error != null) {
+            throw new IOException("No se pudo escribir " + archivo + ": " + error.getMessage(), error);
+        }
+    }
+
+    /**
+     * @return filas rechazadas en la ingesta, con las conservadas
+     */
+    public long filas() {
+        return filas.sum();
+    }
+
+    /**
+     * @return archivos descartados en la ingesta, con los conservados
+     */
+    public long archivos() {
+        return archivos.sum();
+    }
+
+    /**
+     * @return advertencias que no se mostraron por el límite por segundo
+     */
+    public long omitidas() {
+        return omitidas.sum();
+    }
+}
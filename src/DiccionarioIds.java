@@ -0,0 +1,146 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Diccionario que asigna a cada identificador (por ejemplo PROD001) un índice
+ * entero denso en el orden en que se registra.
+ *
+ * Las búsquedas se hacen directamente sobre un rango de bytes de un ByteBuffer,
+ * de modo que los archivos de ventas se pueden validar sin crear un String por
+ * cada línea.
+ * Internamente es una tabla hash de direccionamiento abierto con sondeo lineal.
+ */
+public class DiccionarioIds implements BuscadorIds {
+
+    private byte[][] claves = new byte[16][];
+    private int[] hashes = new int[16];
+    private int[] tabla = new int[32];   // posiciones libres = -1, si no índice en claves
+    private int tamano;
+
+    public DiccionarioIds() {
+        Arrays.fill(tabla, -1);
+    }
+
+    /**
+     * Registra un identificador y devuelve su índice. Si ya existía devuelve
+     * el índice asignado previamente.
+     *
+     * @param id identificador a registrar
+     * @return índice denso del identificador
+     */
+    public int agregar(String id) {
+        byte[] clave = id.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer datos = ByteBuffer.wrap(clave);
+        int hash = hash(datos, 0, clave.length);
+        int existente = buscar(datos, 0, clave.length, hash);
+        if (existente >= 0) {
+            return existente;
+        }
+
+        if (tamano == claves.length) {
+            claves = Arrays.copyOf(claves, tamano * 2);
+            hashes = Arrays.copyOf(hashes, tamano * 2);
+        }
+        if ((tamano + 1) * 2 > tabla.length) {
+            redimensionar(tabla.length * 2);
+        }
+
+        int indice = tamano++;
+        claves[indice] = clave;
+        hashes[indice] = hash;
+        insertar(indice, hash);
+        return indice;
+    }
+
+    /**
+     * Busca el identificador contenido en datos[desde, hasta).
+     *
+     * @param datos bytes donde está el identificador
+     * @param desde posición inicial (inclusiva)
+     * @param hasta posición final (exclusiva)
+     * @return índice del identificador o -1 si no está registrado
+     */
+    @Override
+    public int buscar(ByteBuffer datos, int desde, int hasta) {
+        return buscar(datos, desde, hasta, hash(datos, desde, hasta));
+    }
+
+    /**
+     * Busca un identificador a partir de su representación como String.
+     *
+     * @param id identificador a buscar
+     * @return índice del identificador o -1 si no está registrado
+     */
+    public int buscar(String id) {
+        byte[] clave = id.getBytes(StandardCharsets.UTF_8);
+        return buscar(ByteBuffer.wrap(clave), 0, clave.length);
+    }
+
+    /**
+     * @param indice índice denso
+     * @return identificador asociado al índice
+     */
+    public String clave(int indice) {
+        return new String(claves[indice], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return cantidad de identificadores registrados
+     */
+    @Override
+    public int tamano() {
+        return tamano;
+    }
+
+    private int buscar(ByteBuffer datos, int desde, int hasta, int hash) {
+        int mascara = tabla.length - 1;
+        for (int pos = hash & mascara; ; pos = (pos + 1) & mascara) {
+            int indice = tabla[pos];
+            if (indice < 0) {
+                return -1;
+            }
+            if (hashes[indice] == hash && iguales(claves[indice], datos, desde, hasta)) {
+                return indice;
+            }
+        }
+    }
+
+    private static boolean iguales(byte[] clave, ByteBuffer datos, int desde, int hasta) {
+        if (clave.length != hasta - desde) {
+            return false;
+        }
+        for (int i = 0; i < clave.length; i++) {
+            if (clave[i] != datos.get(desde + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void insertar(int indice, int hash) {
+        int mascara = tabla.length - 1;
+        int pos = hash & mascara;
+        while (tabla[pos] >= 0) {
+            pos = (pos + 1) & mascara;
+        }
+        tabla[pos] = indice;
+    }
+
+    private void redimensionar(int capacidad) {
+        tabla = new int[capacidad];
+        Arrays.fill(tabla, -1);
+        for (int i = 0; i < tamano; i++) {
+            insertar(i, hashes[i]);
+        }
+    }
+
+    static int hash(ByteBuffer datos, int desde, int hasta) {
+        int h = 0;
+        for (int i = desde; i < hasta; i++) {
+            h = 31 * h + datos.get(i);
+        }
+        // Mezclar los bits altos para que el sondeo lineal no se agrupe
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,701 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * Formato binario columnar para archivos de ventas ({@code ventas_*.bin}).
+ *
+ * Estructura del archivo (los enteros sin signo se guardan como varint de
+ * 7 bits por byte):
+ * 1. Firma de 4 bytes "VCO3".
+ * 2. Identificación del vendedor ({@code tipoDoc;numDoc}): longitud y bytes UTF-8.
+ * 3. Cantidad de filas.
+ * 4. Diccionario de productos: cantidad de ids y cada id con su longitud y bytes,
+ *    en el orden en que aparecen por primera vez.
+ * 5. Saltos de línea: cantidad y, por cada uno, la distancia en filas desde
+ *    el anterior y cuántas líneas del texto sin venta (vacías o sin
+ *    cantidad) había antes de esa fila, en zigzag (un '\r' solo no pasa de
+ *    línea, como en ParserVentas, y resta una).
+ * 6. Líneas originales: cantidad y, por cada una, la distancia en filas
+ *    desde la anterior y la línea con su longitud y bytes.
+ * 7. Longitud en bytes de la columna de productos.
+ * 8. Columna de productos: por cada fila, el código de diccionario
+ *    desplazado un bit, con el bit bajo en 1 si la línea terminaba en ';'.
+ * 9. Columna de cantidades: cada cantidad codificada en zigzag, para
+ *    conservar las negativas y que main las rechace igual que en texto.
+ *
+ * Las filas que se escriben exactamente como {@code producto;cantidad},
+ * con o sin ';' final, se guardan solo en las columnas; las demás (cantidad
+ * que no es un entero, blancos, campos de más, bytes no ASCII) guardan su
+ * línea original, con 0 en las columnas, y main la procesa como en texto.
+ * Con los saltos cada fila conserva su número de línea, así que main
+ * rechaza las filas al leerlo con el mismo motivo, línea y contenido que en
+ * texto. Los archivos "VCO2" (solo las líneas de cantidad inválida) y
+ * "VCO1" se siguen leyendo, contando una línea por fila desde la segunda y
+ * con las filas rechazadas escritas como {@code producto;cantidad}.
+ *
+ * Cada id de producto se busca una sola vez por archivo, y las filas se
+ * recorren sin separar campos ni convertir texto a números.
+ *
+ * Ejecutada como programa convierte los archivos de texto de un directorio:
+ * {@code java FormatoColumnar [--directorio D] [--reemplazar]}.
+ */
+public class FormatoColumnar {
+
+    static final int FIRMA = 0x56434F33; // "VCO3"
+    static final int FIRMA_V2 = 0x56434F32; // "VCO2"
+    static final int FIRMA_V1 = 0x56434F31; // "VCO1"
+
+    public static final String EXTENSION = ".bin";
+
+    // Bytes de cada parte del archivo que se guardan en memoria al escribir
+    private static final int LIMITE_MEMORIA = 1 << 20;
+
+    /**
+     * Acumula las filas de un archivo de ventas y lo escribe en formato
+     * columnar. Las partes que superan {@value #LIMITE_MEMORIA} bytes pasan a
+     * temporales, que se borran al cerrarlo.
+     */
+    public static class Escritor implements Closeable {
+        private final byte[] vendedor;
+        private final Map<String, Integer> codigos = new HashMap<>();
+        private final List<byte[]> diccionario = new ArrayList<>();
+        private final Parte productos = new Parte();
+        private final Parte cantidades = new Parte();
+        private final Parte saltos = new Parte();
+        private final Parte originales = new Parte();
+        private int filas;
+        private int cantidadSaltos;
+        private int cantidadOriginales;
+        // Fila del último salto y de la última línea original, y líneas
+        // saltadas antes de la próxima fila
+        private int filaSalto;
+        private int filaOriginal;
+        private int lineasSaltadas;
+
+        /**
+         * @param vendedor identificación del vendedor ({@code tipoDoc;numDoc})
+         */
+        public Escritor(String vendedor) {
+            this.vendedor = vendedor.getBytes(StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Devuelve el código de diccionario de un producto, agregándolo si es nuevo.
+         *
+         * @param producto id del producto
+         * @return código del producto en este archivo
+         */
+        public int codigo(String producto) {
+            Integer codigo = codigos.get(producto);
+            if (codigo == null) {
+                codigo = diccionario.size();
+                codigos.put(producto, codigo);
+                diccionario.add(producto.getBytes(StandardCharsets.UTF_8));
+            }
+            return codigo;
+        }
+
+        /**
+         * Agrega una fila escrita como {@code producto;cantidad}.
+         *
+         * @param codigo código devuelto por {@link #codigo(String)}
+         * @param cantidad unidades vendidas
+         * @param puntoYComaFinal si la línea termina con ';'
+         */
+        public void agregar(int codigo, int cantidad, boolean puntoYComaFinal) throws IOException {
+            nuevaFila();
+            escribirVarint(productos, (codigo << 1) | (puntoYComaFinal ? 1 : 0));
+            escribirVarint(cantidades, (cantidad << 1) ^ (cantidad >> 31));
+        }
+
+        /**
+         * Agrega una fila conservando su línea original, que main procesa
+         * como en texto al leerla.
+         *
+         * @param linea contenido de la línea, sin el salto de línea
+         */
+        public void agregarOriginal(byte[] linea) throws IOException {
+            escribirVarint(originales, filas - filaOriginal);
+            escribirBytes(originales, linea);
+            filaOriginal = filas;
+            cantidadOriginales++;
+            agregar(0, 0, false);
+        }
+
+        /**
+         * Registra líneas del texto sin venta antes de la próxima fila, para
+         * que cada fila conserve su número de línea.
+         *
+         * @param lineas cantidad de líneas saltadas; -1 si la fila anterior
+         *               terminaba en '\r' y esta sigue en la misma línea
+         */
+        public void saltarLineas(int lineas) {
+            lineasSaltadas += lineas;
+        }
+
+        private void nuevaFila() throws IOException {
+            if (lineasSaltadas != 0) {
+                escribirVarint(saltos, filas - filaSalto);
+                escribirVarint(saltos, (lineasSaltadas << 1) ^ (lineasSaltadas >> 31));
+                filaSalto = filas;
+                cantidadSaltos++;
+                lineasSaltadas = 0;
+            }
+            filas++;
+        }
+
+        /**
+         * @return cantidad de filas agregadas
+         */
+        public int filas() {
+            return filas;
+        }
+
+        /**
+         * Escribe el archivo columnar.
+         *
+         * @param archivo destino
+         * @throws IOException si no se puede escribir o el resultado no se
+         *                     podría leer en un solo buffer
+         */
+        public void escribir(File archivo) throws IOException {
+            if (productos.tamano + cantidades.tamano + saltos.tamano + originales.tamano
+                    > Integer.MAX_VALUE - 8) {
+                throw new IOException("Archivo demasiado grande para el formato columnar: " + archivo.getName());
+            }
+            try (OutputStream salida = new BufferedOutputStream(new FileOutputStream(archivo), 1 << 16)) {
+                escribirEntero(salida, FIRMA);
+                escribirBytes(salida, vendedor);
+                escribirVarint(salida, filas);
+                escribirVarint(salida, diccionario.size());
+                for (byte[] producto : diccionario) {
+                    escribirBytes(salida, producto);
+                }
+                escribirVarint(salida, cantidadSaltos);
+                saltos.copiarA(salida);
+                escribirVarint(salida, cantidadOriginales);
+                originales.copiarA(salida);
+                escribirVarint(salida, (int) productos.tamano);
+                productos.copiarA(salida);
+                cantidades.copiarA(salida);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            productos.close();
+            cantidades.close();
+            saltos.close();
+            originales.close();
+        }
+    }
+
+    /**
+     * Bytes de una parte del archivo mientras se escribe: en memoria hasta
+     * {@value #LIMITE_MEMORIA} bytes y después en un temporal.
+     */
+    private static class Parte extends OutputStream {
+        private byte[] datos = new byte[64];
+        private long tamano;
+        private File temporal;
+        private OutputStream salida;
+
+        @Override
+        public void write(int b) throws IOException {
+            if (salida == null && tamano == LIMITE_MEMORIA) {
+                volcar();
+            }
+            if (salida != null) {
+                salida.write(b);
+            } else {
+                if (tamano == datos.length) {
+                    datos = Arrays.copyOf(datos, datos.length * 2);
+                }
+                datos[(int) tamano] = (byte) b;
+            }
+            tamano++;
+        }
+
+        @Override
+        public void write(byte[] b, int desde, int longitud) throws IOException {
+            if (salida == null && tamano + longitud > LIMITE_MEMORIA) {
+                volcar();
+            }
+            if (salida != null) {
+                salida.write(b, desde, longitud);
+            } else {
+                if (tamano + longitud > datos.length) {
+                    datos = Arrays.copyOf(datos, Math.max(datos.length * 2, (int) tamano + longitud));
+                }
+                System.arraycopy(b, desde, datos, (int) tamano, longitud);
+            }
+            tamano += longitud;
+        }
+
+        private void volcar() throws IOException {
+            temporal = File.createTempFile("columnar-", ".tmp");
+            temporal.deleteOnExit();
+            salida = new BufferedOutputStream(new FileOutputStream(temporal), 1 << 16);
+            salida.write(datos, 0, (int) tamano);
+            datos = null;
+        }
+
+        void copiarA(OutputStream destino) throws IOException {
+            if (salida == null) {
+                destino.write(datos, 0, (int) tamano);
+                return;
+            }
+            salida.flush();
+            Files.copy(temporal.toPath(), destino);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (salida != null) {
+                salida.close();
+                Files.deleteIfExists(temporal.toPath());
+            }
+        }
+    }
+
+    /**
+     * Encabezado de un archivo columnar ya leído, con las posiciones de cada
+     * parte dentro del buffer.
+     */
+    public static class Lectura {
+        final ByteBuffer datos;
+        final String nombreArchivo;
+        final int fin;
+        int inicioVendedor;
+        int finVendedor;
+        int filas;
+        int[] inicioProducto;
+        int[] finProducto;
+        // Datos de la última fila leída: número de línea en el texto, línea
+        // original (inicio -1 si no tiene) y si terminaba en ';'
+        int linea = 1;
+        int inicioOriginal = -1;
+        int finOriginal;
+        boolean puntoYComaFinal;
+        // Firma del archivo; "VCO2" marca con el bit bajo las filas
+        // inválidas, cuyo código indica su línea en inicioInvalida
+        private final int firma;
+        private int[] inicioInvalida;
+        private int[] finInvalida;
+        // "VCO3": fila y posición del próximo salto y de la próxima línea
+        // original, y cuántos quedan
+        private int saltosRestantes;
+        private int filaSalto;
+        private int posicionSaltos;
+        private int originalesRestantes;
+        private int filaOriginal;
+        private int posicionOriginales;
+        private int fila = -1;
+        // Posición actual en cada columna y de la lectura en curso
+        int posicionProductos;
+        int posicionCantidades;
+        private int posicion;
+
+        /**
+         * Lee el encabezado y el diccionario de datos[desde, fin).
+         *
+         * @throws IOException si el contenido no tiene el formato columnar
+         */
+        public Lectura(ByteBuffer datos, int desde, int fin, String nombreArchivo) throws IOException {
+            this.datos = datos;
+            this.fin = fin;
+            this.nombreArchivo = nombreArchivo;
+            firma = fin - desde < 4 ? 0 : datos.getInt(desde);
+            if (firma != FIRMA && firma != FIRMA_V2 && firma != FIRMA_V1) {
+                throw new IOException("Formato columnar inválido en " + nombreArchivo);
+            }
+            posicion = desde + 4;
+            int longitud = leerVarint();
+            inicioVendedor = posicion;
+            finVendedor = avanzar(longitud);
+
+            filas = leerVarint();
+            int cantidadProductos = leerVarint();
+            inicioProducto = new int[cantidadProductos];
+            finProducto = new int[cantidadProductos];
+            for (int d = 0; d < cantidadProductos; d++) {
+                longitud = leerVarint();
+                inicioProducto[d] = posicion;
+                finProducto[d] = avanzar(longitud);
+            }
+            if (firma == FIRMA) {
+                leerListas();
+            } else {
+                int cantidadInvalidas = firma == FIRMA_V2 ? leerVarint() : 0;
+                inicioInvalida = new int[cantidadInvalidas];
+                finInvalida = new int[cantidadInvalidas];
+                for (int l = 0; l < cantidadInvalidas; l++) {
+                    longitud = leerVarint();
+                    inicioInvalida[l] = posicion;
+                    finInvalida[l] = avanzar(longitud);
+                }
+            }
+
+            int bytesProductos = leerVarint();
+            posicionProductos = posicion;
+            posicionCantidades = avanzar(bytesProductos);
+        }
+
+        /**
+         * Recorre los saltos y las líneas originales hasta las columnas,
+         * dejando listo el primer elemento de cada lista.
+         */
+        private void leerListas() throws IOException {
+            saltosRestantes = leerVarint();
+            posicionSaltos = posicion;
+            for (int s = 0; s < saltosRestantes; s++) {
+                leerVarint();
+                leerVarint();
+            }
+            originalesRestantes = leerVarint();
+            posicionOriginales = posicion;
+            for (int o = 0; o < originalesRestantes; o++) {
+                leerVarint();
+                avanzar(leerVarint());
+            }
+            int columnas = posicion;
+            if (saltosRestantes > 0) {
+                posicion = posicionSaltos;
+                filaSalto = leerVarint();
+                posicionSaltos = posicion;
+            }
+            if (originalesRestantes > 0) {
+                posicion = posicionOriginales;
+                filaOriginal = leerVarint();
+                posicionOriginales = posicion;
+            }
+            posicion = columnas;
+        }
+
+        private int avanzar(int longitud) throws IOException {
+            if (longitud < 0 || longitud > fin - posicion) {
+                throw truncado();
+            }
+            posicion += longitud;
+            return posicion;
+        }
+
+        private int leerVarint() throws IOException {
+            int valor = 0;
+            for (int desplazamiento = 0; desplazamiento < 35; desplazamiento += 7) {
+                if (posicion >= fin) {
+                    throw truncado();
+                }
+                byte b = datos.get(posicion++);
+                valor |= (b & 0x7F) << desplazamiento;
+                if (b >= 0) {
+                    return valor;
+                }
+            }
+            throw truncado();
+        }
+
+        /**
+         * Avanza a la fila siguiente y deja en {@link #linea},
+         * {@link #inicioOriginal} y {@link #puntoYComaFinal} sus datos.
+         *
+         * @return el código de producto de la fila, que no se usa si la fila
+         *         tiene línea original
+         */
+        int siguienteProducto() throws IOException {
+            posicion = posicionProductos;
+            int codigo = leerVarint();
+            posicionProductos = posicion;
+            fila++;
+            linea++;
+            inicioOriginal = -1;
+            puntoYComaFinal = false;
+            if (firma == FIRMA) {
+                puntoYComaFinal = (codigo & 1) != 0;
+                codigo >>>= 1;
+                siguientesListas();
+            } else if (firma == FIRMA_V2) {
+                boolean invalida = (codigo & 1) != 0;
+                codigo >>>= 1;
+                if (invalida) {
+                    if (codigo < 0 || codigo >= inicioInvalida.length) {
+                        throw new IOException("Código de producto inválido en " + nombreArchivo);
+                    }
+                    inicioOriginal = inicioInvalida[codigo];
+                    finOriginal = finInvalida[codigo];
+                }
+            }
+            if (inicioOriginal < 0 && (codigo < 0 || codigo >= inicioProducto.length)) {
+                throw new IOException("Código de producto inválido en " + nombreArchivo);
+            }
+            return codigo;
+        }
+
+        private void siguientesListas() throws IOException {
+            if (saltosRestantes > 0 && filaSalto == fila) {
+                posicion = posicionSaltos;
+                int zigzag = leerVarint();
+                linea += (zigzag >>> 1) ^ -(zigzag & 1);
+                if (--saltosRestantes > 0) {
+                    filaSalto += leerVarint();
+                }
+                posicionSaltos = posicion;
+            }
+            if (originalesRestantes > 0 && filaOriginal == fila) {
+                posicion = posicionOriginales;
+                int longitud = leerVarint();
+                inicioOriginal = posicion;
+                finOriginal = avanzar(longitud);
+                if (--originalesRestantes > 0) {
+                    filaOriginal += leerVarint();
+                }
+                posicionOriginales = posicion;
+            }
+        }
+
+        /**
+         * @return la cantidad de la fila siguiente
+         */
+        int siguienteCantidad() throws IOException {
+            posicion = posicionCantidades;
+            int zigzag = leerVarint();
+            posicionCantidades = posicion;
+            return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+
+        /**
+         * @return cantidad de productos distintos del diccionario
+         */
+        int productos() {
+            return inicioProducto.length;
+        }
+
+        private IOException truncado() {
+            return new IOException("Archivo columnar truncado: " + nombreArchivo);
+        }
+    }
+
+    private FormatoColumnar() {
+    }
+
+    /**
+     * Convierte los archivos de ventas de texto de un directorio. Solo se
+     * convierten los que no tienen versión columnar o la tienen más antigua.
+     *
+     * Argumentos: {@code --directorio D} (por defecto el actual) y
+     * {@code --reemplazar} para borrar cada archivo de texto convertido.
+     *
+     * @param args argumentos de línea de comandos
+     */
+    public static void main(String[] args) {
+        File directorio = new File(".");
+        boolean reemplazar = false;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--directorio":
+                        if (i + 1 >= args.length) {
+                            throw new IllegalArgumentException("Falta el valor de --directorio");
+                        }
+                        directorio = new File(args[++i]);
+                        break;
+                    case "--reemplazar":
+                        reemplazar = true;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Argumento desconocido: " + args[i]);
+                }
+            }
+
+            File[] archivos = directorio.listFiles((dir, nombre) ->
+                nombre.startsWith("ventas_") && nombre.endsWith(".txt"));
+            if (archivos == null || archivos.length == 0) {
+                throw new IOException("No se encontraron archivos de ventas en el directorio " + directorio);
+            }
+
+            int convertidos = 0;
+            long bytesTexto = 0;
+            long bytesColumnar = 0;
+            for (File texto : archivos) {
+                File binario = versionColumnar(texto);
+                if (binario.exists() && binario.lastModified() >= texto.lastModified()) {
+                    continue;
+                }
+                if (convertir(texto, binario)) {
+                    convertidos++;
+                    bytesTexto += texto.length();
+                    bytesColumnar += binario.length();
+                    if (reemplazar && !texto.delete()) {
+                        System.out.println("ADVERTENCIA: No se pudo borrar " + texto.getName());
+                    }
+                }
+            }
+
+            System.out.println("✓ Archivos convertidos: " + convertidos + "/" + archivos.length
+                    + " (" + bytesTexto + " bytes de texto, " + bytesColumnar + " en formato columnar)");
+        } catch (IOException e) {
+            System.err.println("ERROR: Problema al leer o escribir archivos:");
+            System.err.println(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            System.err.println("ERROR: Argumentos inválidos:");
+            System.err.println(e.getMessage());
+        }
+    }
+
+    /**
+     * @param texto archivo de ventas de texto
+     * @return el archivo columnar equivalente, en el mismo directorio
+     */
+    public static File versionColumnar(File texto) {
+        String nombre = texto.getName();
+        return new File(texto.getParentFile(), nombre.substring(0, nombre.length() - ".txt".length()) + EXTENSION);
+    }
+
+    /**
+     * Convierte un archivo de ventas de texto, leyéndolo por bloques de
+     * líneas. Se conservan las mismas filas que acepta main, incluidas las
+     * que rechaza al leerlas, con su número de línea; las que no se pueden
+     * reconstruir exactamente desde las columnas guardan su línea original.
+     *
+     * @param texto archivo de texto
+     * @param binario destino en formato columnar
+     * @return true si se convirtió; false si el archivo estaba vacío
+     * @throws IOException si hay problemas al leer o escribir
+     */
+    public static boolean convertir(File texto, File binario) throws IOException {
+        Conversion conversion = new Conversion();
+        try {
+            LectorVentas.leer(texto, LectorVentas.Modo.COMPLETO, conversion);
+            if (conversion.escritor == null) {
+                System.out.println("ADVERTENCIA: Archivo vacío, no se convierte: " + texto.getName());
+                return false;
+            }
+            conversion.escritor.escribir(binario);
+            return true;
+        } finally {
+            if (conversion.escritor != null) {
+                conversion.escritor.close();
+            }
+        }
+    }
+
+    /**
+     * Estado de la conversión de un archivo de texto entre bloques.
+     */
+    private static class Conversion implements LectorVentas.Bloque {
+        // null hasta leer la primera línea, y también si estaba vacía
+        Escritor escritor;
+        boolean vacio;
+        // Línea en curso, contada como ParserVentas.Posicion, y la que tendría
+        // la próxima fila si no hubiera líneas sin venta
+        int linea = 1;
+        int lineaEsperada = 2;
+
+        @Override
+        public void procesar(ByteBuffer datos, int desde, int fin) throws IOException {
+            if (vacio) {
+                return;
+            }
+            int inicio = desde;
+            if (escritor == null) {
+                int finPrimeraLinea = ParserVentas.finDeLinea(datos, desde, fin);
+                int inicioId = ParserVentas.saltarBlancos(datos, desde, finPrimeraLinea);
+                int finId = ParserVentas.recortarBlancos(datos, inicioId, finPrimeraLinea);
+                if (inicioId == finId) {
+                    vacio = true;
+                    return;
+                }
+                escritor = new Escritor(ParserVentas.texto(datos, inicioId, finId));
+                pasarLinea(datos, finPrimeraLinea, fin);
+                inicio = finPrimeraLinea + 1;
+            }
+            while (inicio < fin) {
+                int finLinea = ParserVentas.finDeLinea(datos, inicio, fin);
+                convertirLinea(datos, inicio, finLinea);
+                pasarLinea(datos, finLinea, fin);
+                inicio = finLinea + 1;
+            }
+        }
+
+        private void pasarLinea(ByteBuffer datos, int finLinea, int fin) {
+            if (finLinea < fin && datos.get(finLinea) == '\n') {
+                linea++;
+            }
+        }
+
+        /**
+         * Interpreta una línea con las mismas reglas que ParserVentas, sin
+         * validar el producto ni el signo de la cantidad.
+         */
+        private void convertirLinea(ByteBuffer datos, int inicio, int fin) throws IOException {
+            int separador = ParserVentas.indiceDe(datos, inicio, fin, (byte) ';');
+            if (separador < 0 || !ParserVentas.hayContenidoTras(datos, separador + 1, fin)) {
+                return;
+            }
+            int finCantidad = ParserVentas.indiceDe(datos, separador + 1, fin, (byte) ';');
+            if (finCantidad < 0) {
+                finCantidad = fin;
+            }
+
+            escritor.saltarLineas(linea - lineaEsperada);
+            lineaEsperada = linea + 1;
+            long cantidad = ParserVentas.parsearEntero(datos, separador + 1, finCantidad);
+            // Solo "producto;cantidad" o "producto;cantidad;" sin blancos
+            // ni ceros o signos de más se reconstruyen desde las columnas
+            boolean exacta = cantidad != Long.MIN_VALUE
+                    && finCantidad - separador - 1 == longitudDecimal(cantidad)
+                    && finCantidad >= fin - 1
+                    && ParserVentas.saltarBlancos(datos, inicio, separador) == inicio
+                    && ParserVentas.recortarBlancos(datos, inicio, separador) == separador
+                    && esAscii(datos, inicio, fin);
+            if (!exacta) {
+                byte[] original = new byte[fin - inicio];
+                datos.get(inicio, original);
+                escritor.agregarOriginal(original);
+                return;
+            }
+            escritor.agregar(escritor.codigo(ParserVentas.texto(datos, inicio, separador)), (int) cantidad,
+                    finCantidad < fin);
+        }
+    }
+
+    private static int longitudDecimal(long valor) {
+        int longitud = valor < 0 ? 2 : 1;
+        for (long resto = Math.abs(valor) / 10; resto > 0; resto /= 10) {
+            longitud++;
+        }
+        return longitud;
+    }
+
+    private static boolean esAscii(ByteBuffer datos, int desde, int hasta) {
+        for (int i = desde; i < hasta; i++) {
+            if (datos.get(i) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void escribirEntero(OutputStream salida, int valor) throws IOException {
+        salida.write(valor >>> 24);
+        salida.write(valor >>> 16);
+        salida.write(valor >>> 8);
+        salida.write(valor);
+    }
+
+    private static void escribirBytes(OutputStream salida, byte[] bytes) throws IOException {
+        escribirVarint(salida, bytes.length);
+        salida.write(bytes);
+    }
+
+    private static void escribirVarint(OutputStream salida, int valor) throws IOException {
+        while ((valor & ~0x7F) != 0) {
+            salida.write((valor & 0x7F) | 0x80);
+            valor >>>= 7;
+        }
+        salida.write(valor);
+    }
+}
@@ -0,0 +1,30 @@
+/**
+ * Utilidades para escribir números en los reportes sobre un StringBuilder
+ * reutilizable, sin pasar por String.format en cada fila.
+ */
+public class FormatoNumeros {
+
+    private FormatoNumeros() {
+    }
+
+    /**
+     * Agrega un importe en centavos con dos decimales y punto como
+     * separador, sin pasar por double: los centavos se separan con una
+     * división entera.
+     *
+     * @param destino StringBuilder donde se agrega el texto
+     * @param centavos importe en centavos
+     */
+    public static void agregarCentavos(StringBuilder destino, long centavos) {
+        long unidades = centavos / 100;
+        int resto = (int) (centavos % 100);
+        if (centavos < 0) {
+            // Se niegan el cociente y el resto por separado para no desbordar con Long.MIN_VALUE
+            destino.append('-');
+            unidades = -unidades;
+            resto = -resto;
+        }
+        destino.append(unidades).append('.')
+                .append((char) ('0' + resto / 10)).append((char) ('0' + resto % 10));
+    }
+}
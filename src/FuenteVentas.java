@@ -0,0 +1,162 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ * Origen del contenido de un archivo de ventas: un archivo suelto
+ * ({@code ventas_*.txt} o {@code ventas_*.bin}) o un registro dentro de un
+ * segmento compactado (ver SegmentoVentas).
+ */
+public class FuenteVentas {
+
+    // Archivo suelto o segmento que contiene el registro
+    final File archivo;
+    // Nombre del archivo de ventas original, usado en advertencias y en el punto de control
+    final String nombre;
+    // Solo para registros de segmento: ubicación y CRC32C del contenido
+    final long posicion;
+    final int longitud;
+    final long crc;
+
+    private FuenteVentas(File archivo, String nombre, long posicion, int longitud, long crc) {
+        this.archivo = archivo;
+        this.nombre = nombre;
+        this.posicion = posicion;
+        this.longitud = longitud;
+        this.crc = crc;
+    }
+
+    /**
+     * @return true si el contenido está dentro de un segmento
+     */
+    public boolean enSegmento() {
+        return posicion >= 0;
+    }
+
+    /**
+     * @return identificador único de la fuente para el punto de control
+     */
+    public String clave() {
+        return enSegmento() ? archivo.getName() + "/" + nombre : nombre;
+    }
+
+    /**
+     * Indica si un nombre corresponde a un archivo de ventas suelto.
+     */
+    public static boolean esArchivoVentas(String nombre) {
+        return nombre.startsWith("ventas_")
+                && (nombre.endsWith(".txt") || nombre.endsWith(FormatoColumnar.EXTENSION));
+    }
+
+    /**
+     * @param nombre nombre de un archivo de ventas
+     * @return el nombre sin extensión, igual para las versiones de texto y
+     *         columnar de un mismo archivo
+     */
+    public static String base(String nombre) {
+        int punto = nombre.lastIndexOf('.');
+        return punto < 0 ? nombre : nombre.substring(0, punto);
+    }
+
+    /**
+     * Lista las fuentes de ventas de un directorio: primero los archivos
+     * sueltos, en el orden del listado, y luego los registros de cada segmento
+     * en el orden de su índice.
+     *
+     * De cada archivo (por nombre sin extensión) se usa solo la versión más
+     * nueva: un archivo suelto antes que un registro de segmento, y un
+     * segmento posterior antes que uno anterior. Los registros marcados como
+     * reemplazados se omiten. Un archivo suelto idéntico al registro vigente
+     * (porque la compactación se interrumpió antes de borrarlo) se omite para
+     * leer el registro.
+     *
+     * @param directorio directorio de trabajo
+     * @return fuentes a procesar
+     * @throws IOException si algún índice de segmento no se puede leer
+     */
+    public static FuenteVentas[] listar(File directorio) throws IOException {
+        // Registro vigente de cada archivo; los índices se recorren del más antiguo al más nuevo
+        Map<String, FuenteVentas> compactados = new HashMap<>();
+        List<FuenteVentas> registros = new ArrayList<>();
+        for (File indice : SegmentoVentas.listarIndices(directorio)) {
+            File segmento = SegmentoVentas.segmentoDe(indice);
+            for (SegmentoVentas.Registro registro : SegmentoVentas.leerIndice(indice)) {
+                if (registro.reemplazado) {
+                    continue;
+                }
+                FuenteVentas fuente = new FuenteVentas(segmento, registro.nombre, registro.posicion,
+                        registro.longitud, registro.crc);
+                registros.add(fuente);
+                compactados.put(base(registro.nombre), fuente);
+            }
+        }
+
+        List<FuenteVentas> fuentes = new ArrayList<>();
+        for (File archivo : listarArchivos(directorio)) {
+            String base = base(archivo.getName());
+            FuenteVentas compactado = compactados.get(base);
+            if (compactado != null && compactado.nombre.equals(archivo.getName())
+                    && archivo.length() == compactado.longitud && PuntoControl.crc(archivo) == compactado.crc) {
+                continue;
+            }
+            if (compactado != null) {
+                // El archivo suelto es una versión más nueva
+                compactados.remove(base);
+            }
+            fuentes.add(new FuenteVentas(archivo, archivo.getName(), -1, (int) archivo.length(), 0));
+        }
+        for (FuenteVentas registro : registros) {
+            if (compactados.get(base(registro.nombre)) == registro) {
+                fuentes.add(registro);
+            }
+        }
+        return fuentes.toArray(new FuenteVentas[0]);
+    }
+
+    /**
+     * Lista los archivos de ventas sueltos de un directorio. Si un archivo
+     * está en formato de texto y columnar se usa solo uno: el columnar, salvo
+     * que el de texto haya cambiado después de la conversión.
+     *
+     * @param directorio directorio de trabajo
+     * @return los archivos, en el orden del listado
+     */
+    public static File[] listarArchivos(File directorio) {
+        File[] archivos = directorio.listFiles((dir, nombre) -> esArchivoVentas(nombre));
+        return archivos == null ? new File[0] : seleccionarFormato(directorio, archivos);
+    }
+
+    /**
+     * Descarta de un listado de archivos de ventas las versiones reemplazadas
+     * de los que están en ambos formatos, con el criterio de
+     * {@link #listarArchivos(File)}.
+     *
+     * @param directorio directorio de los archivos
+     * @param archivos archivos de ventas sueltos
+     * @return los archivos a procesar, en el mismo orden
+     */
+    public static File[] seleccionarFormato(File directorio, File[] archivos) {
+        Set<String> nombres = new HashSet<>();
+        for (File archivo : archivos) {
+            nombres.add(archivo.getName());
+        }
+
+        List<File> seleccionados = new ArrayList<>(archivos.length);
+        for (File archivo : archivos) {
+            String nombre = archivo.getName();
+            boolean columnar = nombre.endsWith(FormatoColumnar.EXTENSION);
+            String base = base(nombre);
+            String otroNombre = base + (columnar ? ".txt" : FormatoColumnar.EXTENSION);
+            if (!nombres.contains(otroNombre)) {
+                seleccionados.add(archivo);
+                continue;
+            }
+            File otro = new File(directorio, otroNombre);
+            long modificadoTexto = (columnar ? otro : archivo).lastModified();
+            long modificadoColumnar = (columnar ? archivo : otro).lastModified();
+            if (columnar == (modificadoColumnar >= modificadoTexto)) {
+                seleccionados.add(archivo);
+            }
+        }
+        return seleccionados.size() == archivos.length ? archivos : seleccionados.toArray(new File[0]);
+    }
+}
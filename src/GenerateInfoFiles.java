@@ -1,8 +1,22 @@
-import java.io.FileWriter;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.random.RandomGenerator;
 
 /**
  * Clase GenerateInfoFiles para generar archivos planos pseudoaleatorios
@@ -12,6 +26,15 @@ import java.util.Random;
  * 1. Archivos de información de vendedores
  * 2. Archivos de información de productos
  * 3. Archivos individuales de ventas por vendedor
+ * 
+ * Las cantidades se pueden configurar por línea de comandos para generar
+ * datos a escala de producción (ver {@link #main(String[])}). Con una semilla
+ * fija la salida es reproducible: cada bloque de productos o vendedores y cada
+ * archivo de ventas usa su propio SplittableRandom derivado de la semilla, así
+ * que el resultado no depende del número de hilos.
+ * 
+ * Las líneas se escriben como bytes en buffers reutilizables (ver
+ * {@link BufferSalida}), sin String.format ni un String por línea.
  */
 public class GenerateInfoFiles {
     
@@ -40,25 +63,100 @@ public class GenerateInfoFiles {
         "Funda", "Soporte", "Hub USB"
     };
     
+    private static final String[] MODELOS = {
+        "Pro", "Max", "Plus", "Lite", "Standard", "Premium",
+        "v2.0", "v3.0", "2024", "2025", "Ultra", "Mini"
+    };
+    
     private static final String[] TIPOS_DOCUMENTO = {"CC", "CE", "TI", "PP"};
     
-    private static Random random = new Random();
+    // Las listas anteriores en UTF-8, para escribirlas sin codificar cada vez
+    private static final byte[][] BYTES_NOMBRES = codificar(NOMBRES);
+    private static final byte[][] BYTES_APELLIDOS = codificar(APELLIDOS);
+    private static final byte[][] BYTES_PRODUCTOS = codificar(PRODUCTOS);
+    private static final byte[][] BYTES_MODELOS = codificar(MODELOS);
+    private static final byte[][] BYTES_TIPOS = codificar(TIPOS_DOCUMENTO);
+    private static final byte[] PREFIJO_PRODUCTO = {'P', 'R', 'O', 'D'};
+    
+    // Filas de productos o vendedores por bloque: fijo para que la salida no
+    // dependa del número de hilos
+    private static final int FILAS_POR_BLOQUE = 1 << 14;
+    // Tamaño a partir del cual un buffer de ventas se vuelca al archivo
+    private static final int TAMANO_BUFFER = 1 << 16;
+    
+    // Generador de los datos maestros; cada bloque usa uno separado de este
+    private static SplittableRandom random = new SplittableRandom();
     private static List<VendedorInfo> vendedoresGenerados = new ArrayList<>();
+    private static Map<Long, VendedorInfo> vendedoresPorNumero = new HashMap<>();
+    
+    // Parámetros de generación (los valores por defecto son los originales)
+    private static int cantidadProductos = 25;
+    private static int cantidadVendedores = 10;
+    private static int ventasMinimas = 5;
+    private static int ventasMaximas = 19;
+    private static long semilla = new Random().nextLong();
+    private static double exponenteZipf = 0.0;
+    private static int hilos = 1;
+    private static File directorio = new File(".");
+    // true para escribir los archivos de ventas en formato columnar (.bin)
+    private static boolean columnar = false;
+    
+    // Popularidad de los productos, creada según la cantidad de productos generados
+    private static DistribucionZipf popularidad = new DistribucionZipf(cantidadProductos, 0.0);
+    
+    // Rango de números de documento de 8 dígitos
+    private static final long DOCUMENTO_MINIMO = 10000000L;
+    private static final long RANGO_DOCUMENTOS = 90000000L;
+    // Paso primo con el rango: recorre todos los números sin repetir
+    private static final long PASO_DOCUMENTOS = 48271L * 65537L;
     
     /**
-     * Clase interna para mantener la información completa del vendedor
+     * Distribución de popularidad de los productos. Con exponente 0 todos los
+     * productos son igual de probables; con exponente mayor a 0 sigue la ley de
+     * Zipf: el producto de posición k tiene probabilidad proporcional a 1/k^s.
+     */
+    private static class DistribucionZipf {
+        int cantidad;
+        double[] acumulada;   // null si la distribución es uniforme
+        
+        public DistribucionZipf(int cantidad, double exponente) {
+            this.cantidad = cantidad;
+            if (exponente > 0) {
+                acumulada = new double[cantidad];
+                double total = 0;
+                for (int k = 0; k < cantidad; k++) {
+                    total += 1.0 / Math.pow(k + 1, exponente);
+                    acumulada[k] = total;
+                }
+            }
+        }
+        
+        /**
+         * @return posición del producto elegido, entre 0 y cantidad - 1
+         */
+        public int muestra(RandomGenerator rnd) {
+            if (acumulada == null) {
+                return rnd.nextInt(cantidad);
+            }
+            double objetivo = rnd.nextDouble() * acumulada[cantidad - 1];
+            int posicion = Arrays.binarySearch(acumulada, objetivo);
+            return Math.min(posicion >= 0 ? posicion : -posicion - 1, cantidad - 1);
+        }
+    }
+    
+    /**
+     * Clase interna para mantener la identificación del vendedor (los nombres
+     * solo se escriben en vendedores.txt)
      */
     private static class VendedorInfo {
+        int tipo;   // posición en TIPOS_DOCUMENTO
         String tipoDocumento;
         long numeroDocumento;
-        String nombres;
-        String apellidos;
         
-        public VendedorInfo(String tipoDoc, long numDoc, String nombres, String apellidos) {
-            this.tipoDocumento = tipoDoc;
+        public VendedorInfo(int tipo, long numDoc) {
+            this.tipo = tipo;
+            this.tipoDocumento = TIPOS_DOCUMENTO[tipo];
             this.numeroDocumento = numDoc;
-            this.nombres = nombres;
-            this.apellidos = apellidos;
         }
         
         public String getIdentificacion() {
@@ -66,32 +164,111 @@ public class GenerateInfoFiles {
         }
     }
     
+    /**
+     * Buffer de bytes que crece según haga falta y se reutiliza entre líneas
+     * y archivos. Los números se escriben dígito a dígito.
+     */
+    private static class BufferSalida {
+        byte[] datos;
+        int tamano;
+        
+        public BufferSalida(int capacidad) {
+            datos = new byte[capacidad];
+        }
+        
+        private void reservar(int bytes) {
+            if (tamano + bytes > datos.length) {
+                datos = Arrays.copyOf(datos, Math.max(datos.length * 2, tamano + bytes));
+            }
+        }
+        
+        public BufferSalida agregar(byte valor) {
+            reservar(1);
+            datos[tamano++] = valor;
+            return this;
+        }
+        
+        public BufferSalida agregar(byte[] valor) {
+            reservar(valor.length);
+            System.arraycopy(valor, 0, datos, tamano, valor.length);
+            tamano += valor.length;
+            return this;
+        }
+        
+        /**
+         * Escribe un número no negativo con al menos {@code digitosMinimos}
+         * dígitos, completando con ceros a la izquierda.
+         */
+        public BufferSalida agregarNumero(long valor, int digitosMinimos) {
+            int digitos = 1;
+            for (long resto = valor / 10; resto > 0; resto /= 10) {
+                digitos++;
+            }
+            digitos = Math.max(digitos, digitosMinimos);
+            reservar(digitos);
+            for (int i = tamano + digitos - 1; i >= tamano; i--) {
+                datos[i] = (byte) ('0' + valor % 10);
+                valor /= 10;
+            }
+            tamano += digitos;
+            return this;
+        }
+        
+        /**
+         * Escribe un monto en centavos no negativo con dos decimales.
+         */
+        public BufferSalida agregarCentavos(long centavos) {
+            return agregarNumero(centavos / 100, 1).agregar((byte) '.').agregarNumero(centavos % 100, 2);
+        }
+        
+        public BufferSalida agregarIdProducto(int numero) {
+            return agregar(PREFIJO_PRODUCTO).agregarNumero(numero, 3);
+        }
+        
+        public void volcar(OutputStream salida) throws IOException {
+            salida.write(datos, 0, tamano);
+            tamano = 0;
+        }
+    }
+    
     /**
      * Método principal que ejecuta la generación de todos los archivos necesarios.
      * 
-     * @param args argumentos de línea de comandos (no utilizados)
+     * Argumentos opcionales:
+     * {@code --productos N}, {@code --vendedores N}, {@code --ventas-min N},
+     * {@code --ventas-max N} (ventas por vendedor), {@code --semilla S},
+     * {@code --zipf S} (exponente de popularidad, 0 = uniforme),
+     * {@code --hilos N}, {@code --directorio D} y {@code --formato texto|columnar}
+     * (formato de los archivos de ventas, por defecto texto).
+     * 
+     * @param args argumentos de línea de comandos
      */
     public static void main(String[] args) {
         try {
+            leerArgumentos(args);
+            random = new SplittableRandom(semilla);
+            
             System.out.println("=== INICIANDO GENERACIÓN DE ARCHIVOS ===");
+            System.out.println("Semilla: " + semilla);
             
             // Generar archivo de información de productos
-            createProductsFile(25);
+            createProductsFile(cantidadProductos);
             System.out.println("✓ Archivo de productos generado exitosamente");
             
             // Generar archivo de información de vendedores
-            createSalesManInfoFile(10);
+            createSalesManInfoFile(cantidadVendedores);
             System.out.println("✓ Archivo de información de vendedores generado exitosamente");
             
             // Generar archivos de ventas individuales para cada vendedor
-            generateSalesFiles();
+            long ventas = generateSalesFiles();
             System.out.println("✓ Archivos de ventas por vendedor generados exitosamente");
             
             System.out.println("=== GENERACIÓN COMPLETADA EXITOSAMENTE ===");
             System.out.println("Archivos generados:");
             System.out.println("- productos.txt");
             System.out.println("- vendedores.txt");
-            System.out.println("- " + vendedoresGenerados.size() + " archivos de ventas individuales");
+            System.out.println("- " + vendedoresGenerados.size() + " archivos de ventas individuales (" 
+                    + ventas + " ventas)");
             
         } catch (Exception e) {
             System.err.println("ERROR: Ocurrió un problema durante la generación de archivos:");
@@ -100,6 +277,67 @@ public class GenerateInfoFiles {
         }
     }
     
+    /**
+     * Lee los parámetros de generación de la línea de comandos.
+     * 
+     * @param args argumentos recibidos por main
+     */
+    private static void leerArgumentos(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Falta el valor de " + args[i]);
+            }
+            String valor = args[++i];
+            switch (args[i - 1]) {
+                case "--productos":
+                    cantidadProductos = Integer.parseInt(valor);
+                    break;
+                case "--vendedores":
+                    cantidadVendedores = Integer.parseInt(valor);
+                    break;
+                case "--ventas-min":
+                    ventasMinimas = Integer.parseInt(valor);
+                    break;
+                case "--ventas-max":
+                    ventasMaximas = Integer.parseInt(valor);
+                    break;
+                case "--semilla":
+                    semilla = Long.parseLong(valor);
+                    break;
+                case "--zipf":
+                    exponenteZipf = Double.parseDouble(valor);
+                    break;
+                case "--hilos":
+                    hilos = Integer.parseInt(valor);
+                    break;
+                case "--directorio":
+                    directorio = new File(valor);
+                    break;
+                case "--formato":
+                    if (!valor.equals("texto") && !valor.equals("columnar")) {
+                        throw new IllegalArgumentException("Formato desconocido: " + valor);
+                    }
+                    columnar = valor.equals("columnar");
+                    break;
+                default:
+                    throw new IllegalArgumentException("Argumento desconocido: " + args[i - 1]);
+            }
+        }
+        
+        if (ventasMinimas <= 0 || ventasMaximas < ventasMinimas) {
+            throw new IllegalArgumentException("Rango de ventas inválido: " + ventasMinimas + "-" + ventasMaximas);
+        }
+        if (exponenteZipf < 0) {
+            throw new IllegalArgumentException("El exponente de Zipf no puede ser negativo");
+        }
+        if (hilos <= 0) {
+            throw new IllegalArgumentException("La cantidad de hilos debe ser mayor a 0");
+        }
+        if (!directorio.isDirectory() && !directorio.mkdirs()) {
+            throw new IllegalArgumentException("No se pudo crear el directorio " + directorio);
+        }
+    }
+    
     /**
      * Crea un archivo con información pseudoaleatoria de productos.
      * 
@@ -111,21 +349,19 @@ public class GenerateInfoFiles {
             throw new IllegalArgumentException("La cantidad de productos debe ser mayor a 0");
         }
         
-        FileWriter writer = new FileWriter("productos.txt");
-        
-        try {
-            for (int i = 1; i <= productsCount; i++) {
-                String idProducto = String.format("PROD%03d", i);
-                String nombreProducto = PRODUCTOS[random.nextInt(PRODUCTOS.length)] + " " + 
-                                       generarModeloAleatorio();
-                double precio = generarPrecioAleatorio();
-                
-                writer.write(idProducto + ";" + nombreProducto + ";" + 
-                           String.format("%.2f", precio) + "\n");
+        popularidad = new DistribucionZipf(productsCount, exponenteZipf);
+        escribirEnBloques("productos.txt", productsCount, (desde, hasta, rnd) -> {
+            BufferSalida buffer = new BufferSalida((hasta - desde) * 48);
+            for (int i = desde; i < hasta; i++) {
+                // Precio entre 50.00 y 5000.00
+                long centavos = 5000 + rnd.nextLong(495000);
+                buffer.agregarIdProducto(i + 1).agregar((byte) ';')
+                        .agregar(BYTES_PRODUCTOS[rnd.nextInt(BYTES_PRODUCTOS.length)]).agregar((byte) ' ')
+                        .agregar(BYTES_MODELOS[rnd.nextInt(BYTES_MODELOS.length)]).agregar((byte) ';')
+                        .agregarCentavos(centavos).agregar((byte) '\n');
             }
-        } finally {
-            writer.close();
-        }
+            return buffer;
+        });
     }
     
     /**
@@ -139,27 +375,83 @@ public class GenerateInfoFiles {
             throw new IllegalArgumentException("La cantidad de vendedores debe ser mayor a 0");
         }
         
-        FileWriter writer = new FileWriter("vendedores.txt");
-        vendedoresGenerados.clear();
+        if (salesmanCount > RANGO_DOCUMENTOS) {
+            throw new IllegalArgumentException("La cantidad de vendedores no puede superar " + RANGO_DOCUMENTOS);
+        }
         
-        try {
-            for (int i = 0; i < salesmanCount; i++) {
-                String tipoDocumento = TIPOS_DOCUMENTO[random.nextInt(TIPOS_DOCUMENTO.length)];
-                long numeroDocumento = generarNumeroDocumento();
-                String nombres = generarNombres();
-                String apellidos = generarApellidos();
+        VendedorInfo[] vendedores = new VendedorInfo[salesmanCount];
+        long desplazamiento = Math.floorMod(random.nextLong(), RANGO_DOCUMENTOS);
+        escribirEnBloques("vendedores.txt", salesmanCount, (desde, hasta, rnd) -> {
+            BufferSalida buffer = new BufferSalida((hasta - desde) * 64);
+            for (int i = desde; i < hasta; i++) {
+                int tipo = rnd.nextInt(TIPOS_DOCUMENTO.length);
+                long numeroDocumento = generarNumeroDocumento(i, desplazamiento);
+                vendedores[i] = new VendedorInfo(tipo, numeroDocumento);
                 
-                // Crear objeto vendedor y agregarlo a la lista
-                VendedorInfo vendedor = new VendedorInfo(tipoDocumento, numeroDocumento, nombres, apellidos);
-                vendedoresGenerados.add(vendedor);
-                
-                // Escribir al archivo
-                String lineaVendedor = tipoDocumento + ";" + numeroDocumento + ";" + 
-                                     nombres + ";" + apellidos;
-                writer.write(lineaVendedor + "\n");
+                buffer.agregar(BYTES_TIPOS[tipo]).agregar((byte) ';').agregarNumero(numeroDocumento, 1)
+                        .agregar((byte) ';');
+                agregarNombres(buffer, rnd);
+                buffer.agregar((byte) ';');
+                agregarApellidos(buffer, rnd);
+                buffer.agregar((byte) '\n');
+            }
+            return buffer;
+        });
+        
+        vendedoresGenerados = new ArrayList<>(Arrays.asList(vendedores));
+        vendedoresPorNumero.clear();
+        for (VendedorInfo vendedor : vendedores) {
+            vendedoresPorNumero.put(vendedor.numeroDocumento, vendedor);
+        }
+    }
+    
+    /**
+     * Genera las filas de un bloque de un archivo de datos maestros.
+     */
+    private interface GeneradorBloque {
+        BufferSalida generar(int desde, int hasta, SplittableRandom rnd);
+    }
+    
+    /**
+     * Escribe un archivo de {@code filas} filas generadas por bloques de
+     * {@link #FILAS_POR_BLOQUE} en {@code hilos} hilos. Los generadores de los
+     * bloques se separan de {@code random} en orden, antes de repartirlos, y
+     * los bloques se escriben en orden a medida que terminan; como mucho hay
+     * {@code 2 × hilos} bloques en memoria.
+     */
+    private static void escribirEnBloques(String nombre, int filas, GeneradorBloque generador) 
+            throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(hilos);
+        try (OutputStream salida = new FileOutputStream(new File(directorio, nombre))) {
+            ArrayDeque<Future<BufferSalida>> pendientes = new ArrayDeque<>();
+            for (int desde = 0; desde < filas; desde += FILAS_POR_BLOQUE) {
+                int inicio = desde;
+                int fin = (int) Math.min(filas, (long) desde + FILAS_POR_BLOQUE);
+                SplittableRandom rnd = random.split();
+                pendientes.add(pool.submit(() -> generador.generar(inicio, fin, rnd)));
+                if (pendientes.size() >= 2 * hilos) {
+                    esperar(pendientes.poll()).volcar(salida);
+                }
+            }
+            while (!pendientes.isEmpty()) {
+                esperar(pendientes.poll()).volcar(salida);
             }
         } finally {
-            writer.close();
+            pool.shutdownNow();
+        }
+    }
+    
+    private static <T> T esperar(Future<T> resultado) throws IOException {
+        try {
+            return resultado.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Generación interrumpida", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause());
         }
     }
     
@@ -177,107 +469,173 @@ public class GenerateInfoFiles {
             throw new IllegalArgumentException("La cantidad de ventas debe ser mayor a 0");
         }
         
-        // Buscar el vendedor en la lista para obtener su tipo de documento
-        VendedorInfo vendedorEncontrado = null;
-        for (VendedorInfo v : vendedoresGenerados) {
-            if (v.numeroDocumento == id) {
-                vendedorEncontrado = v;
-                break;
-            }
-        }
-        
+        VendedorInfo vendedorEncontrado = vendedoresPorNumero.get(id);
         if (vendedorEncontrado == null) {
             throw new IllegalArgumentException("No se encontró el vendedor con ID: " + id);
         }
         
-        String nombreArchivo = "ventas_" + vendedorEncontrado.tipoDocumento + "_" + id + ".txt";
-        FileWriter writer = new FileWriter(nombreArchivo);
+        escribirVentas(vendedorEncontrado, randomSalesCount, random.split(), new BufferSalida(TAMANO_BUFFER));
+    }
+    
+    /**
+     * Escribe el archivo de ventas de un vendedor usando el generador indicado.
+     * 
+     * @param vendedor vendedor dueño del archivo
+     * @param cantidadVentas cantidad de ventas a generar
+     * @param rnd generador de números aleatorios del vendedor
+     * @param buffer buffer del hilo, vacío al entrar y al salir
+     * @throws IOException si ocurre un error al escribir el archivo
+     */
+    private static void escribirVentas(VendedorInfo vendedor, int cantidadVentas, SplittableRandom rnd, 
+            BufferSalida buffer) throws IOException {
+        if (columnar) {
+            escribirVentasColumnar(vendedor, cantidadVentas, rnd);
+            return;
+        }
         
-        try {
+        String nombreArchivo = "ventas_" + vendedor.tipoDocumento + "_" + vendedor.numeroDocumento + ".txt";
+        try (OutputStream salida = new FileOutputStream(new File(directorio, nombreArchivo))) {
             // Primera línea: información del vendedor (debe coincidir con vendedores.txt)
-            writer.write(vendedorEncontrado.getIdentificacion() + "\n");
+            buffer.agregar(BYTES_TIPOS[vendedor.tipo]).agregar((byte) ';')
+                    .agregarNumero(vendedor.numeroDocumento, 1).agregar((byte) '\n');
             
             // Generar ventas aleatorias
-            for (int i = 0; i < randomSalesCount; i++) {
-                String idProducto = String.format("PROD%03d", random.nextInt(25) + 1);
-                int cantidad = random.nextInt(20) + 1; // Entre 1 y 20 unidades
+            for (int i = 0; i < cantidadVentas; i++) {
+                int producto = popularidad.muestra(rnd) + 1;
+                int cantidad = rnd.nextInt(20) + 1; // Entre 1 y 20 unidades
                 
-                writer.write(idProducto + ";" + cantidad + ";\n");
+                buffer.agregarIdProducto(producto).agregar((byte) ';').agregarNumero(cantidad, 1)
+                        .agregar((byte) ';').agregar((byte) '\n');
+                if (buffer.tamano >= TAMANO_BUFFER) {
+                    buffer.volcar(salida);
+                }
             }
+            buffer.volcar(salida);
         } finally {
-            writer.close();
+            buffer.tamano = 0;
         }
     }
+
     
     /**
-     * Genera archivos de ventas para todos los vendedores creados.
+     * Escribe el archivo de ventas de un vendedor en formato columnar. Usa el
+     * generador en el mismo orden que el formato de texto, así que el
+     * contenido es el mismo que se obtendría convirtiendo ese archivo.
      */
-    private static void generateSalesFiles() {
-        try {
-            for (VendedorInfo vendedor : vendedoresGenerados) {
-                int cantidadVentas = random.nextInt(15) + 5; // Entre 5 y 19 ventas
-                createSalesMenFile(cantidadVentas, "", vendedor.numeroDocumento);
+    private static void escribirVentasColumnar(VendedorInfo vendedor, int cantidadVentas, SplittableRandom rnd) 
+            throws IOException {
+        String nombreArchivo = "ventas_" + vendedor.tipoDocumento + "_" + vendedor.numeroDocumento 
+                + FormatoColumnar.EXTENSION;
+        try (FormatoColumnar.Escritor escritor = new FormatoColumnar.Escritor(vendedor.getIdentificacion())) {
+            int[] codigos = new int[popularidad.cantidad];
+            Arrays.fill(codigos, -1);
+            
+            for (int i = 0; i < cantidadVentas; i++) {
+                int producto = popularidad.muestra(rnd);
+                int cantidad = rnd.nextInt(20) + 1; // Entre 1 y 20 unidades
+                
+                if (codigos[producto] < 0) {
+                    BufferSalida id = new BufferSalida(16).agregarIdProducto(producto + 1);
+                    codigos[producto] = escritor.codigo(new String(id.datos, 0, id.tamano, StandardCharsets.US_ASCII));
+                }
+                // Las líneas de texto terminan en ';' (ver escribirVentas)
+                escritor.agregar(codigos[producto], cantidad, true);
             }
-        } catch (IOException e) {
-            System.err.println("Error generando archivos de ventas: " + e.getMessage());
+            escritor.escribir(new File(directorio, nombreArchivo));
         }
     }
     
     /**
-     * Genera un número de documento aleatorio.
+     * Genera archivos de ventas para todos los vendedores creados, repartidos
+     * en {@code hilos} hilos. Cada vendedor usa un generador propio derivado
+     * de la semilla y de su posición, de modo que el contenido es el mismo con
+     * cualquier número de hilos, y cada bloque reutiliza un buffer para todos
+     * sus archivos.
      * 
-     * @return número de documento entre 10000000 y 99999999
+     * @return cantidad total de ventas generadas
+     * @throws Exception si falla la escritura de algún archivo
      */
-    private static long generarNumeroDocumento() {
-        return random.nextInt(90000000) + 10000000L;
+    private static long generateSalesFiles() throws Exception {
+        int bloques = Math.min(vendedoresGenerados.size(), hilos * 8);
+        ExecutorService pool = Executors.newFixedThreadPool(hilos);
+        try {
+            List<Future<Long>> resultados = new ArrayList<>();
+            for (int b = 0; b < bloques; b++) {
+                int desde = (int) ((long) vendedoresGenerados.size() * b / bloques);
+                int hasta = (int) ((long) vendedoresGenerados.size() * (b + 1) / bloques);
+                resultados.add(pool.submit(() -> generarBloque(desde, hasta)));
+            }
+            
+            long ventas = 0;
+            for (Future<Long> resultado : resultados) {
+                ventas += resultado.get();
+            }
+            return ventas;
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    private static long generarBloque(int desde, int hasta) throws IOException {
+        BufferSalida buffer = new BufferSalida(TAMANO_BUFFER + 64);
+        long ventas = 0;
+        for (int i = desde; i < hasta; i++) {
+            SplittableRandom rnd = new SplittableRandom(mezclar(semilla + i));
+            int cantidadVentas = ventasMinimas + rnd.nextInt(ventasMaximas - ventasMinimas + 1);
+            escribirVentas(vendedoresGenerados.get(i), cantidadVentas, rnd, buffer);
+            ventas += cantidadVentas;
+        }
+        return ventas;
     }
     
     /**
-     * Genera uno o dos nombres aleatorios de la lista predefinida.
-     * 
-     * @return cadena con uno o dos nombres separados por espacio
+     * Mezcla los bits de un valor (función final de SplitMix64) para derivar
+     * semillas independientes a partir de valores consecutivos.
      */
-    private static String generarNombres() {
-        String primerNombre = NOMBRES[random.nextInt(NOMBRES.length)];
-        
-        // 30% de probabilidad de tener segundo nombre
-        if (random.nextDouble() < 0.3) {
-            String segundoNombre = NOMBRES[random.nextInt(NOMBRES.length)];
-            return primerNombre + " " + segundoNombre;
-        }
-        
-        return primerNombre;
+    private static long mezclar(long valor) {
+        valor = (valor ^ (valor >>> 30)) * 0xbf58476d1ce4e5b9L;
+        valor = (valor ^ (valor >>> 27)) * 0x94d049bb133111ebL;
+        return valor ^ (valor >>> 31);
     }
     
     /**
-     * Genera uno o dos apellidos aleatorios de la lista predefinida.
+     * Genera un número de documento de apariencia aleatoria y sin repetir.
      * 
-     * @return cadena con uno o dos apellidos separados por espacio
+     * @param posicion posición del vendedor
+     * @param desplazamiento desplazamiento aleatorio común a la generación
+     * @return número de documento entre 10000000 y 99999999
      */
-    private static String generarApellidos() {
-        String primerApellido = APELLIDOS[random.nextInt(APELLIDOS.length)];
-        String segundoApellido = APELLIDOS[random.nextInt(APELLIDOS.length)];
-        
-        return primerApellido + " " + segundoApellido;
+    private static long generarNumeroDocumento(int posicion, long desplazamiento) {
+        return DOCUMENTO_MINIMO + (posicion * PASO_DOCUMENTOS + desplazamiento) % RANGO_DOCUMENTOS;
     }
     
     /**
-     * Genera un modelo aleatorio para complementar el nombre de productos.
-     * 
-     * @return cadena que representa un modelo (ej: "Pro", "Max", "v2.0")
+     * Escribe uno o dos nombres aleatorios de la lista predefinida, separados
+     * por espacio.
      */
-    private static String generarModeloAleatorio() {
-        String[] modelos = {"Pro", "Max", "Plus", "Lite", "Standard", "Premium", 
-                           "v2.0", "v3.0", "2024", "2025", "Ultra", "Mini"};
-        return modelos[random.nextInt(modelos.length)];
+    private static void agregarNombres(BufferSalida buffer, SplittableRandom rnd) {
+        buffer.agregar(BYTES_NOMBRES[rnd.nextInt(BYTES_NOMBRES.length)]);
+        
+        // 30% de probabilidad de tener segundo nombre
+        if (rnd.nextDouble() < 0.3) {
+            buffer.agregar((byte) ' ').agregar(BYTES_NOMBRES[rnd.nextInt(BYTES_NOMBRES.length)]);
+        }
     }
     
     /**
-     * Genera un precio aleatorio para productos.
-     * 
-     * @return precio entre 50.00 y 5000.00
+     * Escribe dos apellidos aleatorios de la lista predefinida, separados por
+     * espacio.
      */
-    private static double generarPrecioAleatorio() {
-        return random.nextDouble() * 4950.0 + 50.0; // Entre 50 y 5000
+    private static void agregarApellidos(BufferSalida buffer, SplittableRandom rnd) {
+        buffer.agregar(BYTES_APELLIDOS[rnd.nextInt(BYTES_APELLIDOS.length)]).agregar((byte) ' ')
+                .agregar(BYTES_APELLIDOS[rnd.nextInt(BYTES_APELLIDOS.length)]);
+    }
+    
+    private static byte[][] codificar(String[] textos) {
+        byte[][] bytes = new byte[textos.length][];
+        for (int i = 0; i < textos.length; i++) {
+            bytes[i] = textos[i].getBytes(StandardCharsets.UTF_8);
+        }
+        return bytes;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,203 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Lector de archivos de ventas que entrega su contenido como bloques de líneas
+ * completas sobre un ByteBuffer, listos para ParserVentas.
+ *
+ * Modos disponibles:
+ * 1. COMPLETO: lee con FileInputStream por bloques de hasta
+ *    {@value #TAMANO_BLOQUE} bytes cortados en el último fin de línea, así la
+ *    memoria no depende del tamaño del archivo. Los formatos que no están
+ *    organizados en líneas se leen completos a un arreglo nuevo.
+ * 2. NIO: usa FileChannel. Los archivos grandes se mapean en memoria por
+ *    ventanas y se recorren en su lugar; los pequeños se leen a un buffer
+ *    directo reutilizado por cada hilo.
+ */
+public class LectorVentas {
+
+    /**
+     * Forma de leer los archivos de ventas.
+     */
+    public enum Modo {
+        COMPLETO, NIO
+    }
+
+    /**
+     * Recibe un bloque de líneas completas del archivo.
+     */
+    public interface Bloque {
+        /**
+         * @param datos buffer con el contenido
+         * @param desde posición inicial del bloque
+         * @param fin posición final del bloque (exclusiva)
+         * @throws IOException si el contenido no es válido
+         */
+        void procesar(ByteBuffer datos, int desde, int fin) throws IOException;
+    }
+
+    // A partir de este tamaño el archivo se mapea en lugar de copiarse
+    static final int UMBRAL_MAPEO = 1 << 20;
+
+    // Tamaño de los bloques del modo COMPLETO (crece si una línea no entra)
+    static final int TAMANO_BLOQUE = 1 << 20;
+
+    // Tamaño máximo de cada ventana mapeada (un MappedByteBuffer no supera 2 GB)
+    static final int TAMANO_VENTANA = 1 << 30;
+
+    private static final ThreadLocal<ByteBuffer> BUFFER_HILO =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(64 * 1024));
+
+    private LectorVentas() {
+    }
+
+    /**
+     * Lee un archivo y entrega su contenido al bloque. El bloque se invoca al
+     * menos una vez, aunque el archivo esté vacío, y cada invocación termina en
+     * un fin de línea salvo la última.
+     *
+     * @param archivo archivo a leer
+     * @param modo modo de lectura
+     * @param bloque destino del contenido
+     * @throws IOException si hay problemas al leer el archivo o el bloque lo rechaza
+     */
+    public static void leer(File archivo, Modo modo, Bloque bloque) throws IOException {
+        leer(archivo, modo, true, bloque);
+    }
+
+    /**
+     * Lee un archivo y entrega todo su contenido al bloque en una sola
+     * invocación, para formatos que no están organizados en líneas. En modo
+     * NIO los archivos grandes se mapean completos.
+     *
+     * @param archivo archivo a leer
+     * @param modo modo de lectura
+     * @param bloque destino del contenido
+     * @throws IOException si hay problemas al leer el archivo, supera 2 GB o
+     *         el bloque lo rechaza
+     */
+    public static void leerCompleto(File archivo, Modo modo, Bloque bloque) throws IOException {
+        leer(archivo, modo, false, bloque);
+    }
+
+    private static void leer(File archivo, Modo modo, boolean porLineas, Bloque bloque) throws IOException {
+        if (modo == Modo.COMPLETO) {
+            try (FileInputStream entrada = new FileInputStream(archivo)) {
+                if (porLineas) {
+                    leerPorBloques(archivo, entrada, bloque);
+                    return;
+                }
+                if (archivo.length() > Integer.MAX_VALUE - 8) {
+                    throw new IOException("Archivo demasiado grande: " + archivo.getName());
+                }
+                byte[] datos = entrada.readAllBytes();
+                bloque.procesar(ByteBuffer.wrap(datos), 0, datos.length);
+            }
+            return;
+        }
+
+        try (FileChannel canal = FileChannel.open(archivo.toPath(), StandardOpenOption.READ)) {
+            long tamano = canal.size();
+            if (tamano < UMBRAL_MAPEO) {
+                ByteBuffer buffer = leerEnBufferHilo(canal, (int) tamano);
+                bloque.procesar(buffer, 0, buffer.limit());
+            } else if (porLineas) {
+                leerMapeado(archivo, canal, tamano, bloque);
+            } else {
+                if (tamano > Integer.MAX_VALUE) {
+                    throw new IOException("Archivo demasiado grande: " + archivo.getName());
+                }
+                bloque.procesar(canal.map(FileChannel.MapMode.READ_ONLY, 0, tamano), 0, (int) tamano);
+            }
+        }
+    }
+
+    private static ByteBuffer leerEnBufferHilo(FileChannel canal, int tamano) throws IOException {
+        ByteBuffer buffer = BUFFER_HILO.get();
+        if (buffer.capacity() < tamano) {
+            buffer = ByteBuffer.allocateDirect(Integer.highestOneBit(tamano - 1) << 1);
+            BUFFER_HILO.set(buffer);
+        }
+        buffer.clear().limit(tamano);
+        while (buffer.hasRemaining() && canal.read(buffer) >= 0) {
+            // Seguir leyendo hasta llenar el buffer o llegar al final
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Recorre el archivo por bloques en un arreglo reutilizado. Cada bloque se
+     * corta en el último fin de línea y lo que sigue pasa al principio del
+     * siguiente; si una línea no entra en el bloque, el arreglo se agranda.
+     */
+    private static void leerPorBloques(File archivo, FileInputStream entrada, Bloque bloque) throws IOException {
+        // Un byte más que el archivo para detectar el final con una sola lectura
+        byte[] datos = new byte[(int) Math.min(archivo.length() + 1, TAMANO_BLOQUE)];
+        int usados = 0;
+        while (true) {
+            int total = usados + entrada.readNBytes(datos, usados, datos.length - usados);
+            ByteBuffer buffer = ByteBuffer.wrap(datos);
+            if (total < datos.length) {
+                bloque.procesar(buffer, 0, total);
+                return;
+            }
+            int fin = ultimoFinDeLinea(buffer, 0, total) + 1;
+            if (fin == 0) {
+                if (datos.length >= TAMANO_VENTANA) {
+                    throw new IOException("Línea demasiado larga en " + archivo.getName());
+                }
+                datos = Arrays.copyOf(datos, Math.max(TAMANO_BLOQUE, datos.length * 2));
+                usados = total;
+                continue;
+            }
+            bloque.procesar(buffer, 0, fin);
+            usados = total - fin;
+            System.arraycopy(datos, fin, datos, 0, usados);
+        }
+    }
+
+    /**
+     * Recorre el archivo en ventanas mapeadas. Cada ventana se corta en el
+     * último fin de línea para que ninguna línea quede partida entre bloques.
+     * El canal se cierra al terminar; las regiones mapeadas se liberan cuando
+     * el recolector descarta sus buffers.
+     */
+    private static void leerMapeado(File archivo, FileChannel canal, long tamano, Bloque bloque)
+            throws IOException {
+        long posicion = 0;
+        while (posicion < tamano) {
+            int longitud = (int) Math.min(tamano - posicion, TAMANO_VENTANA);
+            MappedByteBuffer ventana = canal.map(FileChannel.MapMode.READ_ONLY, posicion, longitud);
+
+            int fin = longitud;
+            if (posicion + longitud < tamano) {
+                fin = ultimoFinDeLinea(ventana, 0, longitud) + 1;
+                if (fin == 0) {
+                    throw new IOException("Línea demasiado larga en " + archivo.getName());
+                }
+            }
+            bloque.procesar(ventana, 0, fin);
+            posicion += fin;
+        }
+    }
+
+    /**
+     * @return la posición del último '\n' o '\r' de datos[desde, fin), o -1 si no hay
+     */
+    static int ultimoFinDeLinea(ByteBuffer datos, int desde, int fin) {
+        for (int i = fin - 1; i >= desde; i--) {
+            byte b = datos.get(i);
+            if (b == '\n' || b == '\r') {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,388 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Métricas de una ejecución del procesamiento de ventas: duración de cada
+ * etapa, bytes y filas leídas, filas y archivos rechazados por motivo, y un
+ * histograma del tiempo de procesamiento de cada archivo.
+ *
+ * Con la tubería de ingesta se registran además, por etapa, los elementos
+ * procesados, el rendimiento, el tiempo ocupado, esperando entrada y
+ * bloqueado por la cola de salida, y la profundidad de su cola de entrada.
+ *
+ * Los contadores admiten actualizaciones concurrentes desde los hilos de
+ * ingesta. El resultado se escribe en JSON o en el formato de texto de
+ * Prometheus (si el archivo termina en .prom).
+ */
+public class MetricasEjecucion {
+
+    /**
+     * Motivos por los que se rechaza una fila de ventas.
+     */
+    public enum MotivoFila {
+        CANTIDAD_NEGATIVA("cantidad_negativa"),
+        PRODUCTO_INEXISTENTE("producto_inexistente"),
+        CANTIDAD_INVALIDA("cantidad_invalida");
+
+        final String etiqueta;
+
+        MotivoFila(String etiqueta) {
+            this.etiqueta = etiqueta;
+        }
+    }
+
+    /**
+     * Motivos por los que se descarta un archivo de ventas completo.
+     */
+    public enum MotivoArchivo {
+        VENDEDOR_INEXISTENTE("vendedor_inexistente"),
+        ARCHIVO_VACIO("archivo_vacio"),
+        ERROR_LECTURA("error_lectura");
+
+        final String etiqueta;
+
+        MotivoArchivo(String etiqueta) {
+            this.etiqueta = etiqueta;
+        }
+    }
+
+    /**
+     * Métricas de una etapa de la tubería de ingesta (ver Tuberia).
+     */
+    public static class EtapaTuberia {
+        final String nombre;
+        int hilos;
+        int capacidadCola;
+        private final LongAdder elementos = new LongAdder();
+        private final LongAdder nanosOcupado = new LongAdder();
+        private final LongAdder nanosEsperaEntrada = new LongAdder();
+        private final LongAdder nanosBloqueoSalida = new LongAdder();
+        private final LongAdder nanosPared = new LongAdder();
+        private final LongAdder sumaProfundidad = new LongAdder();
+        private final LongAdder muestrasProfundidad = new LongAdder();
+        private final LongAccumulator profundidadMaxima = new LongAccumulator(Long::max, 0);
+
+        EtapaTuberia(String nombre) {
+            this.nombre = nombre;
+        }
+
+        /**
+         * Registra la cantidad de elementos en la cola de entrada al ir a tomar uno.
+         */
+        public void muestraProfundidad(int profundidad) {
+            sumaProfundidad.add(profundidad);
+            muestrasProfundidad.increment();
+            profundidadMaxima.accumulate(profundidad);
+        }
+
+        public void esperaEntrada(long nanos) {
+            nanosEsperaEntrada.add(nanos);
+        }
+
+        public void procesado(long nanos) {
+            elementos.increment();
+            nanosOcupado.add(nanos);
+        }
+
+        public void bloqueoSalida(long nanos) {
+            nanosBloqueoSalida.add(nanos);
+        }
+
+        /**
+         * @param nanos tiempo desde el inicio de la etapa hasta que terminó su último hilo
+         */
+        public void pared(long nanos) {
+            nanosPared.add(nanos);
+        }
+
+        long elementosPorSegundo() {
+            long pared = nanosPared.sum();
+            return pared > 0 ? (long) (elementos.sum() * 1e9 / pared) : 0;
+        }
+
+        double profundidadMedia() {
+            long muestras = muestrasProfundidad.sum();
+            return muestras > 0 ? (double) sumaProfundidad.sum() / muestras : 0;
+        }
+    }
+
+    // Límites superiores del histograma de tiempo por archivo, en segundos
+    private static final double[] LIMITES_SEGUNDOS = {
+        0.0001, 0.0005, 0.001, 0.005, 0.01, 0.05, 0.1, 0.5, 1, 5, 10, 60
+    };
+
+    private final long inicio = System.currentTimeMillis();
+    private final Map<String, Long> nanosPorEtapa = new LinkedHashMap<>();
+    private final Map<String, EtapaTuberia> etapasTuberia = new LinkedHashMap<>();
+    private final LongAdder bytesLeidos = new LongAdder();
+    private final LongAdder filasValidas = new LongAdder();
+    private final LongAdder[] filasRechazadas = nuevosContadores(MotivoFila.values().length);
+    private final LongAdder[] archivosRechazados = nuevosContadores(MotivoArchivo.values().length);
+    private final LongAdder archivosLeidos = new LongAdder();
+    private final AtomicLongArray histogramaArchivos = new AtomicLongArray(LIMITES_SEGUNDOS.length + 1);
+    private final LongAdder nanosArchivos = new LongAdder();
+    private final LongAccumulator nanosArchivoMaximo = new LongAccumulator(Long::max, 0);
+    private final LongAccumulator filasPorSegundoMinimo = new LongAccumulator(Long::min, Long.MAX_VALUE);
+    private final LongAccumulator filasPorSegundoMaximo = new LongAccumulator(Long::max, 0);
+    private boolean exito;
+
+    private static LongAdder[] nuevosContadores(int cantidad) {
+        LongAdder[] contadores = new LongAdder[cantidad];
+        for (int i = 0; i < cantidad; i++) {
+            contadores[i] = new LongAdder();
+        }
+        return contadores;
+    }
+
+    /**
+     * Registra la duración de una etapa del procesamiento.
+     *
+     * @param etapa nombre de la etapa
+     * @param nanos duración en nanosegundos
+     */
+    public synchronized void etapa(String etapa, long nanos) {
+        nanosPorEtapa.merge(etapa, nanos, Long::sum);
+    }
+
+    /**
+     * Devuelve las métricas de una etapa de la tubería de ingesta, creándolas
+     * la primera vez. En modo servicio se acumulan entre actualizaciones.
+     *
+     * @param etapa nombre de la etapa
+     * @param hilos cantidad de hilos de la etapa
+     * @param capacidadCola capacidad de su cola de entrada
+     * @return las métricas de la etapa
+     */
+    public synchronized EtapaTuberia etapaTuberia(String etapa, int hilos, int capacidadCola) {
+        EtapaTuberia metricasEtapa = etapasTuberia.computeIfAbsent(etapa, EtapaTuberia::new);
+        metricasEtapa.hilos = hilos;
+        metricasEtapa.capacidadCola = capacidadCola;
+        return metricasEtapa;
+    }
+
+    public void bytesLeidos(long bytes) {
+        bytesLeidos.add(bytes);
+    }
+
+    public void filaRechazada(MotivoFila motivo) {
+        filasRechazadas[motivo.ordinal()].increment();
+    }
+
+    public void archivoRechazado(MotivoArchivo motivo) {
+        archivosRechazados[motivo.ordinal()].increment();
+    }
+
+    /**
+     * Registra un archivo de ventas leído completo.
+     *
+     * @param nanos tiempo que tomó el archivo
+     * @param filas filas válidas que contenía
+     */
+    public void archivoLeido(long nanos, long filas) {
+        archivosLeidos.increment();
+        filasValidas.add(filas);
+        nanosArchivos.add(nanos);
+        nanosArchivoMaximo.accumulate(nanos);
+
+        double segundos = nanos / 1e9;
+        int cubeta = 0;
+        while (cubeta < LIMITES_SEGUNDOS.length && segundos > LIMITES_SEGUNDOS[cubeta]) {
+            cubeta++;
+        }
+        histogramaArchivos.incrementAndGet(cubeta);
+
+        long filasPorSegundo = nanos > 0 ? (long) (filas / segundos) : 0;
+        filasPorSegundoMinimo.accumulate(filasPorSegundo);
+        filasPorSegundoMaximo.accumulate(filasPorSegundo);
+    }
+
+    /**
+     * @param exito true si la ejecución terminó sin errores
+     */
+    public void finalizar(boolean exito) {
+        this.exito = exito;
+    }
+
+    /**
+     * Escribe las métricas en el archivo indicado: formato de texto de
+     * Prometheus si termina en .prom, JSON en otro caso.
+     *
+     * @param archivo destino de las métricas
+     * @throws IOException si no se puede escribir
+     */
+    public void escribir(File archivo) throws IOException {
+        try (Writer writer = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(archivo), StandardCharsets.UTF_8))) {
+            writer.write(archivo.getName().endsWith(".prom") ? comoPrometheus() : comoJson());
+        }
+    }
+
+    private long nanosIngesta() {
+        return nanosPorEtapa.getOrDefault("ingesta", 0L);
+    }
+
+    synchronized String comoJson() {
+        StringBuilder json = new StringBuilder(1024);
+        json.append("{\n");
+        json.append("  \"exito\": ").append(exito).append(",\n");
+        json.append("  \"inicio_epoch_ms\": ").append(inicio).append(",\n");
+        json.append("  \"duracion_total_ms\": ").append(System.currentTimeMillis() - inicio).append(",\n");
+
+        json.append("  \"etapas_ms\": {");
+        String separador = "";
+        for (Map.Entry<String, Long> etapa : nanosPorEtapa.entrySet()) {
+            json.append(separador).append("\"").append(etapa.getKey()).append("\": ")
+                    .append(etapa.getValue() / 1_000_000.0);
+            separador = ", ";
+        }
+        json.append("},\n");
+
+        long nanosIngesta = nanosIngesta();
+        json.append("  \"bytes_leidos\": ").append(bytesLeidos.sum()).append(",\n");
+        json.append("  \"filas_validas\": ").append(filasValidas.sum()).append(",\n");
+        json.append("  \"filas_por_segundo\": ")
+                .append(nanosIngesta > 0 ? (long) (filasValidas.sum() * 1e9 / nanosIngesta) : 0).append(",\n");
+
+        json.append("  \"filas_rechazadas\": {");
+        separador = "";
+        for (MotivoFila motivo : MotivoFila.values()) {
+            json.append(separador).append("\"").append(motivo.etiqueta).append("\": ")
+                    .append(filasRechazadas[motivo.ordinal()].sum());
+            separador = ", ";
+        }
+        json.append("},\n");
+
+        json.append("  \"archivos_leidos\": ").append(archivosLeidos.sum()).append(",\n");
+        json.append("  \"archivos_rechazados\": {");
+        separador = "";
+        for (MotivoArchivo motivo : MotivoArchivo.values()) {
+            json.append(separador).append("\"").append(motivo.etiqueta).append("\": ")
+                    .append(archivosRechazados[motivo.ordinal()].sum());
+            separador = ", ";
+        }
+        json.append("},\n");
+
+        long leidos = archivosLeidos.sum();
+        json.append("  \"filas_por_segundo_archivo\": {\"minimo\": ")
+                .append(leidos > 0 ? filasPorSegundoMinimo.get() : 0)
+                .append(", \"maximo\": ").append(filasPorSegundoMaximo.get()).append("},\n");
+
+        json.append("  \"tiempo_archivo_segundos\": {\"limites\": [");
+        for (int i = 0; i < LIMITES_SEGUNDOS.length; i++) {
+            json.append(i > 0 ? ", " : "").append(LIMITES_SEGUNDOS[i]);
+        }
+        json.append("], \"conteos\": [");
+        for (int i = 0; i < histogramaArchivos.length(); i++) {
+            json.append(i > 0 ? ", " : "").append(histogramaArchivos.get(i));
+        }
+        json.append("], \"suma\": ").append(nanosArchivos.sum() / 1e9)
+                .append(", \"maximo\": ").append(nanosArchivoMaximo.get() / 1e9).append("},\n");
+
+        json.append("  \"tuberia\": {");
+        separador = "\n";
+        for (EtapaTuberia etapa : etapasTuberia.values()) {
+            json.append(separador).append("    \"").append(etapa.nombre).append("\": {")
+                    .append("\"hilos\": ").append(etapa.hilos)
+                    .append(", \"capacidad_cola\": ").append(etapa.capacidadCola)
+                    .append(", \"elementos\": ").append(etapa.elementos.sum())
+                    .append(", \"elementos_por_segundo\": ").append(etapa.elementosPorSegundo())
+                    .append(", \"segundos_ocupado\": ").append(etapa.nanosOcupado.sum() / 1e9)
+                    .append(", \"segundos_espera_entrada\": ").append(etapa.nanosEsperaEntrada.sum() / 1e9)
+                    .append(", \"segundos_bloqueo_salida\": ").append(etapa.nanosBloqueoSalida.sum() / 1e9)
+                    .append(", \"profundidad_cola_media\": ").append(etapa.profundidadMedia())
+                    .append(", \"profundidad_cola_maxima\": ").append(etapa.profundidadMaxima.get())
+                    .append("}");
+            separador = ",\n";
+        }
+        json.append(etapasTuberia.isEmpty() ? "}\n" : "\n  }\n");
+        json.append("}\n");
+        return json.toString();
+    }
+
+    synchronized String comoPrometheus() {
+        StringBuilder texto = new StringBuilder(2048);
+        texto.append("# TYPE ventas_ejecucion_exito gauge\n");
+        texto.append("ventas_ejecucion_exito ").append(exito ? 1 : 0).append('\n');
+        texto.append("# TYPE ventas_ejecucion_inicio_segundos gauge\n");
+        texto.append("ventas_ejecucion_inicio_segundos ").append(inicio / 1000.0).append('\n');
+
+        texto.append("# TYPE ventas_etapa_segundos gauge\n");
+        for (Map.Entry<String, Long> etapa : nanosPorEtapa.entrySet()) {
+            texto.append("ventas_etapa_segundos{etapa=\"").append(etapa.getKey()).append("\"} ")
+                    .append(etapa.getValue() / 1e9).append('\n');
+        }
+
+        texto.append("# TYPE ventas_bytes_leidos_total counter\n");
+        texto.append("ventas_bytes_leidos_total ").append(bytesLeidos.sum()).append('\n');
+        texto.append("# TYPE ventas_filas_validas_total counter\n");
+        texto.append("ventas_filas_validas_total ").append(filasValidas.sum()).append('\n');
+
+        texto.append("# TYPE ventas_filas_rechazadas_total counter\n");
+        for (MotivoFila motivo : MotivoFila.values()) {
+            texto.append("ventas_filas_rechazadas_total{motivo=\"").append(motivo.etiqueta).append("\"} ")
+                    .append(filasRechazadas[motivo.ordinal()].sum()).append('\n');
+        }
+
+        texto.append("# TYPE ventas_archivos_rechazados_total counter\n");
+        for (MotivoArchivo motivo : MotivoArchivo.values()) {
+            texto.append("ventas_archivos_rechazados_total{motivo=\"").append(motivo.etiqueta).append("\"} ")
+                    .append(archivosRechazados[motivo.ordinal()].sum()).append('\n');
+        }
+
+        texto.append("# TYPE ventas_archivo_segundos histogram\n");
+        long acumulado = 0;
+        for (int i = 0; i < histogramaArchivos.length(); i++) {
+            acumulado += histogramaArchivos.get(i);
+            String limite = i < LIMITES_SEGUNDOS.length ? String.valueOf(LIMITES_SEGUNDOS[i]) : "+Inf";
+            texto.append("ventas_archivo_segundos_bucket{le=\"").append(limite).append("\"} ")
+                    .append(acumulado).append('\n');
+        }
+        texto.append("ventas_archivo_segundos_sum ").append(nanosArchivos.sum() / 1e9).append('\n');
+        texto.append("ventas_archivo_segundos_count ").append(archivosLeidos.sum()).append('\n');
+
+        texto.append("# TYPE ventas_archivo_filas_por_segundo gauge\n");
+        texto.append("ventas_archivo_filas_por_segundo{estadistico=\"minimo\"} ")
+                .append(archivosLeidos.sum() > 0 ? filasPorSegundoMinimo.get() : 0).append('\n');
+        texto.append("ventas_archivo_filas_por_segundo{estadistico=\"maximo\"} ")
+                .append(filasPorSegundoMaximo.get()).append('\n');
+
+        if (!etapasTuberia.isEmpty()) {
+            texto.append("# TYPE ventas_tuberia_hilos gauge\n");
+            for (EtapaTuberia etapa : etapasTuberia.values()) {
+                texto.append("ventas_tuberia_hilos{etapa=\"").append(etapa.nombre).append("\"} ")
+                        .append(etapa.hilos).append('\n');
+            }
+            texto.append("# TYPE ventas_tuberia_elementos_total counter\n");
+            for (EtapaTuberia etapa : etapasTuberia.values()) {
+                texto.append("ventas_tuberia_elementos_total{etapa=\"").append(etapa.nombre).append("\"} ")
+                        .append(etapa.elementos.sum()).append('\n');
+            }
+            texto.append("# TYPE ventas_tuberia_elementos_por_segundo gauge\n");
+            for (EtapaTuberia etapa : etapasTuberia.values()) {
+                texto.append("ventas_tuberia_elementos_por_segundo{etapa=\"").append(etapa.nombre).append("\"} ")
+                        .append(etapa.elementosPorSegundo()).append('\n');
+            }
+            texto.append("# TYPE ventas_tuberia_segundos_total counter\n");
+            for (EtapaTuberia etapa : etapasTuberia.values()) {
+                String prefijo = "ventas_tuberia_segundos_total{etapa=\"" + etapa.nombre + "\",estado=\"";
+                texto.append(prefijo).append("ocupado\"} ").append(etapa.nanosOcupado.sum() / 1e9).append('\n');
+                texto.append(prefijo).append("espera_entrada\"} ")
+                        .append(etapa.nanosEsperaEntrada.sum() / 1e9).append('\n');
+                texto.append(prefijo).append("bloqueo_salida\"} ")
+                        .append(etapa.nanosBloqueoSalida.sum() / 1e9).append('\n');
+            }
+            texto.append("# TYPE ventas_tuberia_profundidad_cola gauge\n");
+            for (EtapaTuberia etapa : etapasTuberia.values()) {
+                String prefijo = "ventas_tuberia_profundidad_cola{etapa=\"" + etapa.nombre + "\",estadistico=\"";
+                texto.append(prefijo).append("media\"} ").append(etapa.profundidadMedia()).append('\n');
+                texto.append(prefijo).append("maxima\"} ").append(etapa.profundidadMaxima.get()).append('\n');
+                texto.append(prefijo).append("capacidad\"} ").append(etapa.capacidadCola).append('\n');
+            }
+        }
+        return texto.toString();
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * Ordenamiento de índices densos por un valor primitivo, sin crear objetos
+ * por elemento.
+ *
+ * El orden es descendente por valor y, en caso de empate, ascendente por
+ * índice, de modo que el resultado es siempre el mismo para los mismos datos.
+ */
+public class OrdenIndices {
+
+    private OrdenIndices() {
+    }
+
+    /**
+     * Ordena todos los índices de {@code valores} de mayor a menor valor.
+     *
+     * @param valores valor asociado a cada índice
+     * @return índices ordenados
+     */
+    public static int[] ordenar(long[] valores) {
+        return ordenar(valores, valores.length);
+    }
+
+    /**
+     * Ordena los primeros {@code cantidad} índices de {@code valores} de
+     * mayor a menor valor.
+     *
+     * @param valores valor asociado a cada índice
+     * @param cantidad cantidad de índices a considerar
+     * @return índices ordenados
+     */
+    public static int[] ordenar(long[] valores, int cantidad) {
+        int[] indices = new int[cantidad];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = i;
+        }
+        int[] auxiliar = new int[indices.length];
+
+        // Mezcla ascendente por bloques (merge sort iterativo)
+        for (int ancho = 1; ancho < indices.length; ancho *= 2) {
+            for (int inicio = 0; inicio < indices.length - ancho; inicio += 2 * ancho) {
+                int medio = inicio + ancho;
+                int fin = Math.min(inicio + 2 * ancho, indices.length);
+                mezclar(valores, indices, auxiliar, inicio, medio, fin);
+            }
+        }
+        return indices;
+    }
+
+    /**
+     * Obtiene los {@code n} índices de mayor valor usando un montículo acotado
+     * de tamaño n, sin ordenar el arreglo completo.
+     *
+     * @param valores valor asociado a cada índice
+     * @param n cantidad de índices a devolver
+     * @return los índices de mayor valor, ordenados de mayor a menor
+     */
+    public static int[] mayores(long[] valores, int n) {
+        return mayores(valores, valores.length, n);
+    }
+
+    /**
+     * Igual que {@link #mayores(long[], int)} considerando solo los primeros
+     * {@code cantidad} índices.
+     */
+    public static int[] mayores(long[] valores, int cantidad, int n) {
+        n = Math.min(n, cantidad);
+        if (n <= 0) {
+            return new int[0];
+        }
+
+        // Montículo de mínimos: en la raíz queda el peor de los n mejores
+        int[] monticulo = new int[n];
+        int tamano = 0;
+        for (int i = 0; i < cantidad; i++) {
+            if (tamano < n) {
+                monticulo[tamano] = i;
+                subir(valores, monticulo, tamano++);
+            } else if (antes(valores, i, monticulo[0])) {
+                monticulo[0] = i;
+                bajar(valores, monticulo, 0, tamano);
+            }
+        }
+
+        // Extraer el peor repetidamente deja el mejor al principio
+        for (int fin = tamano - 1; fin > 0; fin--) {
+            int raiz = monticulo[0];
+            monticulo[0] = monticulo[fin];
+            monticulo[fin] = raiz;
+            bajar(valores, monticulo, 0, fin);
+        }
+        return monticulo;
+    }
+
+    /**
+     * Indica si el índice a va antes que b en el orden del reporte.
+     */
+    private static boolean antes(long[] valores, int a, int b) {
+        return valores[a] > valores[b] || (valores[a] == valores[b] && a < b);
+    }
+
+    private static void mezclar(long[] valores, int[] indices, int[] auxiliar, int inicio, int medio, int fin) {
+        System.arraycopy(indices, inicio, auxiliar, inicio, fin - inicio);
+        int i = inicio;
+        int j = medio;
+        for (int k = inicio; k < fin; k++) {
+            if (j >= fin || (i < medio && !antes(valores, auxiliar[j], auxiliar[i]))) {
+                indices[k] = auxiliar[i++];
+            } else {
+                indices[k] = auxiliar[j++];
+            }
+        }
+    }
+
+    private static void subir(long[] valores, int[] monticulo, int posicion) {
+        while (posicion > 0) {
+            int padre = (posicion - 1) / 2;
+            if (!antes(valores, monticulo[padre], monticulo[posicion])) {
+                break;
+            }
+            intercambiar(monticulo, padre, posicion);
+            posicion = padre;
+        }
+    }
+
+    private static void bajar(long[] valores, int[] monticulo, int posicion, int tamano) {
+        while (true) {
+            int peor = posicion;
+            int izquierdo = 2 * posicion + 1;
+            int derecho = izquierdo + 1;
+            if (izquierdo < tamano && antes(valores, monticulo[peor], monticulo[izquierdo])) {
+                peor = izquierdo;
+            }
+            if (derecho < tamano && antes(valores, monticulo[peor], monticulo[derecho])) {
+                peor = derecho;
+            }
+            if (peor == posicion) {
+                return;
+            }
+            intercambiar(monticulo, posicion, peor);
+            posicion = peor;
+        }
+    }
+
+    private static void intercambiar(int[] arreglo, int a, int b) {
+        int temporal = arreglo[a];
+        arreglo[a] = arreglo[b];
+        arreglo[b] = temporal;
+    }
+}
@@ -0,0 +1,404 @@
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Analizador de archivos de ventas que recorre directamente los bytes leídos,
+ * sin crear cadenas intermedias por cada línea. Trabaja sobre un ByteBuffer,
+ * que puede envolver un arreglo, un buffer directo o un archivo mapeado.
+ *
+ * Reconoce registros con el formato {@code PRODxxx;cantidad;} y reproduce el
+ * comportamiento de la versión basada en String.split, trim e Integer.parseInt:
+ * las mismas líneas se aceptan, se ignoran o generan las mismas advertencias.
+ * Las filas rechazadas van a la cuarentena (ver CuarentenaVentas), que además
+ * limita las advertencias por consola; solo se construyen Strings para las
+ * advertencias que se muestran.
+ *
+ * También procesa las filas de los archivos en formato columnar
+ * (ver FormatoColumnar).
+ */
+public class ParserVentas {
+
+    /**
+     * Recibe cada venta válida encontrada en el archivo.
+     */
+    public interface Receptor {
+        /**
+         * @param indiceProducto índice del producto en el diccionario de productos
+         * @param cantidad unidades vendidas (nunca negativa)
+         */
+        void venta(int indiceProducto, int cantidad);
+    }
+
+    /**
+     * Archivo y línea en curso, para ubicar las filas rechazadas. Se
+     * conserva entre los bloques de un mismo archivo.
+     */
+    public static class Posicion {
+        final String nombreArchivo;
+        // Nombre en UTF-8, para copiarlo a la cuarentena sin convertirlo cada vez
+        final byte[] nombre;
+        // Número de la línea en curso, desde 1
+        int linea = 1;
+
+        public Posicion(String nombreArchivo) {
+            this.nombreArchivo = nombreArchivo;
+            this.nombre = nombreArchivo.getBytes(StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Avanza a la línea siguiente si la que termina en finLinea termina
+         * con '\n' (así "\r\n" cuenta una sola vez).
+         */
+        public void pasarLinea(ByteBuffer datos, int finLinea, int fin) {
+            if (finLinea < fin && datos.get(finLinea) == '\n') {
+                linea++;
+            }
+        }
+    }
+
+    private final BuscadorIds productos;
+    private final MetricasEjecucion metricas;
+    private final CuarentenaVentas cuarentena;
+
+    /**
+     * @param productos índice con los identificadores de productos válidos
+     * @param metricas destino de los conteos de filas rechazadas
+     * @param cuarentena destino de las filas rechazadas
+     */
+    public ParserVentas(BuscadorIds productos, MetricasEjecucion metricas, CuarentenaVentas cuarentena) {
+        this.productos = productos;
+        this.metricas = metricas;
+        this.cuarentena = cuarentena;
+    }
+
+    /**
+     * Procesa las líneas de ventas contenidas en datos[desde, fin).
+     *
+     * @param datos contenido del archivo
+     * @param desde posición donde empieza la primera línea de ventas
+     * @param fin posición final (exclusiva)
+     * @param posicion archivo y línea de la primera línea, que avanza con las
+     *                 líneas procesadas
+     * @param receptor destino de las ventas válidas
+     * @return cantidad de ventas válidas encontradas
+     */
+    public int procesarVentas(ByteBuffer datos, int desde, int fin, Posicion posicion, Receptor receptor) {
+        int ventas = 0;
+        int inicio = desde;
+        while (inicio < fin) {
+            int finLinea = finDeLinea(datos, inicio, fin);
+            if (procesarLinea(datos, inicio, finLinea, posicion, receptor)) {
+                ventas++;
+            }
+            posicion.pasarLinea(datos, finLinea, fin);
+            inicio = finLinea + 1;
+        }
+        return ventas;
+    }
+
+    /**
+     * Procesa las filas de un archivo en formato columnar, con las mismas
+     * validaciones y advertencias que el formato de texto. Cada producto del
+     * diccionario del archivo se busca una sola vez; las filas con línea
+     * original se procesan como en texto.
+     *
+     * @param lectura archivo columnar con el encabezado ya leído
+     * @param receptor destino de las ventas válidas
+     * @return cantidad de ventas válidas encontradas
+     * @throws IOException si el archivo está truncado o dañado
+     */
+    public int procesarColumnar(FormatoColumnar.Lectura lectura, Receptor receptor) throws IOException {
+        ByteBuffer datos = lectura.datos;
+        int[] indices = new int[lectura.productos()];
+        for (int d = 0; d < indices.length; d++) {
+            indices[d] = productos.buscar(datos, lectura.inicioProducto[d], lectura.finProducto[d]);
+        }
+
+        int ventas = 0;
+        Posicion posicion = new Posicion(lectura.nombreArchivo);
+        for (int fila = 0; fila < lectura.filas; fila++) {
+            int codigo = lectura.siguienteProducto();
+            int cantidad = lectura.siguienteCantidad();
+            posicion.linea = lectura.linea;
+            if (lectura.inicioOriginal >= 0) {
+                if (procesarLinea(datos, lectura.inicioOriginal, lectura.finOriginal, posicion, receptor)) {
+                    ventas++;
+                }
+                continue;
+            }
+            MetricasEjecucion.MotivoFila motivo = cantidad < 0 ? MetricasEjecucion.MotivoFila.CANTIDAD_NEGATIVA
+                    : indices[codigo] < 0 ? MetricasEjecucion.MotivoFila.PRODUCTO_INEXISTENTE : null;
+            if (motivo != null) {
+                int inicioId = lectura.inicioProducto[codigo];
+                int finId = lectura.finProducto[codigo];
+                metricas.filaRechazada(motivo);
+                cuarentena.rechazarFila(motivo, posicion, datos, inicioId, finId, cantidad,
+                        lectura.puntoYComaFinal);
+                if (!cuarentena.puedeAdvertir()) {
+                    continue;
+                }
+                if (cantidad < 0) {
+                    System.out.println("ADVERTENCIA: Cantidad negativa ignorada en " + lectura.nombreArchivo
+                            + " para producto " + texto(datos, inicioId, finId));
+                } else {
+                    System.out.println("ADVERTENCIA: Producto inexistente " + texto(datos, inicioId, finId)
+                            + " en archivo " + lectura.nombreArchivo);
+                }
+                continue;
+            }
+            receptor.venta(indices[codigo], cantidad);
+            ventas++;
+        }
+        return ventas;
+    }
+
+    private boolean procesarLinea(ByteBuffer datos, int inicio, int fin, Posicion posicion, Receptor receptor) {
+        int separador = indiceDe(datos, inicio, fin, (byte) ';');
+        // Equivale a split(";").length < 2: sin separador o solo separadores al final
+        if (separador < 0 || !hayContenidoTras(datos, separador + 1, fin)) {
+            return false;
+        }
+
+        int finCantidad = indiceDe(datos, separador + 1, fin, (byte) ';');
+        if (finCantidad < 0) {
+            finCantidad = fin;
+        }
+
+        int inicioId = saltarBlancos(datos, inicio, separador);
+        int finId = recortarBlancos(datos, inicioId, separador);
+        int inicioCant = saltarBlancos(datos, separador + 1, finCantidad);
+        int finCant = recortarBlancos(datos, inicioCant, finCantidad);
+
+        long cantidad = parsearEntero(datos, inicioCant, finCant);
+        if (cantidad == Long.MIN_VALUE) {
+            if (rechazar(MetricasEjecucion.MotivoFila.CANTIDAD_INVALIDA, posicion, datos, inicio, fin)) {
+                System.out.println("ADVERTENCIA: Cantidad inválida en " + posicion.nombreArchivo + ": "
+                        + texto(datos, separador + 1, finCantidad));
+            }
+            return false;
+        }
+
+        if (cantidad < 0) {
+            if (rechazar(MetricasEjecucion.MotivoFila.CANTIDAD_NEGATIVA, posicion, datos, inicio, fin)) {
+                System.out.println("ADVERTENCIA: Cantidad negativa ignorada en " + posicion.nombreArchivo
+                        + " para producto " + texto(datos, inicioId, finId));
+            }
+            return false;
+        }
+
+        // Validar que el producto existe
+        int indiceProducto = productos.buscar(datos, inicioId, finId);
+        if (indiceProducto < 0) {
+            if (rechazar(MetricasEjecucion.MotivoFila.PRODUCTO_INEXISTENTE, posicion, datos, inicio, fin)) {
+                System.out.println("ADVERTENCIA: Producto inexistente " + texto(datos, inicioId, finId)
+                        + " en archivo " + posicion.nombreArchivo);
+            }
+            return false;
+        }
+
+        receptor.venta(indiceProducto, (int) cantidad);
+        return true;
+    }
+
+    /**
+     * Cuenta la fila rechazada y la envía a la cuarentena.
+     *
+     * @return true si se puede mostrar la advertencia por consola
+     */
+    private boolean rechazar(MetricasEjecucion.MotivoFila motivo, Posicion posicion, ByteBuffer datos,
+            int inicio, int fin) {
+        metricas.filaRechazada(motivo);
+        cuarentena.rechazarFila(motivo, posicion, datos, inicio, fin);
+        return cuarentena.puedeAdvertir();
+    }
+
+    /**
+     * Devuelve la posición del primer fin de línea ('\n' o '\r') a partir de
+     * desde, o fin si la línea llega hasta el final de los datos.
+     */
+    static int finDeLinea(ByteBuffer datos, int desde, int fin) {
+        for (int i = desde; i < fin; i++) {
+            byte b = datos.get(i);
+            if (b == '\n' || b == '\r') {
+                return i;
+            }
+        }
+        return fin;
+    }
+
+    /**
+     * Indica si datos[desde, hasta) contiene solo espacios o caracteres de
+     * control, con el mismo criterio que String.trim().
+     */
+    static boolean esBlanco(ByteBuffer datos, int desde, int hasta) {
+        return saltarBlancos(datos, desde, hasta) == hasta;
+    }
+
+    static int saltarBlancos(ByteBuffer datos, int desde, int hasta) {
+        while (desde < hasta && (datos.get(desde) & 0xFF) <= ' ') {
+            desde++;
+        }
+        return desde;
+    }
+
+    static int recortarBlancos(ByteBuffer datos, int desde, int hasta) {
+        while (hasta > desde && (datos.get(hasta - 1) & 0xFF) <= ' ') {
+            hasta--;
+        }
+        return hasta;
+    }
+
+    static int indiceDe(ByteBuffer datos, int desde, int hasta, byte buscado) {
+        for (int i = desde; i < hasta; i++) {
+            if (datos.get(i) == buscado) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Indica si hay algún byte distinto de ';' en el rango; split descarta los
+     * campos vacíos del final, así que sin él no existe el campo siguiente.
+     */
+    static boolean hayContenidoTras(ByteBuffer datos, int desde, int hasta) {
+        for (int i = desde; i < hasta; i++) {
+            if (datos.get(i) != ';') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static String texto(ByteBuffer datos, int desde, int hasta) {
+        byte[] bytes = new byte[hasta - desde];
+        datos.get(desde, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Convierte datos[desde, hasta) a entero con las mismas reglas que
+     * Integer.parseInt.
+     *
+     * @return el valor, o Long.MIN_VALUE si el texto no es un entero válido
+     */
+    static long parsearEntero(ByteBuffer datos, int desde, int hasta) {
+        if (desde >= hasta) {
+            return Long.MIN_VALUE;
+        }
+        boolean negativo = false;
+        int i = desde;
+        if (datos.get(i) == '-' || datos.get(i) == '+') {
+            negativo = datos.get(i) == '-';
+            i++;
+            if (i == hasta) {
+                return Long.MIN_VALUE;
+            }
+        }
+        long limite = negativo ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE;
+        long valor = 0;
+        for (; i < hasta; i++) {
+            int digito = datos.get(i) - '0';
+            if (digito < 0 || digito > 9) {
+                return datos.get(i) < 0 ? parsearEnteroUnicode(datos, desde, hasta) : Long.MIN_VALUE;
+            }
+            valor = valor * 10 + digito;
+            if (valor > limite) {
+                return Long.MIN_VALUE;
+            }
+        }
+        return negativo ? -valor : valor;
+    }
+
+    /**
+     * Integer.parseInt también acepta dígitos Unicode no ASCII; ese caso poco
+     * común se delega a la implementación estándar.
+     */
+    private static long parsearEnteroUnicode(ByteBuffer datos, int desde, int hasta) {
+        try {
+            return Integer.parseInt(texto(datos, desde, hasta));
+        } catch (NumberFormatException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    /**
+     * Convierte un precio en datos[desde, hasta) a centavos, aceptando ',' o
+     * '.' como separador decimal. Con más de dos decimales se redondea a la
+     * mitad hacia arriba (alejándose de cero), como al imprimir con dos
+     * decimales.
+     *
+     * Los precios simples (signo opcional, hasta 16 dígitos enteros y un
+     * separador) se convierten sin crear objetos y sin pasar por double; los
+     * demás formatos (por ejemplo con exponente) pasan por BigDecimal.
+     *
+     * @return el precio en centavos
+     * @throws NumberFormatException si el texto no es un número válido o no cabe en un long
+     */
+    static long parsearCentavos(ByteBuffer datos, int desde, int hasta) {
+        int i = saltarBlancos(datos, desde, hasta);
+        int fin = recortarBlancos(datos, i, hasta);
+        boolean negativo = false;
+        if (i < fin && (datos.get(i) == '-' || datos.get(i) == '+')) {
+            negativo = datos.get(i) == '-';
+            i++;
+        }
+        long enteros = 0;
+        int digitosEnteros = 0;
+        long centavos = 0;
+        int decimales = -1;
+        boolean redondearArriba = false;
+        for (; i < fin; i++) {
+            byte b = datos.get(i);
+            if (b >= '0' && b <= '9') {
+                if (decimales < 0) {
+                    enteros = enteros * 10 + (b - '0');
+                    digitosEnteros++;
+                } else {
+                    if (decimales < 2) {
+                        centavos = centavos * 10 + (b - '0');
+                    } else if (decimales == 2) {
+                        redondearArriba = b >= '5';
+                    }
+                    decimales++;
+                }
+            } else if ((b == '.' || b == ',') && decimales < 0) {
+                decimales = 0;
+            } else {
+                break;
+            }
+        }
+        if (i < fin || digitosEnteros + Math.max(decimales, 0) == 0 || digitosEnteros > 16) {
+            // Formatos menos comunes (exponentes, muchos dígitos) o inválidos
+            return centavos(texto(datos, desde, hasta));
+        }
+        if (decimales == 1) {
+            centavos *= 10;
+        }
+        long valor = enteros * 100 + centavos + (redondearArriba ? 1 : 0);
+        return negativo ? -valor : valor;
+    }
+
+    /**
+     * Convierte un precio escrito como texto a centavos, con las mismas reglas
+     * que {@link #parsearCentavos(ByteBuffer, int, int)}.
+     *
+     * @throws NumberFormatException si el texto no es un número válido o no cabe en un long
+     */
+    static long parsearCentavos(String texto) {
+        byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+        return parsearCentavos(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+
+    private static long centavos(String texto) {
+        try {
+            return new BigDecimal(texto.trim().replace(",", ".")).setScale(2, RoundingMode.HALF_UP)
+                    .unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Precio fuera de rango: " + texto.trim());
+        }
+    }
+}
@@ -0,0 +1,161 @@
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.util.*;
+
+/**
+ * Protocolo entre el coordinador y los trabajadores de la agregación
+ * distribuida (opciones {@code --trabajadores} y {@code --trabajador} de main).
+ *
+ * Por cada conexión el coordinador envía una solicitud con la huella de los
+ * datos maestros y las claves de las fuentes de ventas del fragmento (ver
+ * FuenteVentas.clave()); el trabajador las lee de su propio directorio y
+ * responde con el vendedor y la recaudación de cada archivo, en el orden de
+ * la solicitud, las cantidades vendidas por producto y las líneas de
+ * cuarentena de las filas y archivos rechazados (ver CuarentenaVentas), que
+ * el coordinador escribe en la suya. Los índices de
+ * vendedores y productos son los densos de main, iguales en ambos lados
+ * porque los datos maestros tienen la misma huella.
+ *
+ * Mensajes con DataOutputStream:
+ * solicitud: {@code FIRMA | huella long | n int | n × clave UTF};
+ * respuesta: {@code FIRMA | error boolean | mensaje UTF} si falló, o
+ * {@code FIRMA | false | n int | n × (vendedor int, recaudación long) |
+ * archivos válidos int | m int | m × (producto int, cantidad long) |
+ * r int | r bytes de cuarentena}.
+ */
+public class ProtocoloDistribuido {
+
+    private static final int FIRMA = 0x56445333; // "VDS3"
+
+    /**
+     * Fragmento de archivos que el coordinador asigna a un trabajador.
+     */
+    public static class Solicitud {
+        long huellaMaestros;
+        List<String> claves = new ArrayList<>();
+    }
+
+    /**
+     * Agregados parciales de un fragmento.
+     */
+    public static class Respuesta {
+        // Mensaje del trabajador si no pudo procesar el fragmento (null = sin error)
+        String error;
+        // Por archivo, en el orden de la solicitud (-1 = archivo descartado)
+        int[] vendedorPorArchivo;
+        // Recaudación en centavos
+        long[] recaudacionPorArchivo;
+        int archivosValidos;
+        // Solo los productos con ventas
+        int[] productos;
+        long[] cantidades;
+        // Líneas de cuarentena de los rechazos, sin encabezado
+        byte[] rechazos;
+    }
+
+    private ProtocoloDistribuido() {
+    }
+
+    /**
+     * Interpreta una dirección {@code host:puerto}.
+     *
+     * @param texto dirección a interpretar
+     * @return la dirección, sin resolver el nombre del host
+     * @throws IllegalArgumentException si el formato no es válido
+     */
+    public static InetSocketAddress direccion(String texto) {
+        int separador = texto.lastIndexOf(':');
+        if (separador <= 0) {
+            throw new IllegalArgumentException("Dirección de trabajador inválida (se espera host:puerto): " + texto);
+        }
+        int puerto = Integer.parseInt(texto.substring(separador + 1).trim());
+        if (puerto <= 0 || puerto > 65535) {
+            throw new IllegalArgumentException("Puerto de trabajador inválido: " + texto);
+        }
+        return InetSocketAddress.createUnresolved(texto.substring(0, separador).trim(), puerto);
+    }
+
+    public static void escribirSolicitud(DataOutputStream salida, Solicitud solicitud) throws IOException {
+        salida.writeInt(FIRMA);
+        salida.writeLong(solicitud.huellaMaestros);
+        salida.writeInt(solicitud.claves.size());
+        for (String clave : solicitud.claves) {
+            salida.writeUTF(clave);
+        }
+        salida.flush();
+    }
+
+    public static Solicitud leerSolicitud(DataInputStream entrada) throws IOException {
+        leerFirma(entrada);
+        Solicitud solicitud = new Solicitud();
+        solicitud.huellaMaestros = entrada.readLong();
+        int cantidad = entrada.readInt();
+        for (int i = 0; i < cantidad; i++) {
+            solicitud.claves.add(entrada.readUTF());
+        }
+        return solicitud;
+    }
+
+    public static void escribirRespuesta(DataOutputStream salida, Respuesta respuesta) throws IOException {
+        salida.writeInt(FIRMA);
+        salida.writeBoolean(respuesta.error != null);
+        if (respuesta.error != null) {
+            salida.writeUTF(respuesta.error);
+            salida.flush();
+            return;
+        }
+        salida.writeInt(respuesta.vendedorPorArchivo.length);
+        for (int i = 0; i < respuesta.vendedorPorArchivo.length; i++) {
+            salida.writeInt(respuesta.vendedorPorArchivo[i]);
+            salida.writeLong(respuesta.recaudacionPorArchivo[i]);
+        }
+        salida.writeInt(respuesta.archivosValidos);
+        salida.writeInt(respuesta.productos.length);
+        for (int i = 0; i < respuesta.productos.length; i++) {
+            salida.writeInt(respuesta.productos[i]);
+            salida.writeLong(respuesta.cantidades[i]);
+        }
+        salida.writeInt(respuesta.rechazos.length);
+        salida.write(respuesta.rechazos);
+        salida.flush();
+    }
+
+    public static Respuesta leerRespuesta(DataInputStream entrada) throws IOException {
+        leerFirma(entrada);
+        Respuesta respuesta = new Respuesta();
+        if (entrada.readBoolean()) {
+            respuesta.error = entrada.readUTF();
+            return respuesta;
+        }
+        int archivos = entrada.readInt();
+        respuesta.vendedorPorArchivo = new int[archivos];
+        respuesta.recaudacionPorArchivo = new long[archivos];
+        for (int i = 0; i < archivos; i++) {
+            respuesta.vendedorPorArchivo[i] = entrada.readInt();
+            respuesta.recaudacionPorArchivo[i] = entrada.readLong();
+        }
+        respuesta.archivosValidos = entrada.readInt();
+        int productos = entrada.readInt();
+        respuesta.productos = new int[productos];
+        respuesta.cantidades = new long[productos];
+        for (int i = 0; i < productos; i++) {
+            respuesta.productos[i] = entrada.readInt();
+            respuesta.cantidades[i] = entrada.readLong();
+        }
+        int rechazos = entrada.readInt();
+        if (rechazos < 0) {
+            throw new IOException("Mensaje del protocolo distribuido inválido");
+        }
+        respuesta.rechazos = entrada.readNBytes(rechazos);
+        if (respuesta.rechazos.length != rechazos) {
+            throw new EOFException("Respuesta incompleta");
+        }
+        return respuesta;
+    }
+
+    private static void leerFirma(DataInputStream entrada) throws IOException {
+        if (entrada.readInt() != FIRMA) {
+            throw new IOException("Mensaje del protocolo distribuido inválido");
+        }
+    }
+}
@@ -0,0 +1,178 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.CRC32C;
+
+/**
+ * Punto de control del modo incremental.
+ *
+ * Guarda, por cada archivo de ventas procesado, su huella (tamaño, fecha de
+ * modificación y CRC32C del contenido) y su aporte a los totales: vendedor,
+ * recaudación y cantidades por producto. En la siguiente ejecución solo se
+ * vuelven a leer los archivos nuevos o modificados; los demás aportan lo
+ * guardado. Los índices de vendedores y productos solo son válidos mientras
+ * vendedores.txt y productos.txt no cambien, por eso el punto de control
+ * también guarda la huella de esos archivos.
+ *
+ * Los archivos descartados por su contenido (vacíos o con un vendedor
+ * inexistente) también tienen entrada, con vendedor -1 y sin aporte, para
+ * no volver a leerlos ni advertirlos mientras no cambien.
+ */
+public class PuntoControl {
+
+    private static final int FIRMA = 0x56504332; // "VPC2"
+
+    /**
+     * Huella y aporte de un archivo de ventas.
+     */
+    public static class Entrada {
+        long tamano;
+        long modificado;
+        long crc;
+        int vendedor;
+        boolean conVentas;
+        long recaudacion; // en centavos
+        int[] productos;
+        long[] cantidades;
+
+        /**
+         * Indica si la entrada corresponde a un archivo descartado.
+         */
+        public boolean descartado() {
+            return vendedor < 0;
+        }
+
+        /**
+         * Indica si el archivo conserva el tamaño y la fecha registrados.
+         */
+        public boolean coincide(File archivo) {
+            return archivo.length() == tamano && archivo.lastModified() == modificado;
+        }
+    }
+
+    long huellaMaestros;
+    Map<String, Entrada> entradas = new HashMap<>();
+
+    /**
+     * @param huellaMaestros huella de los archivos maestros
+     */
+    public PuntoControl(long huellaMaestros) {
+        this.huellaMaestros = huellaMaestros;
+    }
+
+    /**
+     * Carga un punto de control. Si no existe, está dañado o fue creado con
+     * otros archivos maestros, devuelve uno vacío.
+     *
+     * @param archivo archivo del punto de control
+     * @param huellaMaestros huella actual de los archivos maestros
+     * @return punto de control cargado o vacío
+     */
+    public static PuntoControl cargar(File archivo, long huellaMaestros) {
+        PuntoControl punto = new PuntoControl(huellaMaestros);
+        if (!archivo.exists()) {
+            return punto;
+        }
+
+        try (DataInputStream entrada = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(archivo), 1 << 16))) {
+            if (entrada.readInt() != FIRMA || entrada.readLong() != huellaMaestros) {
+                return punto;
+            }
+            int cantidad = entrada.readInt();
+            for (int i = 0; i < cantidad; i++) {
+                String nombre = entrada.readUTF();
+                Entrada e = new Entrada();
+                e.tamano = entrada.readLong();
+                e.modificado = entrada.readLong();
+                e.crc = entrada.readLong();
+                e.vendedor = entrada.readInt();
+                e.conVentas = entrada.readBoolean();
+                e.recaudacion = entrada.readLong();
+                int productos = entrada.readInt();
+                e.productos = new int[productos];
+                e.cantidades = new long[productos];
+                for (int j = 0; j < productos; j++) {
+                    e.productos[j] = entrada.readInt();
+                    e.cantidades[j] = entrada.readLong();
+                }
+                punto.entradas.put(nombre, e);
+            }
+        } catch (IOException e) {
+            System.out.println("ADVERTENCIA: Punto de control dañado, se procesará todo de nuevo: " + e.getMessage());
+            return new PuntoControl(huellaMaestros);
+        }
+        return punto;
+    }
+
+    /**
+     * Guarda el punto de control. Se escribe en un archivo temporal que luego
+     * reemplaza al anterior, para no dejarlo a medias si el proceso se interrumpe.
+     *
+     * @param archivo archivo del punto de control
+     * @throws IOException si no se puede escribir
+     */
+    public void guardar(File archivo) throws IOException {
+        File temporal = new File(archivo.getPath() + ".tmp");
+        try (DataOutputStream salida = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temporal), 1 << 16))) {
+            salida.writeInt(FIRMA);
+            salida.writeLong(huellaMaestros);
+            salida.writeInt(entradas.size());
+            for (Map.Entry<String, Entrada> registro : entradas.entrySet()) {
+                Entrada e = registro.getValue();
+                salida.writeUTF(registro.getKey());
+                salida.writeLong(e.tamano);
+                salida.writeLong(e.modificado);
+                salida.writeLong(e.crc);
+                salida.writeInt(e.vendedor);
+                salida.writeBoolean(e.conVentas);
+                salida.writeLong(e.recaudacion);
+                salida.writeInt(e.productos.length);
+                for (int j = 0; j < e.productos.length; j++) {
+                    salida.writeInt(e.productos[j]);
+                    salida.writeLong(e.cantidades[j]);
+                }
+            }
+        }
+        Files.move(temporal.toPath(), archivo.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Calcula una huella combinada del tamaño y el contenido de varios archivos.
+     *
+     * @param archivos archivos a considerar
+     * @return huella combinada
+     * @throws IOException si algún archivo no se puede leer
+     */
+    public static long huella(File... archivos) throws IOException {
+        CRC32C combinada = new CRC32C();
+        ByteBuffer datos = ByteBuffer.allocate(2 * Long.BYTES);
+        for (File archivo : archivos) {
+            datos.clear();
+            datos.putLong(archivo.length()).putLong(crc(archivo)).flip();
+            combinada.update(datos);
+        }
+        return combinada.getValue();
+    }
+
+    /**
+     * Calcula el CRC32C del contenido de un archivo.
+     *
+     * @param archivo archivo a leer
+     * @return CRC32C del contenido
+     * @throws IOException si el archivo no se puede leer
+     */
+    public static long crc(File archivo) throws IOException {
+        CRC32C crc = new CRC32C();
+        byte[] buffer = new byte[1 << 16];
+        try (InputStream entrada = new FileInputStream(archivo)) {
+            int leidos;
+            while ((leidos = entrada.read(buffer)) > 0) {
+                crc.update(buffer, 0, leidos);
+            }
+        }
+        return crc.getValue();
+    }
+}
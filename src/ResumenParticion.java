@@ -0,0 +1,172 @@
+import java.io.*;
+import java.nio.file.*;
+
+/**
+ * Totales precalculados de una partición de ventas: un subdirectorio con la
+ * fecha de las ventas que contiene ({@code AAAA-MM-DD}).
+ *
+ * El resumen se guarda dentro de la partición y se reutiliza mientras la
+ * huella de sus archivos y de los datos maestros no cambie (ver
+ * CacheResultados.huella), así que una ventana de N días se calcula sumando N
+ * resúmenes sin releer las ventas. Solo se guardan los productos y
+ * vendedores con ventas, y las líneas de cuarentena de sus rechazos (con el
+ * directorio de la partición delante del nombre de cada archivo), para
+ * volver a escribirlas cuando el resumen se reutiliza.
+ *
+ * Formato con DataOutputStream:
+ * {@code FIRMA | huella UTF | archivos válidos int | n int |
+ * n × (producto int, cantidad long) | m int | m × (vendedor int, recaudación long) |
+ * r int | r bytes de cuarentena}, con la recaudación en centavos.
+ */
+public class ResumenParticion {
+
+    private static final int FIRMA = 0x56525032; // "VRP2"
+    public static final String ARCHIVO = "resumen_ventas.dat";
+
+    String huella;
+    int archivosValidos;
+    int[] productos;
+    long[] cantidades;
+    int[] vendedores;
+    long[] recaudaciones;
+    // Líneas de cuarentena de los rechazos, sin encabezado
+    byte[] rechazos;
+
+    /**
+     * Crea el resumen a partir de los totales densos de la partición.
+     *
+     * @param huella huella de la partición
+     * @param archivosValidos archivos con ventas válidas
+     * @param ventasPorProducto cantidad vendida por índice de producto
+     * @param recaudacionPorVendedor recaudación por índice de vendedor, en centavos
+     * @param rechazos líneas de cuarentena de la partición
+     */
+    public ResumenParticion(String huella, int archivosValidos, long[] ventasPorProducto,
+            long[] recaudacionPorVendedor, byte[] rechazos) {
+        this.huella = huella;
+        this.archivosValidos = archivosValidos;
+        productos = noNulos(ventasPorProducto);
+        cantidades = valores(ventasPorProducto, productos);
+        vendedores = noNulos(recaudacionPorVendedor);
+        recaudaciones = valores(recaudacionPorVendedor, vendedores);
+        this.rechazos = rechazos;
+    }
+
+    private ResumenParticion() {
+    }
+
+    private static int[] noNulos(long[] totales) {
+        int cantidad = 0;
+        for (long total : totales) {
+            if (total != 0) {
+                cantidad++;
+            }
+        }
+        int[] indices = new int[cantidad];
+        int k = 0;
+        for (int i = 0; i < totales.length; i++) {
+            if (totales[i] != 0) {
+                indices[k++] = i;
+            }
+        }
+        return indices;
+    }
+
+    private static long[] valores(long[] totales, int[] indices) {
+        long[] valores = new long[indices.length];
+        for (int k = 0; k < indices.length; k++) {
+            valores[k] = totales[indices[k]];
+        }
+        return valores;
+    }
+
+    /**
+     * Suma el resumen a los totales densos.
+     */
+    public void sumarA(long[] ventasPorProducto, long[] recaudacionPorVendedor) {
+        for (int k = 0; k < productos.length; k++) {
+            ventasPorProducto[productos[k]] += cantidades[k];
+        }
+        for (int k = 0; k < vendedores.length; k++) {
+            recaudacionPorVendedor[vendedores[k]] += recaudaciones[k];
+        }
+    }
+
+    /**
+     * Carga el resumen de una partición si sigue vigente.
+     *
+     * @param archivo archivo del resumen
+     * @param huella huella actual de la partición
+     * @return el resumen, o null si no existe, está dañado o es de otra huella
+     */
+    public static ResumenParticion cargar(File archivo, String huella) {
+        if (!archivo.exists()) {
+            return null;
+        }
+
+        try (DataInputStream entrada = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(archivo), 1 << 16))) {
+            if (entrada.readInt() != FIRMA || !entrada.readUTF().equals(huella)) {
+                return null;
+            }
+            ResumenParticion resumen = new ResumenParticion();
+            resumen.huella = huella;
+            resumen.archivosValidos = entrada.readInt();
+            int productos = entrada.readInt();
+            resumen.productos = new int[productos];
+            resumen.cantidades = new long[productos];
+            for (int k = 0; k < productos; k++) {
+                resumen.productos[k] = entrada.readInt();
+                resumen.cantidades[k] = entrada.readLong();
+            }
+            int vendedores = entrada.readInt();
+            resumen.vendedores = new int[vendedores];
+            resumen.recaudaciones = new long[vendedores];
+            for (int k = 0; k < vendedores; k++) {
+                resumen.vendedores[k] = entrada.readInt();
+                resumen.recaudaciones[k] = entrada.readLong();
+            }
+            int rechazos = entrada.readInt();
+            if (rechazos < 0) {
+                throw new IOException("Longitud de rechazos inválida");
+            }
+            resumen.rechazos = entrada.readNBytes(rechazos);
+            if (resumen.rechazos.length != rechazos) {
+                throw new EOFException();
+            }
+            return resumen;
+        } catch (IOException e) {
+            System.out.println("ADVERTENCIA: Resumen de partición dañado, se recalculará: " + archivo);
+            return null;
+        }
+    }
+
+    /**
+     * Guarda el resumen en un temporal que luego reemplaza al anterior.
+     *
+     * @param archivo archivo del resumen
+     * @throws IOException si no se puede escribir
+     */
+    public void guardar(File archivo) throws IOException {
+        File temporal = new File(archivo.getPath() + ".tmp");
+        try (DataOutputStream salida = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temporal), 1 << 16))) {
+            salida.writeInt(FIRMA);
+            salida.writeUTF(huella);
+            salida.writeInt(archivosValidos);
+            salida.writeInt(productos.length);
+            for (int k = 0; k < productos.length; k++) {
+                salida.writeInt(productos[k]);
+                salida.writeLong(cantidades[k]);
+            }
+            salida.writeInt(vendedores.length);
+            for (int k = 0; k < vendedores.length; k++) {
+                salida.writeInt(vendedores[k]);
+                salida.writeLong(recaudaciones[k]);
+            }
+            salida.writeInt(rechazos.length);
+            salida.write(rechazos);
+        }
+        Files.move(temporal.toPath(), archivo.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
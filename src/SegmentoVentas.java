@@ -0,0 +1,380 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.CRC32C;
+
+/**
+ * Segmentos de ventas compactados.
+ *
+ * La compactación junta muchos archivos de ventas pequeños en pocos archivos
+ * grandes de solo agregado ({@code segmento_NNNNN.seg}), para que main los
+ * lea de forma secuencial en lugar de abrir un archivo por vendedor. Cada
+ * registro del segmento es el contenido original de un archivo, en texto o en
+ * formato columnar, así que la validación del vendedor contra vendedores.txt
+ * se hace al leerlo igual que con los archivos sueltos.
+ *
+ * Cada segmento tiene un índice ({@code segmento_NNNNN.idx}) con el nombre
+ * original, el vendedor, la ubicación y el CRC32C de cada registro, ordenado
+ * por vendedor. Los registros de un vendedor quedan contiguos en el segmento.
+ * El índice se escribe al final: un segmento sin índice está incompleto y se
+ * ignora.
+ *
+ * Si un archivo ya compactado vuelve a llegar y se compacta otra vez, su
+ * registro anterior queda marcado como reemplazado en su índice, que se
+ * reescribe; el contenido del segmento no se modifica.
+ *
+ * Ejecutada como programa compacta los archivos sueltos de un directorio:
+ * {@code java SegmentoVentas [--directorio D] [--tamano-segmento MB]}.
+ */
+public class SegmentoVentas {
+
+    private static final int FIRMA = 0x56534732; // "VSG2"
+    private static final int FIRMA_V1 = 0x56534731; // "VSG1", sin marca de reemplazo
+
+    static final String PREFIJO = "segmento_";
+    static final String EXTENSION = ".seg";
+    static final String EXTENSION_INDICE = ".idx";
+
+    // Los segmentos se mapean completos al leerlos (un MappedByteBuffer no supera 2 GB)
+    static final long TAMANO_MAXIMO = 1L << 30;
+
+    /**
+     * Entrada del índice de un segmento.
+     */
+    public static class Registro {
+        String nombre;
+        String vendedor;
+        long posicion;
+        int longitud;
+        long crc;
+        // Hay una versión más nueva del archivo en un segmento posterior
+        boolean reemplazado;
+    }
+
+    private SegmentoVentas() {
+    }
+
+    /**
+     * Compacta los archivos de ventas sueltos de un directorio.
+     *
+     * Argumentos: {@code --directorio D} (por defecto el actual) y
+     * {@code --tamano-segmento MB}, tamaño aproximado de cada segmento
+     * (por defecto 256, máximo 1024).
+     *
+     * @param args argumentos de línea de comandos
+     */
+    public static void main(String[] args) {
+        File directorio = new File(".");
+        long tamanoSegmento = 256L << 20;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Falta el valor de " + args[i]);
+                }
+                String valor = args[++i];
+                switch (args[i - 1]) {
+                    case "--directorio":
+                        directorio = new File(valor);
+                        break;
+                    case "--tamano-segmento":
+                        tamanoSegmento = Long.parseLong(valor) << 20;
+                        if (tamanoSegmento <= 0 || tamanoSegmento > TAMANO_MAXIMO) {
+                            throw new IllegalArgumentException("El tamaño de segmento debe estar entre 1 y 1024 MB");
+                        }
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Argumento desconocido: " + args[i - 1]);
+                }
+            }
+
+            int compactados = compactar(directorio, tamanoSegmento);
+            System.out.println("✓ Archivos de ventas compactados: " + compactados);
+        } catch (IOException e) {
+            System.err.println("ERROR: Problema al leer o escribir archivos:");
+            System.err.println(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            System.err.println("ERROR: Argumentos inválidos:");
+            System.err.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Junta los archivos de ventas sueltos en segmentos nuevos, ordenados por
+     * vendedor, y borra los originales una vez que los segmentos y sus índices
+     * están completos en disco. De un archivo en ambos formatos se compacta la
+     * versión vigente y también se borra la reemplazada, que ya no se debe
+     * leer.
+     *
+     * Un archivo suelto idéntico (nombre, tamaño y CRC) a un registro vigente
+     * ya estaba compactado, porque una compactación anterior se interrumpió
+     * antes de borrarlo: solo se borra. Los registros vigentes de los
+     * segmentos existentes que tienen una versión nueva se marcan como
+     * reemplazados en su índice después de publicar los segmentos nuevos.
+     *
+     * @param directorio directorio de trabajo
+     * @param tamanoSegmento tamaño aproximado de cada segmento en bytes
+     * @return cantidad de archivos compactados
+     * @throws IOException si hay problemas al leer o escribir
+     */
+    public static int compactar(File directorio, long tamanoSegmento) throws IOException {
+        File[] sueltos = directorio.listFiles((dir, nombre) -> FuenteVentas.esArchivoVentas(nombre));
+        if (sueltos == null) {
+            throw new IOException("No se pudo listar el directorio " + directorio);
+        }
+
+        // Registros de los segmentos existentes y, por nombre base, el vigente de cada archivo
+        Map<File, List<Registro>> existentes = new LinkedHashMap<>();
+        Map<String, Registro> vigentes = new HashMap<>();
+        for (File indice : listarIndices(directorio)) {
+            List<Registro> lista = leerIndice(indice);
+            existentes.put(indice, lista);
+            for (Registro registro : lista) {
+                if (!registro.reemplazado) {
+                    vigentes.put(FuenteVentas.base(registro.nombre), registro);
+                }
+            }
+        }
+
+        List<Registro> registros = new ArrayList<>();
+        Map<String, File> origen = new HashMap<>();
+        for (File archivo : FuenteVentas.seleccionarFormato(directorio, sueltos)) {
+            if (archivo.length() > Integer.MAX_VALUE) {
+                System.out.println("ADVERTENCIA: Archivo demasiado grande para compactar: " + archivo.getName());
+                continue;
+            }
+            Registro vigente = vigentes.get(FuenteVentas.base(archivo.getName()));
+            if (vigente != null && vigente.nombre.equals(archivo.getName())
+                    && vigente.longitud == archivo.length() && vigente.crc == PuntoControl.crc(archivo)) {
+                continue;
+            }
+            Registro registro = new Registro();
+            registro.nombre = archivo.getName();
+            registro.vendedor = vendedor(archivo);
+            registro.longitud = (int) archivo.length();
+            registros.add(registro);
+            origen.put(registro.nombre, archivo);
+        }
+        registros.sort(Comparator.comparing((Registro r) -> r.vendedor).thenComparing(r -> r.nombre));
+
+        int numero = siguienteNumero(directorio);
+        int desde = 0;
+        while (desde < registros.size()) {
+            // Al menos un registro por segmento, aunque supere el tamaño
+            int hasta = desde + 1;
+            long tamano = registros.get(desde).longitud;
+            while (hasta < registros.size() && tamano + registros.get(hasta).longitud <= tamanoSegmento) {
+                tamano += registros.get(hasta++).longitud;
+            }
+            escribirSegmento(directorio, numero++, registros.subList(desde, hasta), origen);
+            desde = hasta;
+        }
+        marcarReemplazados(existentes, registros);
+
+        for (File archivo : sueltos) {
+            if (archivo.length() <= Integer.MAX_VALUE && !archivo.delete()) {
+                System.out.println("ADVERTENCIA: No se pudo borrar " + archivo.getName());
+            }
+        }
+        return registros.size();
+    }
+
+    /**
+     * Marca como reemplazados los registros vigentes de los segmentos
+     * existentes que tienen una versión en los segmentos nuevos, y reescribe
+     * los índices que cambiaron. Si el proceso se interrumpe antes, FuenteVentas
+     * igual usa el registro del segmento más nuevo.
+     */
+    private static void marcarReemplazados(Map<File, List<Registro>> existentes, List<Registro> nuevos)
+            throws IOException {
+        Set<String> bases = new HashSet<>();
+        for (Registro registro : nuevos) {
+            bases.add(FuenteVentas.base(registro.nombre));
+        }
+        for (Map.Entry<File, List<Registro>> existente : existentes.entrySet()) {
+            boolean cambio = false;
+            for (Registro registro : existente.getValue()) {
+                if (!registro.reemplazado && bases.contains(FuenteVentas.base(registro.nombre))) {
+                    registro.reemplazado = true;
+                    cambio = true;
+                }
+            }
+            if (cambio) {
+                File indice = existente.getKey();
+                File temporal = new File(indice.getPath() + ".tmp");
+                escribirIndice(temporal, existente.getValue());
+                Files.move(temporal.toPath(), indice.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+    }
+
+    private static void escribirSegmento(File directorio, int numero, List<Registro> registros,
+            Map<String, File> origen) throws IOException {
+        String base = String.format(PREFIJO + "%05d", numero);
+        File segmento = new File(directorio, base + EXTENSION);
+        File indice = new File(directorio, base + EXTENSION_INDICE);
+        File segmentoTemporal = new File(directorio, base + EXTENSION + ".tmp");
+        File indiceTemporal = new File(directorio, base + EXTENSION_INDICE + ".tmp");
+
+        try (FileOutputStream salida = new FileOutputStream(segmentoTemporal)) {
+            long posicion = 0;
+            CRC32C crc = new CRC32C();
+            for (Registro registro : registros) {
+                byte[] contenido;
+                try (FileInputStream entrada = new FileInputStream(origen.get(registro.nombre))) {
+                    contenido = entrada.readAllBytes();
+                }
+                if (contenido.length != registro.longitud) {
+                    throw new IOException("El archivo cambió durante la compactación: " + registro.nombre);
+                }
+                crc.reset();
+                crc.update(contenido, 0, contenido.length);
+                registro.crc = crc.getValue();
+                registro.posicion = posicion;
+                salida.write(contenido);
+                posicion += contenido.length;
+            }
+            salida.getFD().sync();
+        }
+
+        escribirIndice(indiceTemporal, registros);
+
+        // El índice se publica después del segmento: su presencia indica que está completo
+        Files.move(segmentoTemporal.toPath(), segmento.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        Files.move(indiceTemporal.toPath(), indice.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Escribe un índice de segmento y lo sincroniza con el disco.
+     */
+    private static void escribirIndice(File destino, List<Registro> registros) throws IOException {
+        try (FileOutputStream archivo = new FileOutputStream(destino);
+                DataOutputStream salida = new DataOutputStream(new BufferedOutputStream(archivo, 1 << 16))) {
+            salida.writeInt(FIRMA);
+            salida.writeInt(registros.size());
+            for (Registro registro : registros) {
+                salida.writeUTF(registro.nombre);
+                salida.writeUTF(registro.vendedor);
+                salida.writeLong(registro.posicion);
+                salida.writeInt(registro.longitud);
+                salida.writeLong(registro.crc);
+                salida.writeBoolean(registro.reemplazado);
+            }
+            salida.flush();
+            archivo.getFD().sync();
+        }
+    }
+
+    /**
+     * Lee la identificación del vendedor de un archivo de ventas: la primera
+     * línea en texto o el encabezado en formato columnar. Si no se puede leer
+     * devuelve una cadena vacía; el archivo se compacta igual y main lo
+     * rechaza al procesarlo.
+     */
+    private static String vendedor(File archivo) throws IOException {
+        byte[] inicio;
+        try (FileInputStream entrada = new FileInputStream(archivo)) {
+            inicio = entrada.readNBytes(4096);
+        }
+        ByteBuffer datos = ByteBuffer.wrap(inicio);
+        if (archivo.getName().endsWith(FormatoColumnar.EXTENSION)) {
+            try {
+                FormatoColumnar.Lectura lectura = new FormatoColumnar.Lectura(datos, 0, inicio.length,
+                        archivo.getName());
+                return ParserVentas.texto(datos, lectura.inicioVendedor, lectura.finVendedor);
+            } catch (IOException e) {
+                // El encabezado no cabe en el inicio leído o el archivo está dañado
+                return "";
+            }
+        }
+        int finPrimeraLinea = ParserVentas.finDeLinea(datos, 0, inicio.length);
+        int inicioId = ParserVentas.saltarBlancos(datos, 0, finPrimeraLinea);
+        return ParserVentas.texto(datos, inicioId, ParserVentas.recortarBlancos(datos, inicioId, finPrimeraLinea));
+    }
+
+    private static int siguienteNumero(File directorio) {
+        String[] nombres = directorio.list((dir, nombre) -> nombre.startsWith(PREFIJO));
+        int mayor = 0;
+        for (String nombre : nombres == null ? new String[0] : nombres) {
+            int punto = nombre.indexOf('.');
+            try {
+                mayor = Math.max(mayor, Integer.parseInt(nombre.substring(PREFIJO.length(), punto)));
+            } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+                // Otro archivo con el mismo prefijo
+            }
+        }
+        return mayor + 1;
+    }
+
+    /**
+     * @param directorio directorio de trabajo
+     * @return los índices de segmento del directorio, ordenados por nombre
+     */
+    public static File[] listarIndices(File directorio) {
+        File[] indices = directorio.listFiles((dir, nombre) ->
+            nombre.startsWith(PREFIJO) && nombre.endsWith(EXTENSION_INDICE));
+        if (indices == null) {
+            return new File[0];
+        }
+        Arrays.sort(indices);
+        return indices;
+    }
+
+    /**
+     * @param indice índice de un segmento
+     * @return el archivo del segmento
+     */
+    public static File segmentoDe(File indice) {
+        String nombre = indice.getName();
+        return new File(indice.getParentFile(),
+                nombre.substring(0, nombre.length() - EXTENSION_INDICE.length()) + EXTENSION);
+    }
+
+    /**
+     * Mapea un segmento completo en memoria para leer sus registros.
+     *
+     * @param segmento archivo del segmento
+     * @return el contenido mapeado
+     * @throws IOException si el segmento no se puede leer o supera 2 GB
+     */
+    public static ByteBuffer mapear(File segmento) throws IOException {
+        try (FileChannel canal = FileChannel.open(segmento.toPath(), StandardOpenOption.READ)) {
+            if (canal.size() > Integer.MAX_VALUE) {
+                throw new IOException("Segmento demasiado grande: " + segmento.getName());
+            }
+            return canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+        }
+    }
+
+    /**
+     * Lee el índice de un segmento.
+     *
+     * @param indice archivo del índice
+     * @return los registros, en el orden del segmento
+     * @throws IOException si el índice no se puede leer o está dañado
+     */
+    public static List<Registro> leerIndice(File indice) throws IOException {
+        try (DataInputStream entrada = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(indice), 1 << 16))) {
+            int firma = entrada.readInt();
+            if (firma != FIRMA && firma != FIRMA_V1) {
+                throw new IOException("Índice de segmento inválido: " + indice.getName());
+            }
+            int cantidad = entrada.readInt();
+            List<Registro> registros = new ArrayList<>(cantidad);
+            for (int i = 0; i < cantidad; i++) {
+                Registro registro = new Registro();
+                registro.nombre = entrada.readUTF();
+                registro.vendedor = entrada.readUTF();
+                registro.posicion = entrada.readLong();
+                registro.longitud = entrada.readInt();
+                registro.crc = entrada.readLong();
+                registro.reemplazado = firma == FIRMA && entrada.readBoolean();
+                registros.add(registro);
+            }
+            return registros;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Totales por producto y por vendedor que varios hilos de ingesta actualizan
+ * mientras otro hilo toma instantáneas para los reportes de avance.
+ *
+ * Las celdas están repartidas en franjas, como en LongAdder: cada hilo suma
+ * en la franja que le toca según su identificador, así que dos hilos solo
+ * compiten por una celda si caen en la misma franja y suman al mismo índice.
+ * Los escritores nunca se bloquean: el aporte de un archivo es una sección
+ * crítica de escritura que solo incrementa contadores.
+ *
+ * Las celdas están duplicadas en dos fases (par e impar). Para tomar una
+ * instantánea el lector cambia la fase activa, espera a que terminen las
+ * secciones que empezaron en la anterior (sin detener las nuevas, que ya
+ * escriben en la otra) y pasa la fase anterior, ya quieta, a los totales
+ * acumulados. Así cada instantánea incluye el aporte completo de un archivo
+ * o nada de él, con productos y vendedores consistentes entre sí.
+ *
+ * Memoria: {@code (2 × franjas + 1) × (productos + vendedores)} longs.
+ */
+public class TotalesConcurrentes {
+
+    /**
+     * Totales en el momento de una instantánea.
+     */
+    public static class Instantanea {
+        final long[] ventasPorProducto;
+        // Centavos
+        final long[] recaudacionPorVendedor;
+        final long archivos;
+
+        Instantanea(long[] ventasPorProducto, long[] recaudacionPorVendedor, long archivos) {
+            this.ventasPorProducto = ventasPorProducto;
+            this.recaudacionPorVendedor = recaudacionPorVendedor;
+            this.archivos = archivos;
+        }
+    }
+
+    /**
+     * Celdas de una fase, por franja.
+     */
+    private static class Fase {
+        final AtomicLongArray[] productos;
+        final AtomicLongArray[] vendedores;
+        final AtomicLong archivos = new AtomicLong();
+
+        Fase(int franjas, int cantidadProductos, int cantidadVendedores) {
+            productos = new AtomicLongArray[franjas];
+            vendedores = new AtomicLongArray[franjas];
+            for (int f = 0; f < franjas; f++) {
+                productos[f] = new AtomicLongArray(cantidadProductos);
+                vendedores[f] = new AtomicLongArray(cantidadVendedores);
+            }
+        }
+    }
+
+    private final Fase par;
+    private final Fase impar;
+    private final int mascara;
+
+    // Épocas de las secciones de escritura: el signo de inicioEpoca indica la
+    // fase activa (no negativo = par) y cada fin cuenta las secciones
+    // terminadas en su fase, partiendo del valor inicial de la época
+    private final AtomicLong inicioEpoca = new AtomicLong();
+    private final AtomicLong finEpocaPar = new AtomicLong();
+    private final AtomicLong finEpocaImpar = new AtomicLong(Long.MIN_VALUE);
+
+    // Totales de las fases ya vaciadas; solo los usa el lector
+    private final long[] ventasPorProducto;
+    private final long[] recaudacionPorVendedor;
+    private long archivos;
+
+    /**
+     * @param productos cantidad de productos
+     * @param vendedores cantidad de vendedores
+     * @param escritores cantidad de hilos que escriben a la vez (define las
+     *                   franjas, redondeado a potencia de 2 y hasta 8)
+     */
+    public TotalesConcurrentes(int productos, int vendedores, int escritores) {
+        int franjas = escritores <= 1 ? 1 : Math.min(8, Integer.highestOneBit(escritores - 1) << 1);
+        mascara = franjas - 1;
+        par = new Fase(franjas, productos, vendedores);
+        impar = new Fase(franjas, productos, vendedores);
+        ventasPorProducto = new long[productos];
+        recaudacionPorVendedor = new long[vendedores];
+    }
+
+    /**
+     * Suma el aporte completo de un archivo. No bloquea.
+     *
+     * @param vendedor índice del vendedor
+     * @param recaudacion recaudación del archivo, en centavos
+     * @param productos productos vendidos en el archivo
+     * @param cantidades cantidad vendida de cada uno
+     */
+    @SuppressWarnings("deprecation") // Thread.getId: threadId() es de Java 19
+    public void agregar(int vendedor, long recaudacion, int[] productos, long[] cantidades) {
+        long epoca = inicioEpoca.getAndIncrement();
+        try {
+            Fase fase = epoca < 0 ? impar : par;
+            int franja = (int) Thread.currentThread().getId() & mascara;
+            AtomicLongArray celdas = fase.productos[franja];
+            for (int i = 0; i < productos.length; i++) {
+                celdas.getAndAdd(productos[i], cantidades[i]);
+            }
+            fase.vendedores[franja].getAndAdd(vendedor, recaudacion);
+            fase.archivos.getAndIncrement();
+        } finally {
+            (epoca < 0 ? finEpocaImpar : finEpocaPar).getAndIncrement();
+        }
+    }
+
+    /**
+     * Toma una instantánea consistente de los totales sin detener a los
+     * escritores: solo espera a que terminen los archivos que estaban en
+     * curso al cambiar de fase.
+     *
+     * @return copia de los totales
+     */
+    public synchronized Instantanea instantanea() {
+        boolean siguientePar = inicioEpoca.get() < 0;
+        long valorInicial = siguientePar ? 0 : Long.MIN_VALUE;
+        (siguientePar ? finEpocaPar : finEpocaImpar).set(valorInicial);
+        long epocaAlCambiar = inicioEpoca.getAndSet(valorInicial);
+        AtomicLong finAnterior = siguientePar ? finEpocaImpar : finEpocaPar;
+        while (finAnterior.get() != epocaAlCambiar) {
+            // El escritor puede estar desalojado: ceder en lugar de girar
+            Thread.yield();
+        }
+
+        // Nadie escribe en la fase anterior hasta el próximo cambio
+        Fase anterior = siguientePar ? impar : par;
+        for (int f = 0; f <= mascara; f++) {
+            vaciar(anterior.productos[f], ventasPorProducto);
+            vaciar(anterior.vendedores[f], recaudacionPorVendedor);
+        }
+        archivos += anterior.archivos.getAndSet(0);
+        return new Instantanea(ventasPorProducto.clone(), recaudacionPorVendedor.clone(), archivos);
+    }
+
+    private static void vaciar(AtomicLongArray celdas, long[] totales) {
+        for (int i = 0; i < totales.length; i++) {
+            long valor = celdas.get(i);
+            if (valor != 0) {
+                totales[i] += valor;
+                celdas.set(i, 0);
+            }
+        }
+    }
+}
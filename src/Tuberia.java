@@ -0,0 +1,306 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tubería de etapas conectadas por colas acotadas.
+ *
+ * Cada etapa tiene sus propios hilos, que toman elementos de su cola de
+ * entrada, los procesan y dejan el resultado en la cola de la etapa
+ * siguiente. Cuando una cola se llena, la etapa anterior se bloquea hasta que
+ * haya lugar (contrapresión): una etapa lenta frena a las anteriores en lugar
+ * de acumular elementos en memoria. Las métricas de cada etapa (elementos,
+ * tiempo ocupado, esperando entrada y bloqueado por la salida, profundidad de
+ * su cola) se registran en MetricasEjecucion.
+ *
+ * Una etapa puede entregar varios resultados por elemento (ver
+ * {@link Expansion}), y puede repartir sus elementos por una clave en lugar
+ * de compartir una cola entre sus hilos (ver {@link Particion}): cada hilo
+ * tiene entonces su propia cola y los elementos con la misma clave los
+ * procesa siempre el mismo hilo, en el orden en que llegaron. La capacidad
+ * de la etapa se reparte entre esas colas.
+ *
+ * Si el proceso de una etapa lanza una excepción la tubería se detiene y
+ * {@link #ejecutar(Iterable)} la informa; los errores esperables de cada
+ * elemento deben manejarse dentro del proceso.
+ */
+public class Tuberia {
+
+    /**
+     * Procesa un elemento de una etapa.
+     */
+    public interface Proceso<E, S> {
+        /**
+         * @param elemento elemento tomado de la cola de entrada
+         * @return resultado para la etapa siguiente, o null si no hay nada que pasarle
+         * @throws Exception si la tubería se debe detener
+         */
+        S procesar(E elemento) throws Exception;
+    }
+
+    /**
+     * Procesa un elemento de una etapa que entrega cualquier cantidad de
+     * resultados, cada uno apenas está listo.
+     */
+    public interface Expansion<E, S> {
+        /**
+         * @param elemento elemento tomado de la cola de entrada
+         * @param salida destino de los resultados para la etapa siguiente
+         * @throws Exception si la tubería se debe detener
+         */
+        void procesar(E elemento, Salida<S> salida) throws Exception;
+    }
+
+    /**
+     * Destino de los resultados de una {@link Expansion}.
+     */
+    public interface Salida<S> {
+        /**
+         * Pasa un resultado a la etapa siguiente, esperando lugar en su cola.
+         *
+         * @throws InterruptedException si la tubería se detiene mientras espera
+         */
+        void entregar(S resultado) throws InterruptedException;
+    }
+
+    /**
+     * Clave de reparto de los elementos de una etapa particionada.
+     */
+    public interface Particion<E> {
+        int clave(E elemento);
+    }
+
+    // Marca de fin de los elementos en una cola
+    private static final Object FIN = new Object();
+
+    private final MetricasEjecucion metricas;
+    private final int capacidadCola;
+    private final List<Etapa> etapas = new ArrayList<>();
+
+    private final List<Thread> hilos = new ArrayList<>();
+    private volatile Throwable error;
+
+    /**
+     * Descripción de una etapa agregada a la tubería.
+     */
+    private static class Etapa {
+        final String nombre;
+        final int hilos;
+        final Expansion<Object, Object> proceso;
+        // null = una cola compartida por todos los hilos
+        final Particion<Object> particion;
+        final MetricasEjecucion.EtapaTuberia metricas;
+        // Colas de entrada: una compartida, o una por hilo si está particionada
+        List<BlockingQueue<Object>> entradas;
+        Etapa siguiente;
+        AtomicInteger activos;
+
+        Etapa(String nombre, int hilos, Expansion<Object, Object> proceso, Particion<Object> particion,
+                MetricasEjecucion.EtapaTuberia metricas) {
+            this.nombre = nombre;
+            this.hilos = hilos;
+            this.proceso = proceso;
+            this.particion = particion;
+            this.metricas = metricas;
+        }
+
+        BlockingQueue<Object> cola(Object elemento) {
+            if (particion == null) {
+                return entradas.get(0);
+            }
+            return entradas.get(Math.floorMod(particion.clave(elemento), hilos));
+        }
+    }
+
+    /**
+     * @param metricas destino de las métricas de cada etapa
+     * @param capacidadCola cantidad máxima de elementos en cada cola
+     */
+    public Tuberia(MetricasEjecucion metricas, int capacidadCola) {
+        this.metricas = metricas;
+        this.capacidadCola = capacidadCola;
+    }
+
+    /**
+     * Agrega una etapa al final de la tubería. La primera etapa recibe los
+     * elementos de {@link #ejecutar(Iterable)} y cada una de las siguientes
+     * los resultados de la anterior; los resultados de la última se descartan.
+     *
+     * @param nombre nombre de la etapa en las métricas
+     * @param hilos cantidad de hilos de la etapa
+     * @param proceso proceso que se aplica a cada elemento
+     * @return esta tubería
+     */
+    public <E, S> Tuberia etapa(String nombre, int hilos, Proceso<E, S> proceso) {
+        return etapa(nombre, hilos, null, proceso);
+    }
+
+    /**
+     * Agrega una etapa particionada: los elementos con la misma clave los
+     * procesa el mismo hilo, en orden.
+     *
+     * @param nombre nombre de la etapa en las métricas
+     * @param hilos cantidad de hilos de la etapa
+     * @param particion clave de reparto de los elementos
+     * @param proceso proceso que se aplica a cada elemento
+     * @return esta tubería
+     */
+    public <E, S> Tuberia etapa(String nombre, int hilos, Particion<E> particion, Proceso<E, S> proceso) {
+        return expansion(nombre, hilos, particion, (E elemento, Salida<S> salida) -> {
+            S resultado = proceso.procesar(elemento);
+            if (resultado != null) {
+                salida.entregar(resultado);
+            }
+        });
+    }
+
+    /**
+     * Agrega una etapa que puede entregar varios resultados por elemento.
+     *
+     * @param nombre nombre de la etapa en las métricas
+     * @param hilos cantidad de hilos de la etapa
+     * @param particion clave de reparto de los elementos, o null para una cola compartida
+     * @param proceso proceso que se aplica a cada elemento
+     * @return esta tubería
+     */
+    @SuppressWarnings("unchecked")
+    public <E, S> Tuberia expansion(String nombre, int hilos, Particion<E> particion, Expansion<E, S> proceso) {
+        etapas.add(new Etapa(nombre, hilos, (Expansion<Object, Object>) proceso, (Particion<Object>) particion,
+                metricas.etapaTuberia(nombre, hilos, capacidadCola)));
+        return this;
+    }
+
+    /**
+     * Pasa los elementos por todas las etapas y espera a que terminen.
+     *
+     * @param elementos elementos para la primera etapa
+     * @throws ExecutionException si el proceso de alguna etapa falló
+     * @throws InterruptedException si se interrumpe la espera
+     */
+    public void ejecutar(Iterable<?> elementos) throws ExecutionException, InterruptedException {
+        for (int k = 0; k < etapas.size(); k++) {
+            Etapa etapa = etapas.get(k);
+            etapa.entradas = new ArrayList<>();
+            if (etapa.particion == null) {
+                etapa.entradas.add(new ArrayBlockingQueue<>(capacidadCola));
+            } else {
+                for (int h = 0; h < etapa.hilos; h++) {
+                    etapa.entradas.add(new ArrayBlockingQueue<>(Math.max(1, capacidadCola / etapa.hilos)));
+                }
+            }
+            etapa.siguiente = k + 1 < etapas.size() ? etapas.get(k + 1) : null;
+            etapa.activos = new AtomicInteger(etapa.hilos);
+        }
+        for (Etapa etapa : etapas) {
+            long inicio = System.nanoTime();
+            for (int h = 1; h <= etapa.hilos; h++) {
+                BlockingQueue<Object> entrada = etapa.entradas.get(etapa.particion == null ? 0 : h - 1);
+                Thread hilo = new Thread(() -> trabajar(etapa, entrada, inicio),
+                        "tuberia-" + etapa.nombre + "-" + h);
+                hilo.setDaemon(true);
+                hilos.add(hilo);
+            }
+        }
+        for (Thread hilo : hilos) {
+            hilo.start();
+        }
+
+        Etapa primera = etapas.get(0);
+        try {
+            for (Object elemento : elementos) {
+                if (!entregar(primera.cola(elemento), elemento)) {
+                    break;
+                }
+            }
+            for (BlockingQueue<Object> cola : primera.entradas) {
+                entregar(cola, FIN);
+            }
+            for (Thread hilo : hilos) {
+                hilo.join();
+            }
+        } catch (InterruptedException e) {
+            detener(e);
+            throw e;
+        }
+        if (error != null) {
+            throw new ExecutionException(error.getMessage(), error);
+        }
+    }
+
+    /**
+     * Pone un elemento en la primera cola, esperando lugar mientras la
+     * tubería siga en marcha.
+     *
+     * @return false si la tubería se detuvo por un error
+     */
+    private boolean entregar(BlockingQueue<Object> cola, Object elemento) throws InterruptedException {
+        while (!cola.offer(elemento, 100, TimeUnit.MILLISECONDS)) {
+            if (error != null) {
+                return false;
+            }
+        }
+        return error == null;
+    }
+
+    private void trabajar(Etapa etapa, BlockingQueue<Object> entrada, long inicio) {
+        MetricasEjecucion.EtapaTuberia medicion = etapa.metricas;
+        // Tiempo bloqueado por la salida durante el elemento en curso
+        long[] bloqueo = new long[1];
+        Salida<Object> salida = resultado -> {
+            if (etapa.siguiente == null) {
+                return;
+            }
+            long desde = System.nanoTime();
+            etapa.siguiente.cola(resultado).put(resultado);
+            bloqueo[0] += System.nanoTime() - desde;
+        };
+        try {
+            while (true) {
+                medicion.muestraProfundidad(entrada.size());
+                long espera = System.nanoTime();
+                Object elemento = entrada.take();
+                long comienzo = System.nanoTime();
+                medicion.esperaEntrada(comienzo - espera);
+                if (elemento == FIN) {
+                    if (etapa.particion == null) {
+                        // Se devuelve para que lo vean los demás hilos de la etapa
+                        entrada.put(FIN);
+                    }
+                    break;
+                }
+
+                bloqueo[0] = 0;
+                etapa.proceso.procesar(elemento, salida);
+                medicion.procesado(System.nanoTime() - comienzo - bloqueo[0]);
+                if (bloqueo[0] > 0) {
+                    medicion.bloqueoSalida(bloqueo[0]);
+                }
+            }
+            if (etapa.activos.decrementAndGet() == 0) {
+                medicion.pared(System.nanoTime() - inicio);
+                if (etapa.siguiente != null) {
+                    for (BlockingQueue<Object> cola : etapa.siguiente.entradas) {
+                        cola.put(FIN);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            // La tubería se está deteniendo por un error
+        } catch (Exception | Error e) {
+            detener(e);
+        }
+    }
+
+    private synchronized void detener(Throwable causa) {
+        if (error != null) {
+            return;
+        }
+        error = causa;
+        // Liberar a los hilos bloqueados en las colas
+        for (Thread hilo : hilos) {
+            if (hilo != Thread.currentThread()) {
+                hilo.interrupt();
+            }
+        }
+    }
+}
@@ -1,10 +1,20 @@
 import java.io.*;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.CRC32C;
 
 /**
  * Clase main para procesar archivos de ventas y generar reportes.
  * 
- * Esta clase lee los archivos generados por GenerateInfoFiles y produce:
+ * Esta clase lee los archivos generados por GenerateInfoFiles, en formato de
+ * texto ({@code ventas_*.txt}) o columnar ({@code ventas_*.bin}), sueltos o
+ * compactados en segmentos ({@code segmento_*.seg}), y produce:
  * 1. Reporte de vendedores ordenados por dinero recaudado (descendente)
  * 2. Reporte de productos vendidos ordenados por cantidad (descendente)
  * 
@@ -13,11 +23,113 @@ import java.util.*;
  */
 public class main {
     
-    // Estructuras para almacenar la información
-    private static Map<String, Vendedor> vendedores = new HashMap<>();
-    private static Map<String, Producto> productos = new HashMap<>();
-    private static Map<String, Integer> ventasPorProducto = new HashMap<>();
-    private static Map<String, Double> recaudacionPorVendedor = new HashMap<>();
+    // Índices densos de cada vendedor (tipoDoc;numDoc) y de cada producto;
+    // los datos y totales se guardan en esas posiciones
+    private static BuscadorIds indiceVendedores = new DiccionarioIds();
+    private static BuscadorIds indiceProductos = new DiccionarioIds();
+    private static List<Vendedor> vendedores = new ArrayList<>();
+    private static List<Producto> productos = new ArrayList<>();
+    // Precios en centavos
+    private static long[] precioPorProducto;
+    
+    // Almacén de datos maestros mapeado (--almacen-maestros): reemplaza a los
+    // diccionarios y listas en memoria cuando está abierto
+    private static boolean usarAlmacen = false;
+    private static final String ARCHIVO_ALMACEN = "maestros.dat";
+    private static AlmacenMaestros almacen;
+    
+    // Métricas de la ejecución y archivo donde se escriben (null = no se escriben)
+    private static MetricasEjecucion metricas = new MetricasEjecucion();
+    private static File archivoMetricas;
+    
+    // Filas y archivos rechazados en la ingesta en curso (cuarentena_ventas.csv)
+    private static CuarentenaVentas cuarentena = new CuarentenaVentas();
+    
+    private static ParserVentas parserVentas = new ParserVentas(indiceProductos, metricas, cuarentena);
+    
+    // Totales acumulados por índice de producto y de vendedor (recaudación
+    // en centavos)
+    private static long[] ventasPorProducto;
+    private static long[] recaudacionPorVendedor;
+    
+    // Directorio donde están los archivos de entrada y se escriben los reportes
+    private static File directorio = new File(".");
+    
+    // Cantidad de hilos para procesar los archivos de ventas (1 = secuencial)
+    private static int hilos = 1;
+    
+    // Tubería de ingesta (--tuberia L,A,G): hilos de lectura, análisis y
+    // agregación, y capacidad de las colas entre etapas (0 hilos = sin tubería)
+    private static int hilosLectura = 0;
+    private static int hilosAnalisis;
+    private static int hilosAgregacion;
+    private static int capacidadCola = 64;
+    // Tamaño de los bloques de líneas que pasan por las colas de la tubería
+    private static final int TAMANO_BLOQUE_TUBERIA = 1 << 18;
+    
+    // Agregación distribuida: direcciones de los trabajadores a los que el
+    // coordinador reparte los archivos, o puerto donde escucha este proceso
+    // como trabajador (-1 = no es trabajador)
+    private static List<InetSocketAddress> trabajadores;
+    private static int puertoTrabajador = -1;
+    private static long huellaMaestrosTrabajador;
+    // Máximo sin recibir datos por una conexión distribuida (--espera-trabajador S);
+    // el coordinador espera la respuesta mientras el trabajador procesa
+    private static int esperaTrabajadorMs = 600_000;
+    
+    // Forma de leer los archivos de ventas
+    private static LectorVentas.Modo modoLectura = LectorVentas.Modo.COMPLETO;
+    
+    // Cantidad de filas de cada reporte (0 = todas)
+    private static int top = 0;
+    
+    // Modo incremental: solo se leen los archivos nuevos o modificados
+    private static boolean incremental = false;
+    private static final String ARCHIVO_PUNTO_CONTROL = "punto_control_ventas.dat";
+    
+    // Modo servicio: vigila el directorio y actualiza los reportes cuando
+    // cambian los archivos, esperando intervaloMs sin cambios antes de hacerlo
+    private static boolean servicio = false;
+    private static long intervaloMs = 1000;
+    
+    // En modo servicio, aportes por archivo de la actualización anterior
+    private static PuntoControl puntoControl;
+    
+    // Consultas interactivas sobre las ventas procesadas (--consultas)
+    private static boolean consultas = false;
+    private static ConsultasVentas motorConsultas;
+    
+    // Cruce vendedor × producto (--cruce F): archivo donde se exporta y
+    // cantidades por par del último procesamiento (null = no se calcula)
+    private static File archivoCruce;
+    private static CruceVentas cruce;
+    
+    // Caché de reportes por huella de las entradas (--cache-resultados D;
+    // null = sin caché), cantidad máxima de entradas y si la huella incluye
+    // el CRC del contenido de los archivos
+    private static CacheResultados cacheResultados;
+    private static File directorioCache;
+    private static int entradasCache = 8;
+    private static boolean cacheContenido = false;
+    
+    // Reportes de avance durante la ingesta (--avance MS; 0 = no se
+    // escriben) y totales que actualizan los hilos de ingesta mientras tanto
+    private static long avanceMs = 0;
+    private static TotalesConcurrentes totalesEnVivo;
+    
+    // Ventas particionadas por día en subdirectorios AAAA-MM-DD (--particiones),
+    // cantidad de días de la ventana (0 = todas las particiones) y último día
+    // incluido (null = hoy)
+    private static boolean particiones = false;
+    private static int ventanaDias = 0;
+    private static LocalDate hasta;
+    
+    // Memoria máxima para los totales en bytes (--memoria-agregacion MB; 0 =
+    // totales densos en el heap) y, en ese modo, los acumuladores que vuelcan
+    // a disco en lugar de ventasPorProducto y recaudacionPorVendedor
+    private static long memoriaAgregacion = 0;
+    private static AgregacionExterna externaProductos;
+    private static AgregacionExterna externaVendedores;
     
     /**
      * Clase interna para representar un vendedor
@@ -50,48 +162,447 @@ public class main {
     private static class Producto {
         String id;
         String nombre;
-        double precio;
+        long precio; // en centavos
         
-        public Producto(String id, String nombre, double precio) {
+        public Producto(String id, String nombre, long precio) {
             this.id = id;
             this.nombre = nombre;
             this.precio = precio;
         }
     }
     
+    /**
+     * Acumulado parcial de ventas de un trabajador. Las cantidades por
+     * producto se suman en un arreglo propio; la recaudación de cada archivo
+     * se entrega al cerrarlo para combinarla en el orden de los archivos.
+     * 
+     * En modo incremental las cantidades se separan por archivo, porque el
+     * aporte de cada uno se guarda en el punto de control.
+     */
+    private static class AgregadoParcial implements ParserVentas.Receptor {
+        long[] ventasPorProducto = new long[precioPorProducto.length];
+        long recaudacionArchivoActual;
+        int archivosValidos;
+        
+        // Solo en modo incremental: productos tocados por el archivo en curso
+        boolean porArchivo;
+        int[] tocados;
+        int cantidadTocados;
+        
+        // Solo con --cruce fuera del modo incremental: filas del archivo en
+        // curso, que pasan al cruce del hilo al cerrarlo. El cruce del hilo se
+        // vuelca al global al superar MAXIMO_PARES_PARCIAL pares.
+        static final int MAXIMO_PARES_PARCIAL = 1 << 16;
+        int[] productosArchivo;
+        int[] cantidadesArchivo;
+        int filasArchivo;
+        CruceVentas cruceParcial;
+        
+        public AgregadoParcial(boolean porArchivo) {
+            this.porArchivo = porArchivo;
+            if (porArchivo) {
+                tocados = new int[16];
+            } else if (cruce != null) {
+                productosArchivo = new int[64];
+                cantidadesArchivo = new int[64];
+                cruceParcial = new CruceVentas();
+            }
+        }
+        
+        @Override
+        public void venta(int indiceProducto, int cantidad) {
+            if (productosArchivo != null) {
+                if (filasArchivo == productosArchivo.length) {
+                    productosArchivo = Arrays.copyOf(productosArchivo, filasArchivo * 2);
+                    cantidadesArchivo = Arrays.copyOf(cantidadesArchivo, filasArchivo * 2);
+                }
+                productosArchivo[filasArchivo] = indiceProducto;
+                cantidadesArchivo[filasArchivo++] = cantidad;
+            }
+            if (porArchivo && ventasPorProducto[indiceProducto] == 0 && !tocado(indiceProducto)) {
+                if (cantidadTocados == tocados.length) {
+                    tocados = Arrays.copyOf(tocados, cantidadTocados * 2);
+                }
+                tocados[cantidadTocados++] = indiceProducto;
+            }
+            ventasPorProducto[indiceProducto] += cantidad;
+            recaudacionArchivoActual += cantidad * precioPorProducto[indiceProducto];
+        }
+        
+        private boolean tocado(int indiceProducto) {
+            // Solo se recorre cuando la cantidad acumulada es 0 (ventas de 0 unidades)
+            for (int i = 0; i < cantidadTocados; i++) {
+                if (tocados[i] == indiceProducto) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        /**
+         * Cierra el archivo en curso y devuelve su recaudación en centavos.
+         */
+        public long cerrarArchivo() {
+            long recaudacion = recaudacionArchivoActual;
+            recaudacionArchivoActual = 0;
+            return recaudacion;
+        }
+        
+        /**
+         * Con --cruce, suma las filas del archivo en curso al cruce con el
+         * vendedor del archivo.
+         */
+        public void cerrarCruce(int indiceVendedor) {
+            if (productosArchivo == null) {
+                return;
+            }
+            for (int i = 0; i < filasArchivo; i++) {
+                cruceParcial.agregar(indiceVendedor, productosArchivo[i], cantidadesArchivo[i]);
+            }
+            filasArchivo = 0;
+            if (cruceParcial.tamano() >= MAXIMO_PARES_PARCIAL) {
+                volcarCruce();
+            }
+        }
+        
+        /**
+         * Con --cruce, suma al cruce del hilo los pares de un archivo que se
+         * acumularon aparte (en la tubería de ingesta).
+         */
+        public void combinarCruce(CruceVentas pares) {
+            cruceParcial.combinar(pares);
+            if (cruceParcial.tamano() >= MAXIMO_PARES_PARCIAL) {
+                volcarCruce();
+            }
+        }
+        
+        private void volcarCruce() {
+            synchronized (cruce) {
+                cruce.combinar(cruceParcial);
+            }
+        }
+        
+        /**
+         * En modo incremental, pasa las cantidades del archivo en curso a su
+         * entrada del punto de control y deja el acumulado listo para el siguiente.
+         */
+        public void tomarCantidadesArchivo(PuntoControl.Entrada entrada) {
+            entrada.productos = Arrays.copyOf(tocados, cantidadTocados);
+            entrada.cantidades = new long[cantidadTocados];
+            for (int i = 0; i < cantidadTocados; i++) {
+                entrada.cantidades[i] = ventasPorProducto[tocados[i]];
+            }
+            descartarArchivo();
+        }
+        
+        /**
+         * Descarta lo acumulado del archivo en curso cuando su lectura falla.
+         * Fuera del modo incremental las cantidades ya sumadas se conservan.
+         */
+        public void descartarArchivo() {
+            recaudacionArchivoActual = 0;
+            filasArchivo = 0;
+            if (porArchivo) {
+                for (int i = 0; i < cantidadTocados; i++) {
+                    ventasPorProducto[tocados[i]] = 0;
+                }
+                cantidadTocados = 0;
+            }
+        }
+        
+        /**
+         * Suma las cantidades de este acumulado a los totales globales.
+         */
+        public void combinar() {
+            for (int i = 0; i < ventasPorProducto.length; i++) {
+                main.ventasPorProducto[i] += ventasPorProducto[i];
+            }
+            if (cruceParcial != null) {
+                volcarCruce();
+            }
+        }
+    }
+    
+    /**
+     * Estado de la lectura de un archivo de ventas. En formato de texto el
+     * primer bloque trae la línea del vendedor y el resto del contenido son
+     * ventas; en formato columnar el archivo llega completo en un solo bloque.
+     */
+    private static class ArchivoVentas implements LectorVentas.Bloque {
+        String nombre;
+        boolean columnar;
+        ParserVentas.Receptor agregado;
+        CRC32C crc;
+        ParserVentas.Posicion posicion;
+        int indiceVendedor = -1;
+        int ventas;
+        
+        public ArchivoVentas(String nombre, ParserVentas.Receptor agregado, CRC32C crc) {
+            this.nombre = nombre;
+            this.columnar = nombre.endsWith(FormatoColumnar.EXTENSION);
+            this.agregado = agregado;
+            this.crc = crc;
+            this.posicion = new ParserVentas.Posicion(nombre);
+        }
+        
+        @Override
+        public void procesar(ByteBuffer datos, int desde, int fin) throws IOException {
+            if (crc != null) {
+                crc.update(datos.duplicate().limit(fin).position(desde));
+            }
+            metricas.bytesLeidos(fin - desde);
+            if (columnar) {
+                procesarColumnar(datos, desde, fin);
+                return;
+            }
+            int inicioVentas = desde;
+            if (indiceVendedor < 0) {
+                int finPrimeraLinea = ParserVentas.finDeLinea(datos, desde, fin);
+                int inicioId = ParserVentas.saltarBlancos(datos, desde, finPrimeraLinea);
+                int finId = ParserVentas.recortarBlancos(datos, inicioId, finPrimeraLinea);
+                
+                if (inicioId == finId) {
+                    throw new ArchivoRechazado(MetricasEjecucion.MotivoArchivo.ARCHIVO_VACIO, 
+                            "Archivo vacío: " + nombre);
+                }
+                
+                // Validar que el vendedor existe
+                indiceVendedor = indiceVendedores.buscar(datos, inicioId, finId);
+                if (indiceVendedor < 0) {
+                    throw new ArchivoRechazado(MetricasEjecucion.MotivoArchivo.VENDEDOR_INEXISTENTE, 
+                            "Vendedor no encontrado: " + ParserVentas.texto(datos, inicioId, finId) 
+                            + " en archivo " + nombre);
+                }
+                posicion.pasarLinea(datos, finPrimeraLinea, fin);
+                inicioVentas = finPrimeraLinea + 1;
+            }
+            
+            ventas += parserVentas.procesarVentas(datos, inicioVentas, fin, posicion, agregado);
+        }
+        
+        private void procesarColumnar(ByteBuffer datos, int desde, int fin) throws IOException {
+            if (desde == fin) {
+                throw new ArchivoRechazado(MetricasEjecucion.MotivoArchivo.ARCHIVO_VACIO, 
+                        "Archivo vacío: " + nombre);
+            }
+            FormatoColumnar.Lectura lectura = new FormatoColumnar.Lectura(datos, desde, fin, nombre);
+            
+            // Validar que el vendedor existe
+            indiceVendedor = indiceVendedores.buscar(datos, lectura.inicioVendedor, lectura.finVendedor);
+            if (indiceVendedor < 0) {
+                throw new ArchivoRechazado(MetricasEjecucion.MotivoArchivo.VENDEDOR_INEXISTENTE, 
+                        "Vendedor no encontrado: " 
+                        + ParserVentas.texto(datos, lectura.inicioVendedor, lectura.finVendedor) 
+                        + " en archivo " + nombre);
+            }
+            ventas += parserVentas.procesarColumnar(lectura, agregado);
+        }
+    }
+    
+    /**
+     * Archivo de ventas en la tubería de ingesta. La etapa de lectura lo
+     * entrega en bloques (LoteVentas); las de análisis y agregación están
+     * particionadas por archivo, así que reciben sus bloques en orden y en un
+     * solo hilo cada una. Lo que escribe una etapa lo leen las siguientes
+     * recién al recibir el último bloque.
+     */
+    private static class ArchivoTuberia {
+        int indice;
+        FuenteVentas fuente;
+        // Lectura: en modo incremental, entrada del punto de control y CRC del contenido
+        PuntoControl.Entrada entrada;
+        CRC32C crc;
+        // Análisis: estado de la lectura y error que descarta el archivo; la
+        // etapa de lectura deja de leerlo cuando lo ve
+        ArchivoVentas lectura;
+        volatile Exception error;
+        // Agregación: recaudación en centavos, cantidades por producto (en
+        // modo incremental o con --cruce) y tiempo de todas las etapas
+        long recaudacion;
+        CruceVentas pares;
+        long nanos;
+        
+        public ArchivoTuberia(int indice, FuenteVentas fuente) {
+            this.indice = indice;
+            this.fuente = fuente;
+        }
+    }
+    
+    /**
+     * Bloque de líneas completas de un archivo en la tubería, o el archivo
+     * completo si está en formato columnar. La etapa de análisis guarda en él
+     * las filas válidas y la de agregación las suma. El último bloque de cada
+     * archivo lleva el error de lectura, si lo hubo.
+     */
+    private static class LoteVentas implements ParserVentas.Receptor {
+        ArchivoTuberia archivo;
+        ByteBuffer datos;
+        int desde;
+        int fin;
+        boolean ultimo;
+        IOException errorLectura;
+        // Tiempo de lectura y análisis del bloque
+        long nanos;
+        
+        // Filas válidas, en el orden del bloque
+        int[] productos = new int[64];
+        int[] cantidades = new int[64];
+        int filas;
+        
+        public LoteVentas(ArchivoTuberia archivo, ByteBuffer datos, int desde, int fin) {
+            this.archivo = archivo;
+            this.datos = datos;
+            this.desde = desde;
+            this.fin = fin;
+        }
+        
+        @Override
+        public void venta(int indiceProducto, int cantidad) {
+            if (filas == productos.length) {
+                productos = Arrays.copyOf(productos, filas * 2);
+                cantidades = Arrays.copyOf(cantidades, filas * 2);
+            }
+            productos[filas] = indiceProducto;
+            cantidades[filas++] = cantidad;
+        }
+    }
+    
+    /**
+     * Receptor de las ventas con {@code --memoria-agregacion}: suma las
+     * cantidades directamente en el acumulador externo de productos y la
+     * recaudación del archivo en curso, que se pasa al de vendedores al
+     * cerrarlo.
+     */
+    private static class AcumuladoExterno implements ParserVentas.Receptor {
+        long recaudacionArchivoActual;
+        
+        @Override
+        public void venta(int indiceProducto, int cantidad) {
+            try {
+                externaProductos.sumar(indiceProducto, cantidad);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            recaudacionArchivoActual += cantidad * precio(indiceProducto);
+        }
+    }
+    
+    /**
+     * Error que descarta un archivo de ventas completo por su contenido.
+     */
+    private static class ArchivoRechazado extends IOException {
+        private static final long serialVersionUID = 1L;
+        
+        MetricasEjecucion.MotivoArchivo motivo;
+        
+        public ArchivoRechazado(MetricasEjecucion.MotivoArchivo motivo, String mensaje) {
+            super(mensaje);
+            this.motivo = motivo;
+        }
+    }
+    
+    /**
+     * Resultado por archivo de ventas, indexado por su posición en el listado.
+     */
+    private static class ResultadoArchivos {
+        // Índice del vendedor de cada archivo (-1 = archivo descartado) y su
+        // recaudación en centavos
+        int[] vendedorPorArchivo;
+        long[] recaudacionPorArchivo;
+        // Solo en modo incremental: huella y aporte de cada archivo
+        PuntoControl.Entrada[] entradas;
+        
+        public ResultadoArchivos(int cantidad, boolean incremental) {
+            vendedorPorArchivo = new int[cantidad];
+            recaudacionPorArchivo = new long[cantidad];
+            Arrays.fill(vendedorPorArchivo, -1);
+            if (incremental) {
+                entradas = new PuntoControl.Entrada[cantidad];
+            }
+        }
+    }
+    
     /**
      * Método principal que ejecuta el procesamiento de archivos y generación de reportes.
      * 
-     * @param args argumentos de línea de comandos (no utilizados)
+     * @param args argumentos de línea de comandos: {@code --hilos N} para procesar
+     *             los archivos de ventas en paralelo con N hilos,
+     *             {@code --lectura completo|nio} para elegir cómo se leen y
+     *             {@code --top N} para incluir solo los N primeros en los reportes y
+     *             {@code --incremental} para releer solo los archivos de ventas
+     *             nuevos o modificados desde la ejecución anterior;
+     *             {@code --directorio D} indica dónde están los archivos (por
+     *             defecto el directorio actual);
+     *             {@code --metricas F} escribe la duración de cada etapa, los
+     *             volúmenes leídos y los rechazos en F (JSON, o texto de
+     *             Prometheus si F termina en .prom);
+     *             {@code --servicio} deja el programa vigilando el directorio y
+     *             actualizando los reportes cuando llegan archivos, con
+     *             {@code --intervalo MS} milisegundos de espera sin cambios
+     *             antes de cada actualización (por defecto 1000);
+     *             {@code --almacen-maestros} guarda vendedores y productos en
+     *             un archivo mapeado (maestros.dat) que se reabre sin releer
+     *             los catálogos mientras no cambien;
+     *             {@code --tuberia L,A,G} procesa las ventas en una tubería con
+     *             L hilos de lectura, A de análisis y G de agregación, unidos
+     *             por colas de {@code --capacidad-cola N} bloques (por
+     *             defecto 64);
+     *             {@code --trabajadores H:P,...} reparte los archivos de ventas
+     *             entre procesos trabajadores y combina sus resultados, y
+     *             {@code --trabajador P} inicia uno de esos trabajadores
+     *             escuchando en el puerto P (0 = uno libre);
+     *             {@code --espera-trabajador S} es el máximo de segundos sin
+     *             recibir datos por una conexión entre ambos (por defecto
+     *             600); al vencer, el coordinador procesa el fragmento
+     *             localmente y el trabajador cierra la conexión;
+     *             {@code --consultas} al terminar responde consultas sobre
+     *             las ventas leídas de la entrada estándar (ver ConsultasVentas);
+     *             {@code --cruce F} exporta la cantidad y la recaudación por
+     *             vendedor y producto a F (CSV si termina en .csv, binario si no);
+     *             {@code --cache-resultados D} reutiliza los reportes guardados
+     *             en D si los archivos de entrada no cambiaron, conservando las
+     *             {@code --cache-entradas N} usadas más recientemente (por
+     *             defecto 8), y {@code --cache-contenido} incluye el CRC del
+     *             contenido de cada archivo en la comparación;
+     *             {@code --avance MS} reescribe los reportes cada MS
+     *             milisegundos con los archivos leídos hasta ese momento,
+     *             sin detener la ingesta;
+     *             {@code --particiones} lee las ventas de subdirectorios por
+     *             día (AAAA-MM-DD) y reutiliza el resumen de cada uno mientras
+     *             no cambie, {@code --ventana N} limita los reportes a los
+     *             últimos N días y {@code --hasta AAAA-MM-DD} fija el último
+     *             día incluido (por defecto hoy);
+     *             {@code --memoria-agregacion MB} limita a MB megabytes la
+     *             memoria de los totales por producto y por vendedor,
+     *             volcando corridas ordenadas a archivos temporales que se
+     *             mezclan para los reportes (ver AgregacionExterna)
      */
     public static void main(String[] args) {
+        boolean exito = false;
         try {
-            System.out.println("=== INICIANDO PROCESAMIENTO DE ARCHIVOS DE VENTAS ===");
-            
-            // Cargar información de vendedores
-            cargarVendedores();
-            System.out.println("✓ Información de vendedores cargada exitosamente");
-            
-            // Cargar información de productos
-            cargarProductos();
-            System.out.println("✓ Información de productos cargada exitosamente");
+            leerArgumentos(args);
             
-            // Procesar archivos de ventas
-            procesarArchivosDeVentas();
-            System.out.println("✓ Archivos de ventas procesados exitosamente");
-            
-            // Generar reporte de vendedores
-            generarReporteVendedores();
-            System.out.println("✓ Reporte de vendedores generado: reporte_vendedores.csv");
+            if (puertoTrabajador >= 0) {
+                ejecutarTrabajador();
+                return;
+            }
+            if (servicio) {
+                ejecutarServicio();
+                return;
+            }
             
-            // Generar reporte de productos
-            generarReporteProductos();
-            System.out.println("✓ Reporte de productos generado: reporte_productos.csv");
+            System.out.println("=== INICIANDO PROCESAMIENTO DE ARCHIVOS DE VENTAS ===");
+            ejecutarEtapas(true);
             
             System.out.println("=== PROCESAMIENTO COMPLETADO EXITOSAMENTE ===");
             System.out.println("Archivos generados:");
             System.out.println("- reporte_vendedores.csv");
             System.out.println("- reporte_productos.csv");
+            exito = true;
+            
+            if (consultas) {
+                atenderConsultas();
+            }
             
         } catch (FileNotFoundException e) {
             System.err.println("ERROR: No se encontró uno de los archivos necesarios:");
@@ -103,185 +614,2049 @@ public class main {
         } catch (NumberFormatException e) {
             System.err.println("ERROR: Formato numérico inválido en los archivos:");
             System.err.println(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            System.err.println("ERROR: Argumentos inválidos:");
+            System.err.println(e.getMessage());
         } catch (Exception e) {
             System.err.println("ERROR: Ocurrió un problema inesperado:");
             System.err.println(e.getMessage());
             e.printStackTrace();
+        } finally {
+            cerrarAgregacionExterna();
+            if (!servicio) {
+                escribirMetricas(exito);
+            }
         }
     }
     
     /**
-     * Carga la información de vendedores desde el archivo vendedores.txt
+     * Ejecuta las etapas del procesamiento y registra la duración de cada una.
      * 
-     * @throws IOException si hay problemas al leer el archivo
+     * @param cargarMaestros si se deben cargar vendedores.txt y productos.txt
+     * @throws IOException si hay problemas al leer o escribir archivos
      */
-    private static void cargarVendedores() throws IOException {
-        BufferedReader reader = new BufferedReader(new FileReader("vendedores.txt"));
-        String linea;
+    private static void ejecutarEtapas(boolean cargarMaestros) throws IOException {
+        long inicio = System.nanoTime();
+        String huella = null;
+        if (cacheResultados != null) {
+            huella = huellaEntradas();
+            boolean recuperados = cacheResultados.recuperar(huella, directorio, 
+                    "reporte_vendedores.csv", "reporte_productos.csv", CuarentenaVentas.ARCHIVO);
+            inicio = registrarEtapa("cache_resultados", inicio);
+            if (recuperados) {
+                System.out.println("✓ Reportes recuperados de la caché de resultados (huella " + huella + ")");
+                // La cuarentena recuperada es la de la ejecución que generó los reportes
+                long[] rechazos = CuarentenaVentas.contar(archivo(CuarentenaVentas.ARCHIVO));
+                informarRechazos(rechazos[0], rechazos[1], 0);
+                return;
+            }
+        }
         
-        while ((linea = reader.readLine()) != null) {
-            if (linea.trim().isEmpty()) continue;
+        if (cargarMaestros) {
+            // Cargar información de vendedores
+            cargarVendedores();
+            inicio = registrarEtapa("carga_vendedores", inicio);
+            System.out.println("✓ Información de vendedores cargada exitosamente");
             
-            String[] partes = linea.split(";");
-            if (partes.length >= 4) {
-                String tipoDoc = partes[0].trim();
-                String numDoc = partes[1].trim();
-                String nombres = partes[2].trim();
-                String apellidos = partes[3].trim();
-                
-                String clave = tipoDoc + ";" + numDoc;
-                vendedores.put(clave, new Vendedor(tipoDoc, numDoc, nombres, apellidos));
-                recaudacionPorVendedor.put(clave, 0.0);
-            } else {
-                System.out.println("ADVERTENCIA: Línea con formato incorrecto en vendedores.txt: " + linea);
-            }
+            // Cargar información de productos
+            cargarProductos();
+            inicio = registrarEtapa("carga_productos", inicio);
+            System.out.println("✓ Información de productos cargada exitosamente");
         }
-        reader.close();
         
-        if (vendedores.isEmpty()) {
-            throw new IOException("No se encontraron vendedores válidos en vendedores.txt");
+        // Procesar archivos de ventas
+        procesarArchivosDeVentas();
+        inicio = registrarEtapa("ingesta", inicio);
+        System.out.println("✓ Archivos de ventas procesados exitosamente");
+        
+        if (consultas) {
+            construirIndicesConsulta();
+            inicio = registrarEtapa("indices_consulta", inicio);
+            System.out.println("✓ Índices de consulta construidos");
+        }
+        
+        // Generar reporte de vendedores
+        generarReporteVendedores();
+        inicio = registrarEtapa("reporte_vendedores", inicio);
+        System.out.println("✓ Reporte de vendedores generado: reporte_vendedores.csv");
+        
+        // Generar reporte de productos
+        generarReporteProductos();
+        inicio = registrarEtapa("reporte_productos", inicio);
+        System.out.println("✓ Reporte de productos generado: reporte_productos.csv");
+        
+        if (cruce != null) {
+            cruce.exportar(archivoCruce, catalogo(), recaudacionPorVendedor.length, precioPorProducto);
+            inicio = registrarEtapa("exportacion_cruce", inicio);
+            System.out.println("✓ Cruce vendedor × producto exportado: " + archivoCruce 
+                    + " (" + cruce.tamano() + " pares)");
+        }
+        
+        // Solo se guardan si las entradas no cambiaron durante el procesamiento
+        if (huella != null && huella.equals(huellaEntradas())) {
+            cacheResultados.guardar(huella, directorio, "reporte_vendedores.csv", "reporte_productos.csv", 
+                    CuarentenaVentas.ARCHIVO);
+            registrarEtapa("cache_resultados", inicio);
         }
     }
     
     /**
-     * Carga la información de productos desde el archivo productos.txt
+     * Huella de los archivos de entrada y de las opciones que cambian el
+     * contenido de los reportes, para la caché de resultados.
+     */
+    private static String huellaEntradas() throws IOException {
+        return CacheResultados.huella("top=" + top, cacheContenido, archivo("vendedores.txt"), 
+                archivo("productos.txt"), FuenteVentas.listar(directorio));
+    }
+    
+    /**
+     * Modo servicio: carga los archivos maestros una vez, procesa los archivos
+     * de ventas existentes y luego vigila el directorio. Cada vez que aparecen
+     * o cambian archivos de ventas se leen solo esos y se regeneran los
+     * reportes; si cambia vendedores.txt o productos.txt se recargan y se
+     * procesa todo de nuevo. No termina hasta que se detiene el proceso.
      * 
-     * @throws IOException si hay problemas al leer el archivo
+     * @throws IOException si no se puede vigilar el directorio
+     * @throws InterruptedException si el hilo es interrumpido
      */
-    private static void cargarProductos() throws IOException {
-        BufferedReader reader = new BufferedReader(new FileReader("productos.txt"));
-        String linea;
-        
-        while ((linea = reader.readLine()) != null) {
-            if (linea.trim().isEmpty()) continue;
+    private static void ejecutarServicio() throws IOException, InterruptedException {
+        try (WatchService vigilante = FileSystems.getDefault().newWatchService()) {
+            directorio.toPath().register(vigilante, StandardWatchEventKinds.ENTRY_CREATE, 
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            System.out.println("=== SERVICIO INICIADO: vigilando " + directorio.getAbsolutePath() + " ===");
             
-            String[] partes = linea.split(";");
-            if (partes.length >= 3) {
-                String id = partes[0].trim();
-                String nombre = partes[1].trim();
-                double precio;
-                
+            boolean recargarMaestros = true;
+            while (true) {
+                boolean exito = false;
                 try {
-                    precio = Double.parseDouble(partes[2].trim().replace(",", "."));
-                } catch (NumberFormatException e) {
-                    System.out.println("ADVERTENCIA: Precio inválido para producto " + id + ": " + partes[2]);
-                    continue;
+                    if (recargarMaestros) {
+                        reiniciarDatos();
+                    }
+                    ejecutarEtapas(recargarMaestros);
+                    exito = true;
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("ERROR: No se pudieron actualizar los reportes:");
+                    System.err.println(e.getMessage());
                 }
+                escribirMetricas(exito);
                 
-                productos.put(id, new Producto(id, nombre, precio));
-                ventasPorProducto.put(id, 0);
-            } else {
-                System.out.println("ADVERTENCIA: Línea con formato incorrecto en productos.txt: " + linea);
+                // Si los maestros no se pudieron cargar se reintenta en el siguiente cambio
+                boolean maestrosCargados = ventasPorProducto != null;
+                recargarMaestros = esperarCambios(vigilante) || !maestrosCargados;
             }
         }
-        reader.close();
-        
-        if (productos.isEmpty()) {
-            throw new IOException("No se encontraron productos válidos en productos.txt");
-        }
     }
     
     /**
-     * Procesa todos los archivos de ventas encontrados en el directorio actual
+     * Espera a que cambie algún archivo de entrada y luego a que pasen
+     * {@code intervaloMs} sin cambios, para no regenerar los reportes por cada
+     * archivo de una tanda. Si los cambios no se detienen, se espera como
+     * máximo diez intervalos.
      * 
-     * @throws IOException si hay problemas al leer los archivos
+     * @param vigilante servicio registrado sobre el directorio
+     * @return true si cambiaron los archivos maestros
+     * @throws InterruptedException si el hilo es interrumpido
      */
-    private static void procesarArchivosDeVentas() throws IOException {
-        File directorio = new File(".");
-        File[] archivos = directorio.listFiles((dir, nombre) -> 
-            nombre.startsWith("ventas_") && nombre.endsWith(".txt"));
+    private static boolean esperarCambios(WatchService vigilante) throws InterruptedException {
+        boolean hayCambios = false;
+        boolean cambiaronMaestros = false;
+        long limite = 0;
         
-        if (archivos == null || archivos.length == 0) {
-            throw new IOException("No se encontraron archivos de ventas en el directorio actual");
-        }
-        
-        int archivosValidos = 0;
-        for (File archivo : archivos) {
-            try {
-                if (procesarArchivoVentas(archivo)) {
-                    archivosValidos++;
+        WatchKey clave = vigilante.take();
+        while (clave != null) {
+            for (WatchEvent<?> evento : clave.pollEvents()) {
+                if (evento.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    // Se perdieron eventos: no se sabe qué cambió
+                    hayCambios = true;
+                    cambiaronMaestros = true;
+                    continue;
                 }
-            } catch (Exception e) {
-                System.out.println("ADVERTENCIA: Error procesando " + archivo.getName() + ": " + e.getMessage());
+                String nombre = evento.context().toString();
+                if (nombre.equals("vendedores.txt") || nombre.equals("productos.txt")) {
+                    hayCambios = true;
+                    cambiaronMaestros = true;
+                } else if (FuenteVentas.esArchivoVentas(nombre) 
+                        || nombre.endsWith(SegmentoVentas.EXTENSION_INDICE)) {
+                    hayCambios = true;
+                }
+            }
+            clave.reset();
+            
+            if (!hayCambios) {
+                // Solo cambiaron otros archivos, como los propios reportes
+                clave = vigilante.take();
+                continue;
+            }
+            if (limite == 0) {
+                limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(intervaloMs * 10);
             }
+            long restanteMs = TimeUnit.NANOSECONDS.toMillis(limite - System.nanoTime());
+            if (restanteMs <= 0) {
+                break;
+            }
+            clave = vigilante.poll(Math.min(intervaloMs, restanteMs), TimeUnit.MILLISECONDS);
         }
-        
-        if (archivosValidos == 0) {
-            throw new IOException("No se pudo procesar ningún archivo de ventas válido");
+        return cambiaronMaestros;
+    }
+    
+    /**
+     * Registra la duración de una etapa que empezó en {@code inicio}.
+     * 
+     * @return el instante actual, inicio de la etapa siguiente
+     */
+    private static long registrarEtapa(String etapa, long inicio) {
+        long ahora = System.nanoTime();
+        metricas.etapa(etapa, ahora - inicio);
+        return ahora;
+    }
+    
+    /**
+     * Escribe las métricas si se pidieron con {@code --metricas}, también
+     * cuando la ejecución falló, para poder detectar ejecuciones degradadas.
+     * En modo servicio se escriben después de cada actualización, con los
+     * contadores acumulados desde el inicio.
+     */
+    private static void escribirMetricas(boolean exito) {
+        if (archivoMetricas == null) {
+            return;
+        }
+        metricas.finalizar(exito);
+        try {
+            metricas.escribir(archivoMetricas);
+        } catch (IOException e) {
+            System.err.println("ERROR: No se pudieron escribir las métricas: " + e.getMessage());
         }
-        
-        System.out.println("Archivos de ventas procesados: " + archivosValidos + "/" + archivos.length);
     }
     
     /**
-     * Procesa un archivo individual de ventas
+     * Descarta los datos maestros y los totales cargados, dejando el estado
+     * como al iniciar el programa. Las opciones de línea de comandos se conservan.
+     */
+    private static void reiniciarDatos() {
+        indiceVendedores = new DiccionarioIds();
+        indiceProductos = new DiccionarioIds();
+        vendedores = new ArrayList<>();
+        productos = new ArrayList<>();
+        precioPorProducto = null;
+        almacen = null;
+        parserVentas = new ParserVentas(indiceProductos, metricas, cuarentena);
+        ventasPorProducto = null;
+        recaudacionPorVendedor = null;
+        puntoControl = null;
+        cerrarAgregacionExterna();
+    }
+    
+    /**
+     * Carga la información de vendedores desde el archivo vendedores.txt
      * 
-     * @param archivo el archivo a procesar
-     * @return true si el archivo se procesó correctamente
      * @throws IOException si hay problemas al leer el archivo
      */
-    private static boolean procesarArchivoVentas(File archivo) throws IOException {
-        BufferedReader reader = new BufferedReader(new FileReader(archivo));
-        String primeraLinea = reader.readLine();
-        
-        if (primeraLinea == null || primeraLinea.trim().isEmpty()) {
-            reader.close();
-            throw new IOException("Archivo vacío: " + archivo.getName());
+    private static void cargarVendedores() throws IOException {
+        if (usarAlmacen) {
+            abrirAlmacen();
+            indiceVendedores = almacen.vendedores;
+        } else {
+            DiccionarioIds diccionario = new DiccionarioIds();
+            leerVendedores((tipoDoc, numDoc, nombres, apellidos) -> {
+                Vendedor vendedor = new Vendedor(tipoDoc, numDoc, nombres, apellidos);
+                registrar(vendedores, diccionario.agregar(vendedor.getIdentificacion()), vendedor);
+            });
+            indiceVendedores = diccionario;
         }
         
-        // Validar que el vendedor existe
-        String vendedorId = primeraLinea.trim();
-        if (!vendedores.containsKey(vendedorId)) {
-            reader.close();
-            throw new IOException("Vendedor no encontrado: " + vendedorId + " en archivo " + archivo.getName());
+        if (indiceVendedores.tamano() == 0) {
+            throw new IOException("No se encontraron vendedores válidos en vendedores.txt");
+        }
+        if (memoriaAgregacion == 0) {
+            recaudacionPorVendedor = new long[indiceVendedores.tamano()];
+        }
+    }
+    
+    /**
+     * Abre el almacén de datos maestros, o lo construye leyendo vendedores.txt
+     * y productos.txt si no existe o quedó desactualizado.
+     * 
+     * @throws IOException si hay problemas al leer los archivos o el almacén
+     */
+    private static void abrirAlmacen() throws IOException {
+        File archivoVendedores = archivo("vendedores.txt");
+        File archivoProductos = archivo("productos.txt");
+        almacen = AlmacenMaestros.abrir(archivo(ARCHIVO_ALMACEN), archivoVendedores, archivoProductos);
+        if (almacen != null) {
+            System.out.println("✓ Almacén de datos maestros reutilizado: " + ARCHIVO_ALMACEN);
+            return;
         }
         
+        AlmacenMaestros.Constructor constructor = AlmacenMaestros.construir(
+                archivo(ARCHIVO_ALMACEN), archivoVendedores, archivoProductos);
+        try {
+            leerVendedores(constructor);
+            leerProductos(constructor);
+            almacen = constructor.terminar();
+        } catch (IOException | RuntimeException e) {
+            constructor.descartar();
+            throw e;
+        }
+        System.out.println("✓ Almacén de datos maestros construido: " + ARCHIVO_ALMACEN);
+    }
+    
+    private static void leerVendedores(AlmacenMaestros.DestinoVendedores destino) throws IOException {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(archivo("vendedores.txt")), StandardCharsets.UTF_8))) {
+            leerVendedores(reader, destino);
+        }
+    }
+    
+    private static void leerVendedores(BufferedReader reader, AlmacenMaestros.DestinoVendedores destino)
+            throws IOException {
         String linea;
-        boolean ventasEncontradas = false;
-        double recaudacionVendedor = recaudacionPorVendedor.get(vendedorId);
         
         while ((linea = reader.readLine()) != null) {
             if (linea.trim().isEmpty()) continue;
             
             String[] partes = linea.split(";");
-            if (partes.length >= 2) {
-                String idProducto = partes[0].trim();
+            if (partes.length >= 4) {
+                String tipoDoc = partes[0].trim();
+                String numDoc = partes[1].trim();
+                String nombres = partes[2].trim();
+                String apellidos = partes[3].trim();
                 
-                try {
-                    int cantidad = Integer.parseInt(partes[1].trim());
-                    
-                    if (cantidad < 0) {
-                        System.out.println("ADVERTENCIA: Cantidad negativa ignorada en " + archivo.getName() + 
-                                         " para producto " + idProducto);
-                        continue;
-                    }
-                    
-                    // Validar que el producto existe
-                    if (!productos.containsKey(idProducto)) {
-                        System.out.println("ADVERTENCIA: Producto inexistente " + idProducto + 
-                                         " en archivo " + archivo.getName());
-                        continue;
+                destino.vendedor(tipoDoc, numDoc, nombres, apellidos);
+            } else {
+                System.out.println("ADVERTENCIA: Línea con formato incorrecto en vendedores.txt: " + linea);
+            }
+        }
+    }
+    
+    /**
+     * Carga la información de productos desde el archivo productos.txt
+     * 
+     * @throws IOException si hay problemas al leer el archivo
+     */
+    private static void cargarProductos() throws IOException {
+        if (usarAlmacen) {
+            // El almacén ya se abrió junto con los vendedores
+            indiceProductos = almacen.productos;
+        } else {
+            DiccionarioIds diccionario = new DiccionarioIds();
+            leerProductos((id, nombre, precio) ->
+                registrar(productos, diccionario.agregar(id), new Producto(id, nombre, precio)));
+            indiceProductos = diccionario;
+        }
+        
+        if (indiceProductos.tamano() == 0) {
+            throw new IOException("No se encontraron productos válidos en productos.txt");
+        }
+        parserVentas = new ParserVentas(indiceProductos, metricas, cuarentena);
+        if (memoriaAgregacion > 0) {
+            // Los precios se leen del catálogo (o del almacén) al sumar
+            return;
+        }
+        precioPorProducto = new long[indiceProductos.tamano()];
+        for (int i = 0; i < precioPorProducto.length; i++) {
+            precioPorProducto[i] = precio(i);
+        }
+        ventasPorProducto = new long[indiceProductos.tamano()];
+    }
+    
+    /**
+     * @param indiceProducto índice del producto
+     * @return precio del producto en centavos
+     */
+    private static long precio(int indiceProducto) {
+        return almacen != null ? almacen.precio(indiceProducto) : productos.get(indiceProducto).precio;
+    }
+    
+    private static void leerProductos(AlmacenMaestros.DestinoProductos destino) throws IOException {
+        ByteBuffer datos = ByteBuffer.wrap(leerArchivo(archivo("productos.txt")));
+        
+        int inicio = 0;
+        while (inicio < datos.limit()) {
+            int fin = ParserVentas.finDeLinea(datos, inicio, datos.limit());
+            if (!ParserVentas.esBlanco(datos, inicio, fin)) {
+                cargarLineaProducto(datos, inicio, fin, destino);
+            }
+            inicio = fin + 1;
+        }
+    }
+    
+    /**
+     * Interpreta una línea {@code id;nombre;precio} de productos.txt.
+     * 
+     * @param datos contenido del archivo
+     * @param inicio posición inicial de la línea
+     * @param fin posición final de la línea (exclusiva)
+     * @param destino receptor del producto leído
+     */
+    private static void cargarLineaProducto(ByteBuffer datos, int inicio, int fin,
+            AlmacenMaestros.DestinoProductos destino) throws IOException {
+        int separadorNombre = ParserVentas.indiceDe(datos, inicio, fin, (byte) ';');
+        int separadorPrecio = separadorNombre < 0 ? -1 
+                : ParserVentas.indiceDe(datos, separadorNombre + 1, fin, (byte) ';');
+        
+        if (separadorPrecio < 0 || !ParserVentas.hayContenidoTras(datos, separadorPrecio + 1, fin)) {
+            System.out.println("ADVERTENCIA: Línea con formato incorrecto en productos.txt: " 
+                    + ParserVentas.texto(datos, inicio, fin));
+            return;
+        }
+        
+        int finPrecio = ParserVentas.indiceDe(datos, separadorPrecio + 1, fin, (byte) ';');
+        if (finPrecio < 0) {
+            finPrecio = fin;
+        }
+        
+        String id = textoRecortado(datos, inicio, separadorNombre);
+        String nombre = textoRecortado(datos, separadorNombre + 1, separadorPrecio);
+        long precio;
+        
+        try {
+            precio = ParserVentas.parsearCentavos(datos, separadorPrecio + 1, finPrecio);
+        } catch (NumberFormatException e) {
+            System.out.println("ADVERTENCIA: Precio inválido para producto " + id + ": " 
+                    + ParserVentas.texto(datos, separadorPrecio + 1, finPrecio));
+            return;
+        }
+        
+        destino.producto(id, nombre, precio);
+    }
+    
+    /**
+     * Guarda un elemento en la posición de su índice denso. Si el identificador
+     * ya estaba registrado, el elemento nuevo reemplaza al anterior.
+     */
+    private static <T> void registrar(List<T> lista, int indice, T elemento) {
+        if (indice == lista.size()) {
+            lista.add(elemento);
+        } else {
+            lista.set(indice, elemento);
+        }
+    }
+    
+    private static String textoRecortado(ByteBuffer datos, int desde, int hasta) {
+        int inicio = ParserVentas.saltarBlancos(datos, desde, hasta);
+        return ParserVentas.texto(datos, inicio, ParserVentas.recortarBlancos(datos, inicio, hasta));
+    }
+    
+    /**
+     * Lee el contenido completo de un archivo.
+     * 
+     * @param archivo archivo a leer
+     * @return bytes del archivo
+     * @throws IOException si el archivo no existe o no se puede leer
+     */
+    private static byte[] leerArchivo(File archivo) throws IOException {
+        try (FileInputStream entrada = new FileInputStream(archivo)) {
+            return entrada.readAllBytes();
+        }
+    }
+    
+    /**
+     * Lee las opciones de línea de comandos.
+     * 
+     * @param args argumentos recibidos por main
+     */
+    private static void leerArgumentos(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--lectura":
+                    if (i + 1 >= args.length) {
+                        throw new IllegalArgumentException("Falta el valor de --lectura");
+                    }
+                    String modo = args[++i];
+                    if (modo.equals("completo")) {
+                        modoLectura = LectorVentas.Modo.COMPLETO;
+                    } else if (modo.equals("nio")) {
+                        modoLectura = LectorVentas.Modo.NIO;
+                    } else {
+                        throw new IllegalArgumentException("Modo de lectura desconocido: " + modo);
+                    }
+                    break;
+                case "--top":
+                    if (i + 1 >= args.length) {
+                        throw new IllegalArgumentException("Falta el valor de --top");
+                    }
+                    top = Integer.parseInt(args[++i]);
+                    if (top <= 0) {
+                        throw new IllegalArgumentException("El valor de --top debe ser mayor a 0");
+                    }
+                    break;
+                case "--directorio":
+                    if (i + 1 >= args.length) {
+                        throw new IllegalArgumentException("Falta el valor de --directorio");
+                    }
+                    directorio = new File(args[++i]);
+                    break;
+                case "--incremental":
+                    incremental = true;
+                    break;
+                case "--servicio":
+                    servicio = true;
+                    break;
+                case "--intervalo":
+                    if (i + 1 >= args.length) {
+                        throw new IllegalArgumentException("Falta el valor de --intervalo");
+                    }
+                    intervaloMs = Long.parseLong(args[++i]);
+                    if (intervaloMs <= 0) {
+                        throw new IllegalArgumentException("El valor de --intervalo debe ser mayor a 0");
+                    }
+                    break;
+                case "--metricas":
+                    if (i + 1 >= args.length) {
+                        throw new IllegalArgumentException("Falta el valor de --metricas");
+                    }
+                    archivoMetricas = new File(args[++i]);
+                    break;
+                case "--hilos":
+                    if (i + 1 >= args.length) {
+                        throw new IllegalArgumentException("Falta el valor de --hilos");
+                    }
+                    hilos = Integer.parseInt(args[++i]);
+                    if (hilos <= 0) {
+                        throw new IllegalArgumentException("La cantidad de hilos debe ser mayor a 0");
+                    }
+                    break;
+                case "--almacen-maestros":
+                    usarAlmacen = true;
+                    break;
+                case "--tuberia":
+                    if (i + 1 >= args.length) {
+                        throw new IllegalArgumentException("Falta el valor de --tuberia");
+                    }
+                    String[] hilosEtapas = args[++i].split(",");
+                    if (hilosEtapas.length != 3) {
+                        throw new IllegalArgumentException(
+                                "--tuberia espera los hilos de lectura, análisis y agregación: L,A,G");
+                    }
+                    hilosLectura = Integer.parseInt(hilosEtapas[0].trim());
+                    hilosAnalisis = Integer.parseInt(hilosEtapas[1].trim());
+                    hilosAgregacion = Integer.parseInt(hilosEtapas[2].trim());
+                    if (hilosLectura <= 0 || hilosAnalisis <= 0 || hilosAgregacion <= 0) {
+                        throw new IllegalArgumentException("La cantidad de hilos de cada etapa debe ser mayor a 0");
+                    }
+                    break;
+                case "--capacidad-cola":
+                    if (i + 1 >= args.length) {
+                        throw new IllegalArgumentException("Falta el valor de --capacidad-cola");
+                    }
+                    capacidadCola = Integer.parseInt(args[++i]);
+                    if (capacidadCola <= 0) {
+                        throw new IllegalArgumentException("El valor de --capacidad-cola debe ser mayor a 0");
+                    }
+                    break;
+                case "--trabajadores":
+                    if (i + 1 >= args.length) {
+                        throw new IllegalArgumentException("Falta el valor de --trabajadores");
+                    }
+                    trabajadores = new ArrayList<>();
+                    for (String direccion : args[++i].split(",")) {
+                        trabajadores.add(ProtocoloDistribuido.direccion(direccion));
+                    }
+                    break;
+                case "--espera-trabajador":
+                    if (i + 1 >= args.length) {
+                        throw new IllegalArgumentException("Falta el valor de --espera-trabajador");
+                    }
+                    int segundos = Integer.parseInt(args[++i]);
+                    if (segundos <= 0 || segundos > Integer.MAX_VALUE / 1000) {
+                        throw new IllegalArgumentException("Valor de --espera-trabajador inválido: " + segundos);
+                    }
+                    esperaTrabajadorMs = segundos * 1000;
+                    break;
+                case "--consultas":
+                    consultas = true;
+                    break;
+                case "--cache-resultados":
+                    if (i + 1 >= args.length) {
+                        throw new IllegalArgumentException("Falta el valor de --cache-resultados");
+                    }
+                    directorioCache = new File(args[++i]);
+                    break;
+                case "--cache-entradas":
+                    if (i + 1 >= args.length) {
+                        throw new IllegalArgumentException("Falta el valor de --cache-entradas");
+                    }
+                    entradasCache = Integer.parseInt(args[++i]);
+                    if (entradasCache <= 0) {
+                        throw new IllegalArgumentException("El valor de --cache-entradas debe ser mayor a 0");
+                    }
+                    break;
+                case "--cache-contenido":
+                    cacheContenido = true;
+                    break;
+                case "--particiones":
+                    particiones = true;
+                    break;
+                case "--ventana":
+                    if (i + 1 >= args.length) {
+                        throw new IllegalArgumentException("Falta el valor de --ventana");
+                    }
+                    ventanaDias = Integer.parseInt(args[++i]);
+                    if (ventanaDias <= 0) {
+                        throw new IllegalArgumentException("El valor de --ventana debe ser mayor a 0");
+                    }
+                    particiones = true;
+                    break;
+                case "--hasta":
+                    if (i + 1 >= args.length) {
+                        throw new IllegalArgumentException("Falta el valor de --hasta");
+                    }
+                    try {
+                        hasta = LocalDate.parse(args[++i]);
+                    } catch (DateTimeParseException e) {
+                        throw new IllegalArgumentException("Fecha inválida (se espera AAAA-MM-DD): " + args[i]);
+                    }
+                    particiones = true;
+                    break;
+                case "--memoria-agregacion":
+                    if (i + 1 >= args.length) {
+                        throw new IllegalArgumentException("Falta el valor de --memoria-agregacion");
+                    }
+                    memoriaAgregacion = Long.parseLong(args[++i]) << 20;
+                    if (memoriaAgregacion <= 0) {
+                        throw new IllegalArgumentException("El valor de --memoria-agregacion debe ser mayor a 0");
+                    }
+                    break;
+                case "--avance":
+                    if (i + 1 >= args.length) {
+                        throw new IllegalArgumentException("Falta el valor de --avance");
+                    }
+                    avanceMs = Long.parseLong(args[++i]);
+                    if (avanceMs <= 0) {
+                        throw new IllegalArgumentException("El valor de --avance debe ser mayor a 0");
+                    }
+                    break;
+                case "--cruce":
+                    if (i + 1 >= args.length) {
+                        throw new IllegalArgumentException("Falta el valor de --cruce");
+                    }
+                    archivoCruce = new File(args[++i]);
+                    break;
+                case "--trabajador":
+                    if (i + 1 >= args.length) {
+                        throw new IllegalArgumentException("Falta el valor de --trabajador");
+                    }
+                    puertoTrabajador = Integer.parseInt(args[++i]);
+                    if (puertoTrabajador < 0 || puertoTrabajador > 65535) {
+                        throw new IllegalArgumentException("Puerto de trabajador inválido: " + puertoTrabajador);
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Argumento desconocido: " + args[i]);
+            }
+        }
+        
+        if ((trabajadores != null || puertoTrabajador >= 0) && (incremental || servicio)) {
+            throw new IllegalArgumentException(
+                    "La agregación distribuida no se puede combinar con --incremental ni --servicio");
+        }
+        if (archivoCruce != null && (trabajadores != null || puertoTrabajador >= 0)) {
+            throw new IllegalArgumentException("--cruce no se puede combinar con la agregación distribuida");
+        }
+        if (consultas && (servicio || trabajadores != null || puertoTrabajador >= 0)) {
+            throw new IllegalArgumentException(
+                    "--consultas no se puede combinar con --servicio ni con la agregación distribuida");
+        }
+        if (avanceMs > 0 && (trabajadores != null || puertoTrabajador >= 0)) {
+            throw new IllegalArgumentException("--avance no se puede combinar con la agregación distribuida");
+        }
+        if (particiones && (incremental || servicio || consultas || archivoCruce != null || avanceMs > 0 
+                || trabajadores != null || puertoTrabajador >= 0 || directorioCache != null)) {
+            // Los resúmenes solo guardan totales, no aportes por archivo ni pares
+            throw new IllegalArgumentException("--particiones solo se puede combinar con --hilos, --tuberia, " 
+                    + "--lectura, --top, --directorio, --metricas y --almacen-maestros");
+        }
+        if (memoriaAgregacion > 0 && (incremental || servicio || consultas || archivoCruce != null 
+                || avanceMs > 0 || particiones || trabajadores != null || puertoTrabajador >= 0 
+                || hilos > 1 || hilosLectura > 0)) {
+            // Los demás modos necesitan los totales densos o aportes por archivo en memoria
+            throw new IllegalArgumentException("--memoria-agregacion solo se puede combinar con --lectura, " 
+                    + "--top, --directorio, --metricas, --almacen-maestros y la caché de resultados");
+        }
+        if (directorioCache != null) {
+            // Un acierto no carga datos, así que solo sirve cuando los reportes son la única salida
+            if (servicio || consultas || archivoCruce != null || puertoTrabajador >= 0) {
+                throw new IllegalArgumentException(
+                        "--cache-resultados no se puede combinar con --servicio, --consultas, --cruce ni --trabajador");
+            }
+            cacheResultados = new CacheResultados(directorioCache, entradasCache);
+        }
+    }
+    
+    /**
+     * Procesa todos los archivos de ventas encontrados en el directorio actual,
+     * sueltos o compactados en segmentos. Las filas y archivos rechazados
+     * quedan en cuarentena_ventas.csv y se informa un resumen.
+     * 
+     * @throws IOException si hay problemas al leer los archivos
+     */
+    private static void procesarArchivosDeVentas() throws IOException {
+        if (particiones) {
+            // Cada partición registra sus rechazos con su resumen
+            procesarParticiones();
+            return;
+        }
+        cuarentena.iniciar(archivo(CuarentenaVentas.ARCHIVO));
+        try {
+            procesarFuentesVentas();
+        } finally {
+            cuarentena.terminar();
+        }
+        
+        informarRechazos(cuarentena.filas(), cuarentena.archivos(), cuarentena.omitidas());
+    }
+    
+    /**
+     * Muestra el resumen de la cuarentena, si hubo rechazos.
+     */
+    private static void informarRechazos(long filas, long archivos, long omitidas) {
+        if (filas + archivos > 0) {
+            System.out.println("ADVERTENCIA: " + filas + " filas y " + archivos + " archivos rechazados, " 
+                    + "detalle en " + CuarentenaVentas.ARCHIVO 
+                    + (omitidas > 0 ? " (" + omitidas + " advertencias no mostradas)" : ""));
+        }
+    }
+    
+    /**
+     * Lee las fuentes de ventas con el modo de ingesta elegido.
+     */
+    private static void procesarFuentesVentas() throws IOException {
+        FuenteVentas[] fuentes = FuenteVentas.listar(directorio);
+        
+        if (fuentes.length == 0) {
+            throw new IOException("No se encontraron archivos de ventas en el directorio " + directorio);
+        }
+        
+        if (memoriaAgregacion > 0) {
+            int archivosValidos = procesarExterno(fuentes);
+            if (archivosValidos == 0) {
+                throw new IOException("No se pudo procesar ningún archivo de ventas válido");
+            }
+            System.out.println("Archivos de ventas procesados: " + archivosValidos + "/" + fuentes.length 
+                    + " (corridas en disco: " + externaProductos.corridas() + " de productos y " 
+                    + externaVendedores.corridas() + " de vendedores)");
+            return;
+        }
+        
+        // Los totales se recalculan desde cero en cada procesamiento
+        Arrays.fill(ventasPorProducto, 0);
+        Arrays.fill(recaudacionPorVendedor, 0);
+        cruce = archivoCruce != null ? new CruceVentas() : null;
+        
+        int archivosValidos;
+        if (incremental || servicio || consultas || avanceMs > 0) {
+            // Las consultas y el avance se calculan a partir de los aportes por archivo
+            archivosValidos = procesarIncremental(fuentes);
+        } else if (trabajadores != null) {
+            archivosValidos = procesarDistribuido(fuentes);
+        } else {
+            archivosValidos = procesarCompleto(fuentes);
+        }
+        
+        if (archivosValidos == 0) {
+            throw new IOException("No se pudo procesar ningún archivo de ventas válido");
+        }
+        
+        System.out.println("Archivos de ventas procesados: " + archivosValidos + "/" + fuentes.length);
+    }
+    
+    /**
+     * Lee todos los archivos de ventas y acumula sus totales.
+     * 
+     * @param fuentes archivos de ventas
+     * @return cantidad de archivos con ventas válidas
+     * @throws IOException si el procesamiento es interrumpido
+     */
+    private static int procesarCompleto(FuenteVentas[] fuentes) throws IOException {
+        ResultadoArchivos resultado = new ResultadoArchivos(fuentes.length, false);
+        
+        int archivosValidos = 0;
+        for (AgregadoParcial agregado : procesarArchivos(fuentes, resultado)) {
+            agregado.combinar();
+            archivosValidos += agregado.archivosValidos;
+        }
+        sumarRecaudacion(resultado);
+        return archivosValidos;
+    }
+    
+    /**
+     * Lee los archivos de ventas en orden sumando los totales en acumuladores
+     * externos, que vuelcan corridas ordenadas a disco al llenar su parte de
+     * {@code --memoria-agregacion} (la mitad para productos y la mitad para
+     * vendedores). La recaudación de cada archivo se suma a su vendedor al
+     * cerrarlo, como en la lectura secuencial; si el archivo falla se
+     * descarta su recaudación y se conservan las cantidades ya sumadas.
+     * 
+     * @param fuentes archivos de ventas
+     * @return cantidad de archivos con ventas válidas
+     * @throws IOException si no se pueden escribir las corridas
+     */
+    private static int procesarExterno(FuenteVentas[] fuentes) throws IOException {
+        cerrarAgregacionExterna();
+        externaProductos = new AgregacionExterna("productos", indiceProductos.tamano(), memoriaAgregacion / 2);
+        externaVendedores = new AgregacionExterna("vendedores", indiceVendedores.tamano(), memoriaAgregacion / 2);
+        AcumuladoExterno acumulado = new AcumuladoExterno();
+        
+        int archivosValidos = 0;
+        File segmento = null;
+        ByteBuffer datosSegmento = null;
+        for (FuenteVentas fuente : fuentes) {
+            long inicio = System.nanoTime();
+            ArchivoVentas lectura;
+            try {
+                if (fuente.enSegmento()) {
+                    if (!fuente.archivo.equals(segmento)) {
+                        datosSegmento = SegmentoVentas.mapear(fuente.archivo);
+                        segmento = fuente.archivo;
+                    }
+                    lectura = procesarRegistroSegmento(datosSegmento, fuente, acumulado, null);
+                } else {
+                    lectura = procesarArchivoVentas(fuente.archivo, acumulado, null);
+                }
+            } catch (UncheckedIOException e) {
+                // Falló el volcado de una corrida, no el archivo
+                throw e.getCause();
+            } catch (Exception e) {
+                acumulado.recaudacionArchivoActual = 0;
+                rechazarArchivo(fuente, e);
+                continue;
+            }
+            
+            externaVendedores.sumar(lectura.indiceVendedor, acumulado.recaudacionArchivoActual);
+            acumulado.recaudacionArchivoActual = 0;
+            metricas.archivoLeido(System.nanoTime() - inicio, lectura.ventas);
+            if (lectura.ventas > 0) {
+                archivosValidos++;
+            }
+        }
+        return archivosValidos;
+    }
+    
+    /**
+     * Borra los temporales de la agregación externa, si hay.
+     */
+    private static void cerrarAgregacionExterna() {
+        if (externaProductos != null) {
+            externaProductos.close();
+            externaProductos = null;
+        }
+        if (externaVendedores != null) {
+            externaVendedores.close();
+            externaVendedores = null;
+        }
+    }
+    
+    /**
+     * Calcula los totales de las particiones por día dentro de la ventana
+     * sumando sus resúmenes. Solo se leen las ventas de las particiones sin
+     * resumen o cuyo resumen ya no corresponde a sus archivos o a los datos
+     * maestros, y se les guarda uno nuevo. Así el costo de una ventana depende
+     * de los días que abarca y de los que cambiaron, no del historial.
+     * 
+     * Los rechazos de cada partición que se lee se registran en una
+     * cuarentena temporal y se guardan con su resumen, con el directorio de
+     * la partición delante del nombre de cada archivo. Al final se escribe
+     * cuarentena_ventas.csv con los de todas las particiones de la ventana,
+     * también las de resúmenes reutilizados.
+     * 
+     * @throws IOException si no hay particiones en la ventana, ninguna tiene
+     *                     ventas válidas o no se puede guardar un resumen
+     */
+    private static void procesarParticiones() throws IOException {
+        LocalDate ultimo = hasta != null ? hasta : LocalDate.now();
+        LocalDate primero = ventanaDias > 0 ? ultimo.minusDays(ventanaDias - 1) : LocalDate.MIN;
+        File[] subdirectorios = directorio.listFiles(File::isDirectory);
+        TreeMap<LocalDate, File> enVentana = new TreeMap<>();
+        for (File subdirectorio : subdirectorios != null ? subdirectorios : new File[0]) {
+            try {
+                LocalDate fecha = LocalDate.parse(subdirectorio.getName());
+                if (!fecha.isBefore(primero) && !fecha.isAfter(ultimo)) {
+                    enVentana.put(fecha, subdirectorio);
+                }
+            } catch (DateTimeParseException e) {
+                // No es una partición
+            }
+        }
+        if (enVentana.isEmpty()) {
+            throw new IOException("No hay particiones de ventas hasta el " + ultimo 
+                    + (ventanaDias > 0 ? " en los últimos " + ventanaDias + " días" : "") 
+                    + " en el directorio " + directorio);
+        }
+        
+        // Los totales globales sirven de acumulado para las particiones que se leen
+        long[] ventas = new long[ventasPorProducto.length];
+        long[] recaudacion = new long[recaudacionPorVendedor.length];
+        int archivosValidos = 0;
+        int recalculadas = 0;
+        long omitidas = 0;
+        List<byte[]> rechazos = new ArrayList<>();
+        for (File particion : enVentana.values()) {
+            FuenteVentas[] fuentes = FuenteVentas.listar(particion);
+            String huella = CacheResultados.huella("particion", false, archivo("vendedores.txt"), 
+                    archivo("productos.txt"), fuentes);
+            File archivoResumen = new File(particion, ResumenParticion.ARCHIVO);
+            ResumenParticion resumen = ResumenParticion.cargar(archivoResumen, huella);
+            if (resumen == null) {
+                Arrays.fill(ventasPorProducto, 0);
+                Arrays.fill(recaudacionPorVendedor, 0);
+                File rechazosParticion = File.createTempFile("cuarentena-particion-", ".csv");
+                int validos;
+                byte[] rechazados;
+                try {
+                    cuarentena.iniciar(rechazosParticion);
+                    try {
+                        validos = fuentes.length > 0 ? procesarCompleto(fuentes) : 0;
+                    } finally {
+                        cuarentena.terminar();
+                    }
+                    omitidas += cuarentena.omitidas();
+                    rechazados = CuarentenaVentas.registros(rechazosParticion, particion.getName() + "/");
+                } finally {
+                    rechazosParticion.delete();
+                }
+                resumen = new ResumenParticion(huella, validos, ventasPorProducto, recaudacionPorVendedor, 
+                        rechazados);
+                resumen.guardar(archivoResumen);
+                recalculadas++;
+            }
+            resumen.sumarA(ventas, recaudacion);
+            archivosValidos += resumen.archivosValidos;
+            rechazos.add(resumen.rechazos);
+        }
+        
+        // Las métricas ya contaron los rechazos de las particiones leídas
+        cuarentena.iniciar(archivo(CuarentenaVentas.ARCHIVO));
+        try {
+            for (byte[] rechazados : rechazos) {
+                cuarentena.agregar(rechazados, null);
+            }
+        } finally {
+            cuarentena.terminar();
+        }
+        informarRechazos(cuarentena.filas(), cuarentena.archivos(), omitidas);
+        System.arraycopy(ventas, 0, ventasPorProducto, 0, ventas.length);
+        System.arraycopy(recaudacion, 0, recaudacionPorVendedor, 0, recaudacion.length);
+        
+        if (archivosValidos == 0) {
+            throw new IOException("No se pudo procesar ningún archivo de ventas válido");
+        }
+        System.out.println("Particiones del " + enVentana.firstKey() + " al " + enVentana.lastKey() + ": " 
+                + enVentana.size() + " (" + (enVentana.size() - recalculadas) + " resúmenes reutilizados, " 
+                + recalculadas + " recalculados), " + archivosValidos + " archivos de ventas válidos");
+    }
+    
+    /**
+     * Suma la recaudación de cada archivo a su vendedor. Al ser centavos
+     * enteros la suma es exacta y no depende del orden de procesamiento.
+     */
+    private static void sumarRecaudacion(ResultadoArchivos resultado) {
+        for (int i = 0; i < resultado.vendedorPorArchivo.length; i++) {
+            if (resultado.vendedorPorArchivo[i] >= 0) {
+                recaudacionPorVendedor[resultado.vendedorPorArchivo[i]] += resultado.recaudacionPorArchivo[i];
+            }
+        }
+    }
+    
+    /**
+     * Reparte los archivos de ventas entre los trabajadores y combina sus
+     * agregados parciales. Los archivos se asignan por un hash del nombre
+     * (sin extensión), así cada vendedor queda siempre en el mismo
+     * fragmento. Los trabajadores deben ver el mismo directorio de trabajo
+     * (en el mismo equipo o en almacenamiento compartido).
+     * 
+     * La recaudación vuelve por archivo y se suma en el orden del listado,
+     * con el mismo resultado que una ejecución local. Si un trabajador no
+     * responde, falla o pasa {@code --espera-trabajador} segundos sin enviar
+     * datos, su fragmento se procesa localmente.
+     * 
+     * @param fuentes archivos de ventas
+     * @return cantidad de archivos con ventas válidas
+     * @throws IOException si no se pueden leer los datos maestros o el procesamiento es interrumpido
+     */
+    private static int procesarDistribuido(FuenteVentas[] fuentes) throws IOException {
+        int cantidadFragmentos = trabajadores.size();
+        List<List<Integer>> fragmentos = new ArrayList<>();
+        for (int k = 0; k < cantidadFragmentos; k++) {
+            fragmentos.add(new ArrayList<>());
+        }
+        for (int i = 0; i < fuentes.length; i++) {
+            String nombre = fuentes[i].nombre;
+            String base = nombre.substring(0, nombre.lastIndexOf('.'));
+            fragmentos.get(Math.floorMod(base.hashCode(), cantidadFragmentos)).add(i);
+        }
+        long huellaMaestros = PuntoControl.huella(archivo("vendedores.txt"), archivo("productos.txt"));
+        
+        ExecutorService pool = Executors.newFixedThreadPool(cantidadFragmentos);
+        List<Future<ProtocoloDistribuido.Respuesta>> respuestas = new ArrayList<>();
+        for (int k = 0; k < cantidadFragmentos; k++) {
+            ProtocoloDistribuido.Solicitud solicitud = new ProtocoloDistribuido.Solicitud();
+            solicitud.huellaMaestros = huellaMaestros;
+            for (int i : fragmentos.get(k)) {
+                solicitud.claves.add(fuentes[i].clave());
+            }
+            InetSocketAddress direccion = trabajadores.get(k);
+            respuestas.add(solicitud.claves.isEmpty() ? null 
+                    : pool.submit(() -> consultarTrabajador(direccion, solicitud)));
+        }
+        
+        ResultadoArchivos resultado = new ResultadoArchivos(fuentes.length, false);
+        int archivosValidos = 0;
+        try {
+            for (int k = 0; k < cantidadFragmentos; k++) {
+                List<Integer> indices = fragmentos.get(k);
+                if (indices.isEmpty()) {
+                    continue;
+                }
+                try {
+                    archivosValidos += aplicarRespuesta(respuestas.get(k).get(), indices, resultado);
+                } catch (ExecutionException | IOException e) {
+                    Throwable causa = e instanceof ExecutionException ? e.getCause() : e;
+                    InetSocketAddress direccion = trabajadores.get(k);
+                    System.out.println("ADVERTENCIA: El trabajador " + direccion.getHostString() + ":" 
+                            + direccion.getPort() + " falló (" + causa.getMessage() 
+                            + "); su fragmento se procesa localmente");
+                    archivosValidos += procesarFragmentoLocal(fuentes, indices, resultado);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Procesamiento de ventas interrumpido", e);
+        } finally {
+            pool.shutdownNow();
+        }
+        
+        sumarRecaudacion(resultado);
+        return archivosValidos;
+    }
+    
+    /**
+     * Envía un fragmento a un trabajador y espera su respuesta.
+     * 
+     * @throws SocketTimeoutException si el trabajador pasa el tiempo de espera sin enviar datos
+     */
+    private static ProtocoloDistribuido.Respuesta consultarTrabajador(InetSocketAddress direccion, 
+            ProtocoloDistribuido.Solicitud solicitud) throws IOException {
+        try (Socket conexion = new Socket()) {
+            conexion.connect(new InetSocketAddress(direccion.getHostString(), direccion.getPort()), 10_000);
+            conexion.setSoTimeout(esperaTrabajadorMs);
+            DataOutputStream salida = new DataOutputStream(
+                    new BufferedOutputStream(conexion.getOutputStream(), 1 << 16));
+            ProtocoloDistribuido.escribirSolicitud(salida, solicitud);
+            DataInputStream entrada = new DataInputStream(
+                    new BufferedInputStream(conexion.getInputStream(), 1 << 16));
+            return ProtocoloDistribuido.leerRespuesta(entrada);
+        } catch (SocketTimeoutException e) {
+            throw new SocketTimeoutException("sin respuesta en " + esperaTrabajadorMs / 1000 + " s");
+        }
+    }
+    
+    /**
+     * Valida la respuesta de un trabajador y la suma a los resultados, y sus
+     * rechazos a la cuarentena y las métricas. No
+     * modifica nada si la respuesta no es válida, para poder procesar el
+     * fragmento localmente.
+     * 
+     * @return cantidad de archivos con ventas válidas del fragmento
+     * @throws IOException si el trabajador informó un error o la respuesta no corresponde al fragmento
+     */
+    private static int aplicarRespuesta(ProtocoloDistribuido.Respuesta respuesta, List<Integer> indices, 
+            ResultadoArchivos resultado) throws IOException {
+        if (respuesta.error != null) {
+            throw new IOException(respuesta.error);
+        }
+        if (respuesta.vendedorPorArchivo.length != indices.size()) {
+            throw new IOException("Respuesta incompleta");
+        }
+        for (int vendedor : respuesta.vendedorPorArchivo) {
+            if (vendedor < -1 || vendedor >= recaudacionPorVendedor.length) {
+                throw new IOException("Índice de vendedor fuera de rango: " + vendedor);
+            }
+        }
+        for (int producto : respuesta.productos) {
+            if (producto < 0 || producto >= ventasPorProducto.length) {
+                throw new IOException("Índice de producto fuera de rango: " + producto);
+            }
+        }
+        
+        for (int j = 0; j < indices.size(); j++) {
+            resultado.vendedorPorArchivo[indices.get(j)] = respuesta.vendedorPorArchivo[j];
+            resultado.recaudacionPorArchivo[indices.get(j)] = respuesta.recaudacionPorArchivo[j];
+        }
+        for (int j = 0; j < respuesta.productos.length; j++) {
+            ventasPorProducto[respuesta.productos[j]] += respuesta.cantidades[j];
+        }
+        cuarentena.agregar(respuesta.rechazos, metricas);
+        return respuesta.archivosValidos;
+    }
+    
+    /**
+     * Procesa en este proceso el fragmento de un trabajador que falló.
+     * 
+     * @return cantidad de archivos con ventas válidas del fragmento
+     */
+    private static int procesarFragmentoLocal(FuenteVentas[] fuentes, List<Integer> indices, 
+            ResultadoArchivos resultado) throws IOException {
+        FuenteVentas[] fragmento = new FuenteVentas[indices.size()];
+        for (int j = 0; j < fragmento.length; j++) {
+            fragmento[j] = fuentes[indices.get(j)];
+        }
+        ResultadoArchivos parcial = new ResultadoArchivos(fragmento.length, false);
+        int archivosValidos = 0;
+        for (AgregadoParcial agregado : procesarArchivos(fragmento, parcial)) {
+            agregado.combinar();
+            archivosValidos += agregado.archivosValidos;
+        }
+        for (int j = 0; j < fragmento.length; j++) {
+            resultado.vendedorPorArchivo[indices.get(j)] = parcial.vendedorPorArchivo[j];
+            resultado.recaudacionPorArchivo[indices.get(j)] = parcial.recaudacionPorArchivo[j];
+        }
+        return archivosValidos;
+    }
+    
+    /**
+     * Modo trabajador: atiende las solicitudes de los coordinadores, de a una
+     * por vez, procesando cada fragmento con las mismas opciones de lectura y
+     * paralelismo de una ejecución local. Los datos maestros se cargan al
+     * recibir la primera solicitud y se recargan si cambian. Una conexión que
+     * pasa {@code --espera-trabajador} segundos sin enviar datos se cierra,
+     * para no dejar al trabajador tomado por un coordinador que no responde.
+     * 
+     * @throws IOException si no se puede abrir el puerto
+     */
+    private static void ejecutarTrabajador() throws IOException {
+        try (ServerSocket servidor = new ServerSocket(puertoTrabajador)) {
+            System.out.println("=== TRABAJADOR ESCUCHANDO EN EL PUERTO " + servidor.getLocalPort() + " ===");
+            while (true) {
+                try (Socket conexion = servidor.accept()) {
+                    conexion.setSoTimeout(esperaTrabajadorMs);
+                    DataInputStream entrada = new DataInputStream(
+                            new BufferedInputStream(conexion.getInputStream(), 1 << 16));
+                    DataOutputStream salida = new DataOutputStream(
+                            new BufferedOutputStream(conexion.getOutputStream(), 1 << 16));
+                    ProtocoloDistribuido.Solicitud solicitud = ProtocoloDistribuido.leerSolicitud(entrada);
+                    
+                    ProtocoloDistribuido.Respuesta respuesta;
+                    try {
+                        respuesta = procesarFragmento(solicitud);
+                    } catch (Exception e) {
+                        System.out.println("ADVERTENCIA: No se pudo procesar el fragmento: " + e.getMessage());
+                        respuesta = new ProtocoloDistribuido.Respuesta();
+                        respuesta.error = String.valueOf(e.getMessage());
+                    }
+                    ProtocoloDistribuido.escribirRespuesta(salida, respuesta);
+                } catch (IOException e) {
+                    System.out.println("ADVERTENCIA: Error en la conexión con el coordinador: " + e.getMessage());
+                }
+            }
+        }
+    }
+    
+    /**
+     * Procesa el fragmento de una solicitud en modo trabajador. Los rechazos
+     * se registran en una cuarentena temporal que viaja en la respuesta.
+     * 
+     * @param solicitud claves de las fuentes a procesar
+     * @return los agregados parciales del fragmento
+     * @throws IOException si los datos maestros no coinciden con los del
+     *         coordinador, falta alguna fuente o el procesamiento es interrumpido
+     */
+    private static ProtocoloDistribuido.Respuesta procesarFragmento(ProtocoloDistribuido.Solicitud solicitud) 
+            throws IOException {
+        long huellaMaestros = PuntoControl.huella(archivo("vendedores.txt"), archivo("productos.txt"));
+        if (huellaMaestros != solicitud.huellaMaestros) {
+            throw new IOException("Los datos maestros del trabajador no coinciden con los del coordinador");
+        }
+        if (ventasPorProducto == null || huellaMaestros != huellaMaestrosTrabajador) {
+            reiniciarDatos();
+            cargarVendedores();
+            cargarProductos();
+            huellaMaestrosTrabajador = huellaMaestros;
+        }
+        
+        Map<String, FuenteVentas> porClave = new HashMap<>();
+        for (FuenteVentas fuente : FuenteVentas.listar(directorio)) {
+            porClave.put(fuente.clave(), fuente);
+        }
+        FuenteVentas[] fuentes = new FuenteVentas[solicitud.claves.size()];
+        for (int i = 0; i < fuentes.length; i++) {
+            fuentes[i] = porClave.get(solicitud.claves.get(i));
+            if (fuentes[i] == null) {
+                throw new IOException("Archivo de ventas no encontrado en el trabajador: " 
+                        + solicitud.claves.get(i));
+            }
+        }
+        
+        Arrays.fill(ventasPorProducto, 0);
+        ResultadoArchivos resultado = new ResultadoArchivos(fuentes.length, false);
+        ProtocoloDistribuido.Respuesta respuesta = new ProtocoloDistribuido.Respuesta();
+        File rechazos = File.createTempFile("cuarentena-fragmento-", ".csv");
+        try {
+            cuarentena.iniciar(rechazos);
+            try {
+                for (AgregadoParcial agregado : procesarArchivos(fuentes, resultado)) {
+                    agregado.combinar();
+                    respuesta.archivosValidos += agregado.archivosValidos;
+                }
+            } finally {
+                cuarentena.terminar();
+            }
+            respuesta.rechazos = CuarentenaVentas.registros(rechazos);
+        } finally {
+            rechazos.delete();
+        }
+        respuesta.vendedorPorArchivo = resultado.vendedorPorArchivo;
+        respuesta.recaudacionPorArchivo = resultado.recaudacionPorArchivo;
+        
+        int conVentas = 0;
+        for (long cantidad : ventasPorProducto) {
+            if (cantidad != 0) {
+                conVentas++;
+            }
+        }
+        respuesta.productos = new int[conVentas];
+        respuesta.cantidades = new long[conVentas];
+        for (int i = 0, j = 0; i < ventasPorProducto.length; i++) {
+            if (ventasPorProducto[i] != 0) {
+                respuesta.productos[j] = i;
+                respuesta.cantidades[j++] = ventasPorProducto[i];
+            }
+        }
+        
+        System.out.println("✓ Fragmento procesado: " + respuesta.archivosValidos + "/" + fuentes.length 
+                + " archivos con ventas");
+        return respuesta;
+    }
+    
+    /**
+     * Procesa los archivos de ventas usando el punto de control de la
+     * ejecución anterior: los archivos sin cambios aportan lo guardado y solo
+     * se leen los nuevos o modificados. Los archivos borrados dejan de aportar.
+     * Si cambian vendedores.txt o productos.txt se procesa todo de nuevo.
+     * 
+     * Los totales se suman en el orden del listado a partir de los aportes
+     * por archivo, con el mismo resultado que una ejecución completa. Los
+     * archivos descartados por su contenido quedan registrados sin aporte,
+     * así que tampoco se releen ni se vuelven a advertir mientras no cambien.
+     * Los rechazos de los archivos sin cambios se copian de la cuarentena
+     * anterior.
+     * 
+     * En modo servicio el punto de control se conserva en memoria entre
+     * actualizaciones, y solo se guarda en disco si además se usa
+     * {@code --incremental}.
+     * 
+     * Con {@code --avance} el aporte de cada archivo se suma además a
+     * {@link #totalesEnVivo} al cerrarlo, y otro hilo reescribe los reportes
+     * periódicamente a partir de sus instantáneas.
+     * 
+     * @param fuentes archivos de ventas
+     * @return cantidad de archivos con ventas válidas
+     * @throws IOException si no se puede leer o guardar el punto de control
+     */
+    private static int procesarIncremental(FuenteVentas[] fuentes) throws IOException {
+        File archivoPunto = archivo(ARCHIVO_PUNTO_CONTROL);
+        long huellaMaestros = PuntoControl.huella(archivo("vendedores.txt"), archivo("productos.txt"));
+        PuntoControl anterior;
+        if (puntoControl != null && puntoControl.huellaMaestros == huellaMaestros) {
+            anterior = puntoControl;
+        } else if (incremental) {
+            anterior = PuntoControl.cargar(archivoPunto, huellaMaestros);
+        } else {
+            anterior = new PuntoControl(huellaMaestros);
+        }
+        
+        PuntoControl.Entrada[] entradas = new PuntoControl.Entrada[fuentes.length];
+        List<Integer> pendientes = new ArrayList<>();
+        Set<String> sinCambios = new HashSet<>();
+        for (int i = 0; i < fuentes.length; i++) {
+            PuntoControl.Entrada entrada = anterior.entradas.get(fuentes[i].clave());
+            if (entrada != null && sinCambios(fuentes[i], entrada)) {
+                entradas[i] = entrada;
+                sinCambios.add(fuentes[i].nombre);
+            } else {
+                pendientes.add(i);
+            }
+        }
+        // Los rechazos de los archivos que no se releen siguen en la cuarentena
+        cuarentena.conservar(sinCambios);
+        
+        // Leer solo los archivos nuevos o modificados
+        FuenteVentas[] aProcesar = new FuenteVentas[pendientes.size()];
+        for (int k = 0; k < aProcesar.length; k++) {
+            aProcesar[k] = fuentes[pendientes.get(k)];
+        }
+        ResultadoArchivos resultado = new ResultadoArchivos(aProcesar.length, true);
+        Thread avance = null;
+        if (avanceMs > 0) {
+            totalesEnVivo = new TotalesConcurrentes(precioPorProducto.length, recaudacionPorVendedor.length, 
+                    hilosLectura > 0 ? hilosAgregacion : hilos);
+            for (PuntoControl.Entrada entrada : entradas) {
+                if (entrada != null && !entrada.descartado()) {
+                    publicarAporte(entrada);
+                }
+            }
+            avance = iniciarAvance(totalesEnVivo, fuentes.length);
+        }
+        try {
+            procesarArchivos(aProcesar, resultado);
+        } finally {
+            if (avance != null) {
+                detenerAvance(avance);
+            }
+            totalesEnVivo = null;
+        }
+        for (int k = 0; k < aProcesar.length; k++) {
+            entradas[pendientes.get(k)] = resultado.entradas[k];
+        }
+        
+        PuntoControl actual = new PuntoControl(huellaMaestros);
+        int archivosValidos = 0;
+        for (int i = 0; i < fuentes.length; i++) {
+            PuntoControl.Entrada entrada = entradas[i];
+            if (entrada == null) {
+                continue;
+            }
+            actual.entradas.put(fuentes[i].clave(), entrada);
+            if (entrada.descartado()) {
+                continue;
+            }
+            recaudacionPorVendedor[entrada.vendedor] += entrada.recaudacion;
+            for (int j = 0; j < entrada.productos.length; j++) {
+                ventasPorProducto[entrada.productos[j]] += entrada.cantidades[j];
+                if (cruce != null) {
+                    cruce.agregar(entrada.vendedor, entrada.productos[j], entrada.cantidades[j]);
+                }
+            }
+            if (entrada.conVentas) {
+                archivosValidos++;
+            }
+        }
+        if (incremental) {
+            actual.guardar(archivoPunto);
+        }
+        if (servicio || consultas) {
+            puntoControl = actual;
+        }
+        
+        if (incremental || servicio) {
+            System.out.println("Modo incremental: " + (fuentes.length - aProcesar.length) 
+                    + " archivos sin cambios, " + aProcesar.length + " leídos");
+        }
+        return archivosValidos;
+    }
+    
+    /**
+     * Indica si un archivo no cambió desde que se guardó su entrada. Si solo
+     * cambió la fecha se compara el CRC del contenido. Los segmentos no se
+     * modifican, así que para sus registros basta el CRC del índice.
+     */
+    private static boolean sinCambios(FuenteVentas fuente, PuntoControl.Entrada entrada) {
+        if (fuente.enSegmento()) {
+            return entrada.tamano == fuente.longitud && entrada.crc == fuente.crc;
+        }
+        File archivo = fuente.archivo;
+        if (entrada.coincide(archivo)) {
+            return true;
+        }
+        if (archivo.length() != entrada.tamano) {
+            return false;
+        }
+        try {
+            if (PuntoControl.crc(archivo) == entrada.crc) {
+                entrada.modificado = archivo.lastModified();
+                return true;
+            }
+        } catch (IOException e) {
+            // Si no se puede leer se procesa de nuevo y allí se informa el error
+        }
+        return false;
+    }
+    
+    /**
+     * Procesa los archivos en la tubería de ingesta si se pidió con
+     * {@code --tuberia}, o si no de forma secuencial o en paralelo según
+     * {@code hilos}.
+     * 
+     * @param fuentes archivos de ventas
+     * @param resultado destino de los resultados por archivo
+     * @return acumulados parciales con las cantidades por producto
+     * @throws IOException si el procesamiento es interrumpido
+     */
+    private static List<AgregadoParcial> procesarArchivos(FuenteVentas[] fuentes, ResultadoArchivos resultado) 
+            throws IOException {
+        if (hilosLectura > 0) {
+            return procesarEnTuberia(fuentes, resultado);
+        }
+        if (hilos == 1) {
+            AgregadoParcial agregado = new AgregadoParcial(resultado.entradas != null);
+            procesarGrupo(fuentes, 0, fuentes.length, agregado, resultado);
+            return Collections.singletonList(agregado);
+        }
+        return procesarEnParalelo(fuentes, resultado);
+    }
+    
+    /**
+     * Reparte los archivos de ventas en grupos contiguos y los procesa en un
+     * ForkJoinPool de tamaño {@code hilos}. Cada hilo acumula en su propio
+     * AgregadoParcial, y la recaudación queda registrada por archivo para que
+     * la combinación sea determinista.
+     * 
+     * @param fuentes archivos de ventas a procesar
+     * @param resultado destino de los resultados por archivo
+     * @return acumulados parciales, uno por hilo
+     * @throws IOException si el procesamiento es interrumpido
+     */
+    private static List<AgregadoParcial> procesarEnParalelo(FuenteVentas[] fuentes, ResultadoArchivos resultado) 
+            throws IOException {
+        List<AgregadoParcial> agregados = Collections.synchronizedList(new ArrayList<>());
+        ThreadLocal<AgregadoParcial> agregadoHilo = ThreadLocal.withInitial(() -> {
+            AgregadoParcial agregado = new AgregadoParcial(resultado.entradas != null);
+            agregados.add(agregado);
+            return agregado;
+        });
+        
+        // Varios grupos por hilo para equilibrar archivos de distinto tamaño
+        int grupos = Math.min(fuentes.length, hilos * 4);
+        List<Callable<Void>> tareas = new ArrayList<>();
+        for (int g = 0; g < grupos; g++) {
+            int desde = (int) ((long) fuentes.length * g / grupos);
+            int hasta = (int) ((long) fuentes.length * (g + 1) / grupos);
+            tareas.add(() -> {
+                procesarGrupo(fuentes, desde, hasta, agregadoHilo.get(), resultado);
+                return null;
+            });
+        }
+        
+        ForkJoinPool pool = new ForkJoinPool(hilos);
+        try {
+            for (Future<Void> futuro : pool.invokeAll(tareas)) {
+                futuro.get();
+            }
+            return agregados;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Procesamiento de ventas interrumpido", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Error en el procesamiento paralelo: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    /**
+     * Procesa un rango de archivos de ventas. Los registros de un mismo
+     * segmento son contiguos, así que cada segmento se mapea una vez por grupo
+     * y se recorre en orden.
+     * 
+     * @param fuentes archivos de ventas
+     * @param desde índice inicial (inclusivo)
+     * @param hasta índice final (exclusivo)
+     * @param agregado acumulado donde se suman las cantidades
+     * @param resultado destino de los resultados por archivo
+     */
+    private static void procesarGrupo(FuenteVentas[] fuentes, int desde, int hasta, AgregadoParcial agregado, 
+            ResultadoArchivos resultado) {
+        File segmento = null;
+        ByteBuffer datosSegmento = null;
+        for (int i = desde; i < hasta; i++) {
+            FuenteVentas fuente = fuentes[i];
+            long inicio = System.nanoTime();
+            PuntoControl.Entrada entrada = null;
+            try {
+                CRC32C crc = null;
+                if (resultado.entradas != null) {
+                    entrada = nuevaEntrada(fuente);
+                    crc = new CRC32C();
+                }
+                
+                ArchivoVentas lectura;
+                if (fuente.enSegmento()) {
+                    if (!fuente.archivo.equals(segmento)) {
+                        datosSegmento = SegmentoVentas.mapear(fuente.archivo);
+                        segmento = fuente.archivo;
                     }
-                    
-                    // Actualizar estadísticas
-                    ventasPorProducto.put(idProducto, ventasPorProducto.get(idProducto) + cantidad);
-                    
-                    double precioProducto = productos.get(idProducto).precio;
-                    recaudacionVendedor += cantidad * precioProducto;
-                    ventasEncontradas = true;
-                    
-                } catch (NumberFormatException e) {
-                    System.out.println("ADVERTENCIA: Cantidad inválida en " + archivo.getName() + ": " + partes[1]);
+                    lectura = procesarRegistroSegmento(datosSegmento, fuente, agregado, crc);
+                } else {
+                    lectura = procesarArchivoVentas(fuente.archivo, agregado, crc);
+                }
+                cerrarArchivo(i, lectura, entrada, crc, agregado, resultado, System.nanoTime() - inicio);
+            } catch (Exception e) {
+                descartarArchivo(fuente, e, agregado);
+                registrarDescarte(i, fuente, entrada, e, resultado);
+            }
+        }
+    }
+    
+    /**
+     * Crea la entrada del punto de control de un archivo antes de leerlo.
+     */
+    private static PuntoControl.Entrada nuevaEntrada(FuenteVentas fuente) {
+        PuntoControl.Entrada entrada = new PuntoControl.Entrada();
+        entrada.tamano = fuente.enSegmento() ? fuente.longitud : fuente.archivo.length();
+        entrada.modificado = fuente.archivo.lastModified();
+        return entrada;
+    }
+    
+    /**
+     * Registra el resultado de un archivo leído completo: su vendedor, su
+     * recaudación y, en modo incremental, su entrada del punto de control.
+     * 
+     * @param i posición del archivo en el listado
+     * @param lectura estado final de la lectura
+     * @param entrada entrada del punto de control, o null fuera del modo incremental
+     * @param crc CRC32C del contenido, o null fuera del modo incremental
+     * @param agregado acumulado donde se sumaron las ventas del archivo
+     * @param resultado destino de los resultados por archivo
+     * @param nanos tiempo que tomó el archivo
+     */
+    private static void cerrarArchivo(int i, ArchivoVentas lectura, PuntoControl.Entrada entrada, CRC32C crc, 
+            AgregadoParcial agregado, ResultadoArchivos resultado, long nanos) {
+        long recaudacion = agregado.cerrarArchivo();
+        agregado.cerrarCruce(lectura.indiceVendedor);
+        if (entrada != null) {
+            agregado.tomarCantidadesArchivo(entrada);
+        }
+        registrarArchivo(i, lectura, entrada, crc, recaudacion, agregado, resultado, nanos);
+    }
+    
+    /**
+     * Registra el vendedor, la recaudación, las métricas y, en modo
+     * incremental, la entrada (con sus cantidades ya tomadas) de un archivo
+     * leído completo.
+     */
+    private static void registrarArchivo(int i, ArchivoVentas lectura, PuntoControl.Entrada entrada, CRC32C crc, 
+            long recaudacion, AgregadoParcial agregado, ResultadoArchivos resultado, long nanos) {
+        resultado.vendedorPorArchivo[i] = lectura.indiceVendedor;
+        resultado.recaudacionPorArchivo[i] = recaudacion;
+        metricas.archivoLeido(nanos, lectura.ventas);
+        if (lectura.ventas > 0) {
+            agregado.archivosValidos++;
+        }
+        
+        if (entrada != null) {
+            entrada.crc = crc.getValue();
+            entrada.vendedor = lectura.indiceVendedor;
+            entrada.conVentas = lectura.ventas > 0;
+            entrada.recaudacion = recaudacion;
+            resultado.entradas[i] = entrada;
+            if (totalesEnVivo != null) {
+                publicarAporte(entrada);
+            }
+        }
+    }
+    
+    /**
+     * En modo incremental, registra la entrada de un archivo descartado por
+     * su contenido, con vendedor -1 y sin aporte. El CRC se calcula sobre el
+     * archivo completo porque la lectura pudo cortarse antes del final. Los
+     * errores de lectura no se registran, para reintentarlos la próxima vez.
+     * 
+     * @param i posición del archivo en el listado
+     * @param fuente archivo descartado
+     * @param entrada entrada del punto de control, o null fuera del modo incremental
+     * @param e motivo del descarte
+     * @param resultado destino de los resultados por archivo
+     */
+    private static void registrarDescarte(int i, FuenteVentas fuente, PuntoControl.Entrada entrada, Exception e, 
+            ResultadoArchivos resultado) {
+        if (entrada == null || !(e instanceof ArchivoRechazado)) {
+            return;
+        }
+        try {
+            entrada.crc = fuente.enSegmento() ? fuente.crc : PuntoControl.crc(fuente.archivo);
+        } catch (IOException x) {
+            return;
+        }
+        entrada.vendedor = -1;
+        entrada.productos = new int[0];
+        entrada.cantidades = new long[0];
+        resultado.entradas[i] = entrada;
+    }
+    
+    private static void publicarAporte(PuntoControl.Entrada entrada) {
+        totalesEnVivo.agregar(entrada.vendedor, entrada.recaudacion, entrada.productos, entrada.cantidades);
+    }
+    
+    /**
+     * Inicia el hilo que reescribe los reportes cada {@code avanceMs} con
+     * una instantánea de los totales. Cada reporte se escribe en un temporal
+     * y se renombra, así quien lo lea nunca ve uno a medias.
+     * 
+     * @param totales totales que actualizan los hilos de ingesta
+     * @param archivos cantidad total de archivos de ventas
+     * @return el hilo iniciado
+     */
+    private static Thread iniciarAvance(TotalesConcurrentes totales, int archivos) {
+        Thread hilo = new Thread(() -> {
+            try {
+                while (true) {
+                    Thread.sleep(avanceMs);
+                    TotalesConcurrentes.Instantanea instantanea = totales.instantanea();
+                    generarReporteVendedores(instantanea.recaudacionPorVendedor, "reporte_vendedores.csv.tmp");
+                    generarReporteProductos(instantanea.ventasPorProducto, "reporte_productos.csv.tmp");
+                    reemplazar("reporte_vendedores.csv");
+                    reemplazar("reporte_productos.csv");
+                    System.out.println("Avance: " + instantanea.archivos + "/" + archivos 
+                            + " archivos en los reportes");
                 }
+            } catch (InterruptedException e) {
+                // Terminó la ingesta
+            } catch (IOException e) {
+                System.out.println("ADVERTENCIA: No se pudieron escribir los reportes de avance: " 
+                        + e.getMessage());
             }
+        }, "avance-reportes");
+        hilo.setDaemon(true);
+        hilo.start();
+        return hilo;
+    }
+    
+    private static void detenerAvance(Thread hilo) throws IOException {
+        hilo.interrupt();
+        try {
+            hilo.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Procesamiento de ventas interrumpido", e);
         }
+    }
+    
+    private static void reemplazar(String nombre) throws IOException {
+        Files.move(archivo(nombre + ".tmp").toPath(), archivo(nombre).toPath(), 
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    /**
+     * Descarta un archivo cuya lectura falló, informando el motivo.
+     */
+    private static void descartarArchivo(FuenteVentas fuente, Exception e, AgregadoParcial agregado) {
+        agregado.descartarArchivo();
+        rechazarArchivo(fuente, e);
+    }
+    
+    private static void rechazarArchivo(FuenteVentas fuente, Exception e) {
+        MetricasEjecucion.MotivoArchivo motivo = e instanceof ArchivoRechazado ? ((ArchivoRechazado) e).motivo 
+                : MetricasEjecucion.MotivoArchivo.ERROR_LECTURA;
+        metricas.archivoRechazado(motivo);
+        cuarentena.rechazarArchivo(motivo, fuente.nombre, e.getMessage());
+        if (cuarentena.puedeAdvertir()) {
+            System.out.println("ADVERTENCIA: Error procesando " + fuente.nombre + ": " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Procesa los archivos de ventas en una tubería de tres etapas unidas por
+     * colas acotadas: lectura (E/S), análisis y validación de las filas, y
+     * agregación. Un disco lento ya no detiene el análisis ni un análisis
+     * lento la lectura, y la cantidad de hilos de cada etapa se ajusta por
+     * separado. Cada hilo de agregación acumula en su propio AgregadoParcial
+     * y la recaudación queda registrada por archivo, así que el resultado es
+     * el mismo que en la lectura secuencial.
+     * 
+     * Por las colas pasan bloques de líneas completas de hasta
+     * {@value #TAMANO_BLOQUE_TUBERIA} bytes, cortados como las ventanas de
+     * LectorVentas, así que la capacidad de las colas acota la memoria en uso
+     * y no la cantidad de archivos; los archivos de más de 2 GB se leen igual.
+     * Los archivos columnares pasan completos en un bloque, como con
+     * {@code --lectura completo}. Los registros de segmento se cortan sobre el
+     * segmento mapeado, sin copiarlos. El análisis y la agregación se reparten
+     * por archivo, para que cada archivo se valide y se cierre en orden.
+     * 
+     * @param fuentes archivos de ventas a procesar
+     * @param resultado destino de los resultados por archivo
+     * @return acumulados parciales, uno por hilo de agregación
+     * @throws IOException si el procesamiento es interrumpido
+     */
+    private static List<AgregadoParcial> procesarEnTuberia(FuenteVentas[] fuentes, ResultadoArchivos resultado) 
+            throws IOException {
+        boolean porArchivo = resultado.entradas != null;
+        List<AgregadoParcial> agregados = Collections.synchronizedList(new ArrayList<>());
+        ThreadLocal<AgregadoParcial> agregadoHilo = ThreadLocal.withInitial(() -> {
+            AgregadoParcial agregado = new AgregadoParcial(porArchivo);
+            agregados.add(agregado);
+            return agregado;
+        });
+        Map<File, ByteBuffer> segmentos = new ConcurrentHashMap<>();
+        Tuberia.Particion<LoteVentas> porArchivoDeOrigen = lote -> lote.archivo.indice;
         
-        reader.close();
+        Tuberia tuberia = new Tuberia(metricas, capacidadCola)
+                .expansion("lectura", hilosLectura, null, (Integer i, Tuberia.Salida<LoteVentas> salida) -> 
+                        leerEnBloques(i, fuentes[i], porArchivo, segmentos, salida))
+                .etapa("analisis", hilosAnalisis, porArchivoDeOrigen, (LoteVentas lote) -> analizarLote(lote))
+                .etapa("agregacion", hilosAgregacion, porArchivoDeOrigen, (LoteVentas lote) -> {
+                    agregarLote(lote, agregadoHilo.get(), resultado);
+                    return null;
+                });
         
-        // Actualizar la recaudación del vendedor
-        recaudacionPorVendedor.put(vendedorId, recaudacionVendedor);
+        List<Integer> indices = new ArrayList<>(fuentes.length);
+        for (int i = 0; i < fuentes.length; i++) {
+            indices.add(i);
+        }
+        try {
+            tuberia.ejecutar(indices);
+            return agregados;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Procesamiento de ventas interrumpido", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Error en la tubería de ingesta: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+    
+    /**
+     * Etapa de lectura: entrega un archivo suelto o un registro de segmento
+     * en bloques, siempre con al menos uno (el último, marcado). Los errores
+     * de lectura viajan en el último bloque. Los segmentos se mapean una vez
+     * y se comparten entre los hilos de lectura.
+     */
+    private static void leerEnBloques(int indice, FuenteVentas fuente, boolean porArchivo, 
+            Map<File, ByteBuffer> segmentos, Tuberia.Salida<LoteVentas> salida) throws InterruptedException {
+        long inicio = System.nanoTime();
+        ArchivoTuberia archivo = new ArchivoTuberia(indice, fuente);
+        LoteVentas ultimo;
+        try {
+            if (porArchivo) {
+                archivo.entrada = nuevaEntrada(fuente);
+                archivo.crc = new CRC32C();
+            }
+            ultimo = fuente.enSegmento() ? leerRegistroEnBloques(archivo, segmentos, salida) 
+                    : leerArchivoEnBloques(archivo, salida);
+        } catch (IOException e) {
+            ultimo = new LoteVentas(archivo, null, 0, 0);
+            ultimo.errorLectura = e;
+            ultimo.nanos = System.nanoTime() - inicio;
+        }
+        ultimo.ultimo = true;
+        salida.entregar(ultimo);
+    }
+    
+    /**
+     * Lee un archivo suelto en bloques de {@value #TAMANO_BLOQUE_TUBERIA}
+     * bytes cortados en el último fin de línea; lo que sigue al corte pasa al
+     * bloque siguiente. Una línea más larga que el bloque lo agranda.
+     * 
+     * @return el último bloque, sin entregar
+     */
+    private static LoteVentas leerArchivoEnBloques(ArchivoTuberia archivo, Tuberia.Salida<LoteVentas> salida) 
+            throws IOException, InterruptedException {
+        FuenteVentas fuente = archivo.fuente;
+        long inicio = System.nanoTime();
+        try (FileInputStream entrada = new FileInputStream(fuente.archivo)) {
+            if (fuente.nombre.endsWith(FormatoColumnar.EXTENSION)) {
+                if (fuente.archivo.length() > Integer.MAX_VALUE - 8) {
+                    throw new IOException("Archivo demasiado grande: " + fuente.nombre);
+                }
+                byte[] contenido = entrada.readAllBytes();
+                return nuevoBloque(archivo, ByteBuffer.wrap(contenido), 0, contenido.length, inicio);
+            }
+            
+            byte[] bloque = new byte[TAMANO_BLOQUE_TUBERIA];
+            int usados = 0;
+            while (true) {
+                if (archivo.error != null) {
+                    // El análisis ya descartó el archivo
+                    return nuevoBloque(archivo, ByteBuffer.wrap(bloque), 0, 0, inicio);
+                }
+                int total = usados + entrada.readNBytes(bloque, usados, bloque.length - usados);
+                if (total < bloque.length) {
+                    return nuevoBloque(archivo, ByteBuffer.wrap(bloque), 0, total, inicio);
+                }
+                ByteBuffer datos = ByteBuffer.wrap(bloque);
+                int corte = LectorVentas.ultimoFinDeLinea(datos, 0, total) + 1;
+                if (corte == 0) {
+                    if (bloque.length >= LectorVentas.TAMANO_VENTANA) {
+                        throw new IOException("Línea demasiado larga en " + fuente.nombre);
+                    }
+                    bloque = Arrays.copyOf(bloque, bloque.length * 2);
+                    usados = total;
+                    continue;
+                }
+                byte[] siguiente = new byte[Math.max(TAMANO_BLOQUE_TUBERIA, (total - corte) * 2)];
+                usados = total - corte;
+                System.arraycopy(bloque, corte, siguiente, 0, usados);
+                salida.entregar(nuevoBloque(archivo, datos, 0, corte, inicio));
+                bloque = siguiente;
+                inicio = System.nanoTime();
+            }
+        }
+    }
+    
+    /**
+     * Corta un registro de segmento en bloques sobre el segmento mapeado, con
+     * el mismo criterio que {@link #leerArchivoEnBloques}.
+     * 
+     * @return el último bloque, sin entregar
+     */
+    private static LoteVentas leerRegistroEnBloques(ArchivoTuberia archivo, Map<File, ByteBuffer> segmentos, 
+            Tuberia.Salida<LoteVentas> salida) throws IOException, InterruptedException {
+        FuenteVentas fuente = archivo.fuente;
+        long inicio = System.nanoTime();
+        ByteBuffer datos = segmentos.get(fuente.archivo);
+        if (datos == null) {
+            datos = SegmentoVentas.mapear(fuente.archivo);
+            segmentos.putIfAbsent(fuente.archivo, datos);
+        }
+        if (fuente.posicion + fuente.longitud > datos.limit()) {
+            throw new IOException("Segmento truncado: " + fuente.archivo.getName());
+        }
+        int desde = (int) fuente.posicion;
+        int fin = desde + fuente.longitud;
+        if (fuente.nombre.endsWith(FormatoColumnar.EXTENSION)) {
+            return nuevoBloque(archivo, datos, desde, fin, inicio);
+        }
+        while (fin - desde > TAMANO_BLOQUE_TUBERIA && archivo.error == null) {
+            int corte = LectorVentas.ultimoFinDeLinea(datos, desde, desde + TAMANO_BLOQUE_TUBERIA) + 1;
+            if (corte <= desde) {
+                // Línea más larga que el bloque: se corta al terminar
+                corte = ParserVentas.finDeLinea(datos, desde + TAMANO_BLOQUE_TUBERIA, fin) + 1;
+                if (corte >= fin) {
+                    break;
+                }
+            }
+            salida.entregar(nuevoBloque(archivo, datos, desde, corte, inicio));
+            desde = corte;
+            inicio = System.nanoTime();
+        }
+        return nuevoBloque(archivo, datos, desde, fin, inicio);
+    }
+    
+    /**
+     * Crea un bloque de datos[desde, fin) y actualiza el CRC del archivo, que
+     * la etapa de lectura recorre en orden.
+     */
+    private static LoteVentas nuevoBloque(ArchivoTuberia archivo, ByteBuffer datos, int desde, int fin, long inicio) {
+        if (archivo.crc != null) {
+            archivo.crc.update(datos.duplicate().limit(fin).position(desde));
+        }
+        LoteVentas lote = new LoteVentas(archivo, datos, desde, fin);
+        lote.nanos = System.nanoTime() - inicio;
+        return lote;
+    }
+    
+    /**
+     * Etapa de análisis: interpreta un bloque, valida el vendedor en el
+     * primero y cada fila, y guarda las filas válidas en el bloque. Después
+     * de un error el archivo queda descartado y sus bloques siguientes se
+     * saltean.
+     */
+    private static LoteVentas analizarLote(LoteVentas lote) {
+        ArchivoTuberia archivo = lote.archivo;
+        if (archivo.error != null || lote.errorLectura != null) {
+            lote.datos = null;
+            return lote;
+        }
+        long inicio = System.nanoTime();
+        if (archivo.lectura == null) {
+            archivo.lectura = new ArchivoVentas(archivo.fuente.nombre, null, null);
+        }
+        archivo.lectura.agregado = lote;
+        try {
+            archivo.lectura.procesar(lote.datos, lote.desde, lote.fin);
+        } catch (IOException e) {
+            archivo.error = e;
+        }
+        lote.datos = null;
+        lote.nanos += System.nanoTime() - inicio;
+        return lote;
+    }
+    
+    /**
+     * Etapa de agregación: suma las filas del bloque en el acumulado del
+     * hilo y, aparte, en la recaudación y las cantidades del archivo. Con el
+     * último bloque registra el resultado del archivo, o lo descarta si
+     * alguna etapa falló.
+     */
+    private static void agregarLote(LoteVentas lote, AgregadoParcial agregado, ResultadoArchivos resultado) {
+        long inicio = System.nanoTime();
+        ArchivoTuberia archivo = lote.archivo;
+        if (lote.filas > 0 && archivo.pares == null && (agregado.porArchivo || cruce != null)) {
+            archivo.pares = new CruceVentas();
+        }
+        for (int j = 0; j < lote.filas; j++) {
+            int producto = lote.productos[j];
+            int cantidad = lote.cantidades[j];
+            if (!agregado.porArchivo) {
+                agregado.ventasPorProducto[producto] += cantidad;
+            }
+            archivo.recaudacion += cantidad * precioPorProducto[producto];
+            if (archivo.pares != null) {
+                archivo.pares.agregar(archivo.lectura.indiceVendedor, producto, cantidad);
+            }
+        }
+        archivo.nanos += lote.nanos + System.nanoTime() - inicio;
+        if (!lote.ultimo) {
+            return;
+        }
         
-        return ventasEncontradas;
+        Exception error = lote.errorLectura != null ? lote.errorLectura : archivo.error;
+        if (error != null) {
+            rechazarArchivo(archivo.fuente, error);
+            registrarDescarte(archivo.indice, archivo.fuente, archivo.entrada, error, resultado);
+            return;
+        }
+        PuntoControl.Entrada entrada = archivo.entrada;
+        if (entrada != null) {
+            int pares = archivo.pares != null ? archivo.pares.tamano() : 0;
+            entrada.productos = new int[pares];
+            entrada.cantidades = new long[pares];
+            if (pares > 0) {
+                archivo.pares.copiarProductos(entrada.productos, entrada.cantidades);
+            }
+        } else if (archivo.pares != null) {
+            agregado.combinarCruce(archivo.pares);
+        }
+        registrarArchivo(archivo.indice, archivo.lectura, entrada, archivo.crc, archivo.recaudacion, agregado, 
+                resultado, archivo.nanos);
+    }
+    
+    /**
+     * Procesa el contenido de un archivo de ventas guardado en un segmento.
+     * 
+     * @param datosSegmento segmento mapeado completo
+     * @param fuente registro a procesar
+     * @param agregado acumulado donde se registran las ventas del archivo
+     * @param crc si no es null, se actualiza con el contenido del registro
+     * @return el estado final de la lectura, con el vendedor y las ventas válidas
+     * @throws IOException si el registro no está completo en el segmento o su contenido no es válido
+     */
+    private static ArchivoVentas procesarRegistroSegmento(ByteBuffer datosSegmento, FuenteVentas fuente, 
+            ParserVentas.Receptor agregado, CRC32C crc) throws IOException {
+        if (fuente.posicion + fuente.longitud > datosSegmento.limit()) {
+            throw new IOException("Segmento truncado: " + fuente.archivo.getName());
+        }
+        ArchivoVentas lectura = new ArchivoVentas(fuente.nombre, agregado, crc);
+        int desde = (int) fuente.posicion;
+        lectura.procesar(datosSegmento, desde, desde + fuente.longitud);
+        return lectura;
+    }
+    
+    /**
+     * Procesa un archivo individual de ventas
+     * 
+     * @param archivo el archivo a procesar
+     * @param agregado acumulado donde se registran las ventas del archivo
+     * @param crc si no es null, se actualiza con el contenido del archivo
+     * @return el estado final de la lectura, con el vendedor y las ventas válidas
+     * @throws IOException si hay problemas al leer el archivo
+     */
+    private static ArchivoVentas procesarArchivoVentas(File archivo, AgregadoParcial agregado, CRC32C crc) 
+            throws IOException {
+        return procesarArchivoVentas(archivo, (ParserVentas.Receptor) agregado, crc);
+    }
+    
+    /**
+     * Igual que la anterior, con cualquier receptor de las ventas.
+     */
+    private static ArchivoVentas procesarArchivoVentas(File archivo, ParserVentas.Receptor agregado, CRC32C crc) 
+            throws IOException {
+        ArchivoVentas lectura = new ArchivoVentas(archivo.getName(), agregado, crc);
+        if (lectura.columnar) {
+            LectorVentas.leerCompleto(archivo, modoLectura, lectura);
+        } else {
+            LectorVentas.leer(archivo, modoLectura, lectura);
+        }
+        return lectura;
+    }
+    
+    /**
+     * Construye los índices de consulta a partir de los aportes por archivo
+     * del último procesamiento.
+     */
+    private static void construirIndicesConsulta() {
+        ConsultasVentas.Constructor constructor = new ConsultasVentas.Constructor(
+                recaudacionPorVendedor.length, ventasPorProducto.length);
+        for (PuntoControl.Entrada entrada : puntoControl.entradas.values()) {
+            if (entrada.descartado()) {
+                continue;
+            }
+            constructor.agregar(entrada.vendedor, entrada.productos, entrada.cantidades);
+        }
+        motorConsultas = constructor.construir(catalogo(), precioPorProducto, ventasPorProducto, 
+                recaudacionPorVendedor);
+    }
+    
+    /**
+     * Datos maestros por índice denso, del almacén mapeado o de las listas en
+     * memoria, para las consultas y la exportación del cruce.
+     */
+    private static ConsultasVentas.Catalogo catalogo() {
+        return new ConsultasVentas.Catalogo() {
+            @Override
+            public String identificacionVendedor(int indice) {
+                return almacen != null ? almacen.vendedores.clave(indice) : vendedores.get(indice).getIdentificacion();
+            }
+            
+            @Override
+            public String nombreVendedor(int indice) {
+                return almacen != null ? almacen.vendedores.nombre(indice) : vendedores.get(indice).getNombreCompleto();
+            }
+            
+            @Override
+            public String idProducto(int indice) {
+                return almacen != null ? almacen.productos.clave(indice) : productos.get(indice).id;
+            }
+            
+            @Override
+            public String nombreProducto(int indice) {
+                return almacen != null ? almacen.productos.nombre(indice) : productos.get(indice).nombre;
+            }
+            
+            @Override
+            public int buscarVendedor(String identificacion) {
+                byte[] bytes = identificacion.getBytes(StandardCharsets.UTF_8);
+                return indiceVendedores.buscar(ByteBuffer.wrap(bytes), 0, bytes.length);
+            }
+            
+            @Override
+            public int buscarProducto(String id) {
+                byte[] bytes = id.getBytes(StandardCharsets.UTF_8);
+                return indiceProductos.buscar(ByteBuffer.wrap(bytes), 0, bytes.length);
+            }
+        };
+    }
+    
+    /**
+     * Lee consultas de la entrada estándar, una por línea, y escribe cada
+     * resultado con su cantidad de filas y su duración, hasta {@code salir} o
+     * el fin de la entrada.
+     * 
+     * @throws IOException si no se puede leer la entrada
+     */
+    private static void atenderConsultas() throws IOException {
+        System.out.println("=== CONSULTAS ('ayuda' muestra la sintaxis, 'salir' termina) ===");
+        BufferedReader entrada = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        boolean interactivo = System.console() != null;
+        StringBuilder salida = new StringBuilder(1 << 12);
+        while (true) {
+            if (interactivo) {
+                System.out.print("> ");
+                System.out.flush();
+            }
+            String linea = entrada.readLine();
+            if (linea == null || linea.trim().equals("salir")) {
+                break;
+            }
+            linea = linea.trim();
+            if (linea.isEmpty()) {
+                continue;
+            }
+            if (linea.equals("ayuda")) {
+                System.out.print(ConsultasVentas.AYUDA);
+                continue;
+            }
+            
+            long inicio = System.nanoTime();
+            salida.setLength(0);
+            try {
+                int filas = motorConsultas.consultar(linea, salida);
+                double milisegundos = (System.nanoTime() - inicio) / 1e6;
+                System.out.print(salida);
+                System.out.println(String.format(Locale.ROOT, "(%d filas en %.3f ms)", filas, milisegundos));
+            } catch (NumberFormatException e) {
+                System.out.println("ERROR: Número inválido en la consulta: " + e.getMessage());
+            } catch (IllegalArgumentException e) {
+                System.out.println("ERROR: " + e.getMessage());
+            }
+        }
     }
     
     /**
@@ -290,62 +2665,123 @@ public class main {
      * @throws IOException si hay problemas al escribir el archivo
      */
     private static void generarReporteVendedores() throws IOException {
-        FileWriter writer = new FileWriter("reporte_vendedores.csv");
+        if (externaVendedores == null) {
+            generarReporteVendedores(recaudacionPorVendedor, "reporte_vendedores.csv");
+            return;
+        }
+        try (BufferedWriter writer = abrirReporte("reporte_vendedores.csv")) {
+            writer.write("Vendedor;Recaudacion\n");
+            StringBuilder fila = new StringBuilder(128);
+            externaVendedores.recorrer(top, (indice, recaudacion) -> 
+                    writer.append(filaVendedor(fila, indice, recaudacion)));
+        } finally {
+            externaVendedores.close();
+        }
+    }
+    
+    /**
+     * @param recaudacionPorVendedor recaudación de cada vendedor, en centavos
+     * @param nombre archivo de destino
+     */
+    private static void generarReporteVendedores(long[] recaudacionPorVendedor, String nombre) throws IOException {
+        int[] vendedoresOrdenados = ordenarParaReporte(recaudacionPorVendedor);
         
-        try {
-            // Crear lista ordenada de vendedores por recaudación
-            List<Map.Entry<String, Double>> vendedoresOrdenados = new ArrayList<>(recaudacionPorVendedor.entrySet());
-            vendedoresOrdenados.sort((a, b) -> Double.compare(b.getValue(), a.getValue()));
-            
+        try (BufferedWriter writer = abrirReporte(nombre)) {
             // Escribir encabezado
             writer.write("Vendedor;Recaudacion\n");
             
             // Escribir datos de vendedores
-            for (Map.Entry<String, Double> entrada : vendedoresOrdenados) {
-                String vendedorId = entrada.getKey();
-                double recaudacion = entrada.getValue();
-                
-                Vendedor vendedor = vendedores.get(vendedorId);
-                if (vendedor != null) {
-                    writer.write(vendedor.getNombreCompleto() + ";" + 
-                               String.format("%.2f", recaudacion) + "\n");
-                }
+            StringBuilder fila = new StringBuilder(128);
+            for (int indice : vendedoresOrdenados) {
+                writer.append(filaVendedor(fila, indice, recaudacionPorVendedor[indice]));
             }
-        } finally {
-            writer.close();
         }
     }
     
+    /**
+     * Escribe en {@code fila} la línea del reporte de un vendedor.
+     */
+    private static StringBuilder filaVendedor(StringBuilder fila, int indice, long recaudacion) {
+        fila.setLength(0);
+        if (almacen != null) {
+            fila.append(almacen.vendedores.nombre(indice));
+        } else {
+            Vendedor vendedor = vendedores.get(indice);
+            fila.append(vendedor.nombres).append(' ').append(vendedor.apellidos);
+        }
+        fila.append(';');
+        FormatoNumeros.agregarCentavos(fila, recaudacion);
+        return fila.append('\n');
+    }
+    
     /**
      * Genera el reporte de productos ordenados por cantidad vendida (descendente)
      * 
      * @throws IOException si hay problemas al escribir el archivo
      */
     private static void generarReporteProductos() throws IOException {
-        FileWriter writer = new FileWriter("reporte_productos.csv");
+        if (externaProductos == null) {
+            generarReporteProductos(ventasPorProducto, "reporte_productos.csv");
+            return;
+        }
+        try (BufferedWriter writer = abrirReporte("reporte_productos.csv")) {
+            writer.write("Producto;Precio;Cantidad_Vendida\n");
+            StringBuilder fila = new StringBuilder(128);
+            externaProductos.recorrer(top, (indice, cantidad) -> 
+                    writer.append(filaProducto(fila, indice, precio(indice), cantidad)));
+        } finally {
+            externaProductos.close();
+        }
+    }
+    
+    /**
+     * @param ventasPorProducto cantidad vendida de cada producto
+     * @param nombre archivo de destino
+     */
+    private static void generarReporteProductos(long[] ventasPorProducto, String nombre) throws IOException {
+        int[] productosOrdenados = ordenarParaReporte(ventasPorProducto);
         
-        try {
-            // Crear lista ordenada de productos por cantidad vendida
-            List<Map.Entry<String, Integer>> productosOrdenados = new ArrayList<>(ventasPorProducto.entrySet());
-            productosOrdenados.sort((a, b) -> Integer.compare(b.getValue(), a.getValue()));
-            
+        try (BufferedWriter writer = abrirReporte(nombre)) {
             // Escribir encabezado
             writer.write("Producto;Precio;Cantidad_Vendida\n");
             
             // Escribir datos de productos
-            for (Map.Entry<String, Integer> entrada : productosOrdenados) {
-                String productoId = entrada.getKey();
-                int cantidadVendida = entrada.getValue();
-                
-                Producto producto = productos.get(productoId);
-                if (producto != null) {
-                    writer.write(producto.nombre + ";" + 
-                               String.format("%.2f", producto.precio) + ";" + 
-                               cantidadVendida + "\n");
-                }
+            StringBuilder fila = new StringBuilder(128);
+            for (int indice : productosOrdenados) {
+                writer.append(filaProducto(fila, indice, precioPorProducto[indice], ventasPorProducto[indice]));
             }
-        } finally {
-            writer.close();
         }
     }
+    
+    /**
+     * Escribe en {@code fila} la línea del reporte de un producto.
+     */
+    private static StringBuilder filaProducto(StringBuilder fila, int indice, long precio, long cantidad) {
+        fila.setLength(0);
+        fila.append(almacen != null ? almacen.productos.nombre(indice) : productos.get(indice).nombre);
+        fila.append(';');
+        FormatoNumeros.agregarCentavos(fila, precio);
+        return fila.append(';').append(cantidad).append('\n');
+    }
+    
+    /**
+     * Ordena los índices para un reporte: con {@code --top N} se usa un
+     * montículo acotado, si no se ordenan todos.
+     */
+    private static int[] ordenarParaReporte(long[] valores) {
+        return top > 0 ? OrdenIndices.mayores(valores, top) : OrdenIndices.ordenar(valores);
+    }
+    
+    private static BufferedWriter abrirReporte(String nombre) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(archivo(nombre)), 
+                StandardCharsets.UTF_8), 1 << 16);
+    }
+    
+    /**
+     * @param nombre nombre de un archivo de entrada o salida
+     * @return el archivo dentro del directorio de trabajo
+     */
+    private static File archivo(String nombre) {
+        return new File(directorio, nombre);
+    }
 }
\ No newline at end of file